@@ -0,0 +1,69 @@
+package com.cn.pstoolkit.controller;
+
+import com.cn.pstoolkit.llm.ChatMessage;
+import com.cn.pstoolkit.llm.LlmClient;
+import com.cn.pstoolkit.llm.LlmProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 服务端 LLM 对话接口，通过共享的 LlmClient 转发到 pstoolkit.llm 配置的上游
+ */
+@Slf4j
+@RestController
+@RequestMapping("/llm")
+public class ChatController {
+
+    private final LlmClient llmClient;
+    private final LlmProperties properties;
+
+    public ChatController(LlmClient llmClient, LlmProperties properties) {
+        this.llmClient = llmClient;
+        this.properties = properties;
+    }
+
+    /**
+     * 非流式对话，容器线程在等待上游时释放。消息按 pstoolkit.llm.max-context-tokens 裁剪后转发
+     */
+    @PostMapping("/chat")
+    public CompletableFuture<Map<String, String>> chat(@RequestBody ChatBody body) {
+        return llmClient.chatAsync(properties.toEndpoint(), properties.toContext(body.messages()))
+                .thenApply(content -> Map.of("content", content));
+    }
+
+    /**
+     * 流式对话，以 SSE 逐段返回增量
+     */
+    @PostMapping("/chat/stream")
+    public SseEmitter stream(@RequestBody ChatBody body) {
+        SseEmitter emitter = new SseEmitter(properties.getReadTimeout().toMillis() * 5);
+        llmClient.streamAsync(properties.toEndpoint(), properties.toContext(body.messages()), delta -> {
+            try {
+                emitter.send(delta);
+            } catch (IOException e) {
+                // 客户端已断开，中止上游读取
+                throw new IllegalStateException("Client disconnected", e);
+            }
+        }).whenComplete((reply, error) -> {
+            if (error != null) {
+                log.warn("LLM stream failed", error);
+                emitter.completeWithError(error);
+            } else {
+                emitter.complete();
+            }
+        });
+        return emitter;
+    }
+
+    public record ChatBody(List<ChatMessage> messages) {
+    }
+}
@@ -0,0 +1,30 @@
+package com.cn.pstoolkit.controller;
+
+import com.cn.pstoolkit.utils.Bulkhead;
+import com.cn.pstoolkit.utils.LatchMetrics;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/metrics")
+public class MetricsController {
+
+    /**
+     * LatchUtils 扇出指标
+     */
+    @GetMapping("/latch")
+    public Map<String, Object> latch() {
+        return LatchMetrics.snapshot();
+    }
+
+    /**
+     * 各依赖舱壁的并发上限、排队和拒绝情况
+     */
+    @GetMapping("/bulkhead")
+    public Map<String, Object> bulkhead() {
+        return Bulkhead.snapshot();
+    }
+}
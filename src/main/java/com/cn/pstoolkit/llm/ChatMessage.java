@@ -0,0 +1,21 @@
+package com.cn.pstoolkit.llm;
+
+/**
+ * 对话中的一条消息（OpenAI 兼容格式）
+ *
+ * @param role system、user 或 assistant
+ */
+public record ChatMessage(String role, String content) {
+
+    public static ChatMessage system(String content) {
+        return new ChatMessage("system", content);
+    }
+
+    public static ChatMessage user(String content) {
+        return new ChatMessage("user", content);
+    }
+
+    public static ChatMessage assistant(String content) {
+        return new ChatMessage("assistant", content);
+    }
+}
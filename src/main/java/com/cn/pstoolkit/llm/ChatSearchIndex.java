@@ -0,0 +1,314 @@
+package com.cn.pstoolkit.llm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 对话记录的内存倒排索引，按消息内容全文检索。
+ * <ul>
+ *     <li>分词：中日韩文字按单字和相邻两字（bigram）建索引，不依赖词典；其他字母、数字按连续的词切分并转小写，全角字母数字转半角</li>
+ *     <li>倒排表：每个词的消息序号升序排列，存为差值的变长整数（varint），常用字的倒排表每条约 1 字节；
+ *     每 128 个一块，记录块首序号，查询可以从最新的块往前解码并跳过不相关的块</li>
+ *     <li>增量更新：{@link #add} 按序号递增追加，不需要重建；与 {@link ConversationLog} 的序号一致</li>
+ * </ul>
+ * 查询把关键词同样分词（连续的中日韩文字只取 bigram）后求交集，即所有词都出现；从最短的倒排表开始合并，结果按序号从新到旧返回。
+ * 10 万条消息上的查询在毫秒级。线程安全。
+ */
+public final class ChatSearchIndex {
+
+    /**
+     * 拉丁字母等连续的词超过该长度时截断
+     */
+    private static final int MAX_WORD_LENGTH = 32;
+    /**
+     * 倒排表每块的序号个数，块内差值编码，块首序号单独存一份用于跳转
+     */
+    private static final int BLOCK_SIZE = 128;
+    private static final int LOAD_BATCH = 1024;
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private int documents;
+    private long lastId = -1;
+    private long postingsBytes;
+
+    /**
+     * 索引一条消息
+     *
+     * @param id 消息序号，必须大于之前加入的序号
+     */
+    public synchronized void add(long id, ChatMessage message) {
+        if (id <= lastId || id > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Message id " + id + " must be greater than " + lastId);
+        }
+        lastId = id;
+        documents++;
+        for (String term : tokenize(message.content(), false)) {
+            Postings list = postings.computeIfAbsent(term, key -> new Postings());
+            int before = list.length;
+            list.add((int) id);
+            postingsBytes += list.length - before;
+        }
+    }
+
+    /**
+     * 从 firstId 开始按顺序索引一批消息
+     */
+    public synchronized void addAll(long firstId, List<ChatMessage> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            add(firstId + i, messages.get(i));
+        }
+    }
+
+    /**
+     * 索引对话记录中序号在 [from, to) 的消息，每次读取、索引一批，批与批之间不持有锁，不会长时间阻塞查询
+     */
+    public void addAll(ConversationLog log, long from, long to) {
+        for (long next = from; next < to; next += LOAD_BATCH) {
+            long end = Math.min(to, next + LOAD_BATCH);
+            addAll(next, log.read(next, end));
+        }
+    }
+
+    /**
+     * 包含查询中所有词的消息序号，从新到旧，最多 limit 条
+     */
+    public synchronized List<Long> search(String query, int limit) {
+        Set<String> terms = tokenize(query, true);
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        List<Postings> lists = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            Postings list = postings.get(term);
+            if (list == null) {
+                return List.of();
+            }
+            lists.add(list);
+        }
+        lists.sort((a, b) -> Integer.compare(a.count, b.count));
+        // 从最短的倒排表的最新一块往前逐块解码，其余表按块跳转确认，凑够 limit 条即停止
+        Postings driver = lists.getFirst();
+        Cursor[] others = new Cursor[lists.size() - 1];
+        for (int i = 1; i < lists.size(); i++) {
+            others[i - 1] = new Cursor(lists.get(i));
+        }
+        int[] block = new int[BLOCK_SIZE];
+        List<Long> result = new ArrayList<>(Math.min(limit, driver.count));
+        for (int b = driver.blocks - 1; b >= 0; b--) {
+            int n = driver.decodeBlock(b, block);
+            candidates:
+            for (int j = n - 1; j >= 0; j--) {
+                for (Cursor other : others) {
+                    if (!other.contains(block[j])) {
+                        continue candidates;
+                    }
+                }
+                result.add((long) block[j]);
+                if (result.size() == limit) {
+                    return result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public synchronized void clear() {
+        postings.clear();
+        documents = 0;
+        lastId = -1;
+        postingsBytes = 0;
+    }
+
+    /**
+     * 已索引的消息数
+     */
+    public synchronized int size() {
+        return documents;
+    }
+
+    public synchronized int getTermCount() {
+        return postings.size();
+    }
+
+    /**
+     * 倒排表压缩后的总字节数
+     */
+    public synchronized long getPostingsBytes() {
+        return postingsBytes;
+    }
+
+    /**
+     * 文本切分出的索引词（去重，保持出现顺序）
+     */
+    public static Set<String> terms(String text) {
+        return tokenize(text, false);
+    }
+
+    /**
+     * @param query 查询时连续两字以上的中日韩文字只用 bigram，单字的倒排表很长且已被 bigram 覆盖
+     */
+    private static Set<String> tokenize(String text, boolean query) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null) {
+            return terms;
+        }
+        StringBuilder word = new StringBuilder();
+        int previousCjk = -1;
+        int runLength = 0;
+        for (int i = 0; i <= text.length(); ) {
+            int cp = i < text.length() ? text.codePointAt(i) : ' ';
+            i += i < text.length() ? Character.charCount(cp) : 1;
+            // 全角字母数字转半角
+            if (cp >= 0xFF01 && cp <= 0xFF5E) {
+                cp -= 0xFEE0;
+            }
+            if (isCjk(cp)) {
+                flushWord(word, terms);
+                if (!query) {
+                    terms.add(Character.toString(cp));
+                }
+                if (previousCjk >= 0) {
+                    terms.add(Character.toString(previousCjk) + Character.toString(cp));
+                }
+                previousCjk = cp;
+                runLength++;
+            } else {
+                if (query && runLength == 1) {
+                    terms.add(Character.toString(previousCjk));
+                }
+                previousCjk = -1;
+                runLength = 0;
+                if (Character.isLetterOrDigit(cp)) {
+                    if (word.length() < MAX_WORD_LENGTH) {
+                        word.appendCodePoint(Character.toLowerCase(cp));
+                    }
+                } else {
+                    flushWord(word, terms);
+                }
+            }
+        }
+        return terms;
+    }
+
+    private static void flushWord(StringBuilder word, Set<String> terms) {
+        if (!word.isEmpty()) {
+            terms.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private static boolean isCjk(int cp) {
+        if (cp < 0x2E80) {
+            return false;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /**
+     * 一个词的倒排表：升序的消息序号，按块存为与前一个序号的差值（varint），每块第一个存绝对值
+     */
+    private static final class Postings {
+        private byte[] bytes = new byte[4];
+        private int length;
+        private int count;
+        private int last;
+        private int[] blockFirst = new int[1];
+        private int[] blockOffset = new int[1];
+        private int blocks;
+
+        private void add(int id) {
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+            }
+            int delta = id - last;
+            if (count % BLOCK_SIZE == 0) {
+                if (blocks == blockFirst.length) {
+                    blockFirst = Arrays.copyOf(blockFirst, blocks * 2);
+                    blockOffset = Arrays.copyOf(blockOffset, blocks * 2);
+                }
+                blockFirst[blocks] = id;
+                blockOffset[blocks++] = length;
+                delta = id;
+            }
+            while ((delta & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            bytes[length++] = (byte) delta;
+            last = id;
+            count++;
+        }
+
+        /**
+         * 解码第 block 块到 ids，返回个数
+         */
+        private int decodeBlock(int block, int[] ids) {
+            int n = block == blocks - 1 ? count - block * BLOCK_SIZE : BLOCK_SIZE;
+            int position = blockOffset[block];
+            int id = 0;
+            for (int i = 0; i < n; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[position++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                id += delta;
+                ids[i] = id;
+            }
+            return n;
+        }
+
+        /**
+         * 可能包含 id 的块：块首序号不大于 id 的最后一块，没有时返回 -1
+         */
+        private int blockOf(int id) {
+            int low = 0;
+            int high = blocks - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (blockFirst[mid] <= id) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return high;
+        }
+    }
+
+    /**
+     * 查询中的一个倒排表，缓存最近解码的一块；查询按序号从大到小进行，通常落在同一块
+     */
+    private static final class Cursor {
+        private final Postings postings;
+        private final int[] ids = new int[BLOCK_SIZE];
+        private int block = -1;
+        private int size;
+
+        private Cursor(Postings postings) {
+            this.postings = postings;
+        }
+
+        private boolean contains(int id) {
+            int target = postings.blockOf(id);
+            if (target < 0) {
+                return false;
+            }
+            if (target != block) {
+                size = postings.decodeBlock(target, ids);
+                block = target;
+            }
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.cn.pstoolkit.llm;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 有 token 预算的对话上下文，替代客户端里不断增长的 conversationHistory。
+ * <ul>
+ *     <li>system 消息固定保留在开头，不参与裁剪</li>
+ *     <li>其余消息组成滑动窗口，估算的 token 数（{@link TokenEstimator}）超过预算时从最早的开始移出，
+ *     一次移到预算的 3/4，避免之后每轮都要裁剪；最后一条消息总是保留</li>
+ *     <li>移出的消息交给 {@link Summarizer} 合并进滚动摘要，作为一条 system 消息放在固定消息之后；
+ *     没有 Summarizer 时直接丢弃</li>
+ * </ul>
+ * 每条消息只在加入时序列化一次，请求体由缓存的 messages 数组拼接而成，稳定的前缀不会每轮重新编码。
+ * 裁剪在生成请求时进行：{@link LlmClient#chatAsync(LlmEndpoint, ConversationContext)} 等方法在虚拟线程上生成请求。
+ * 摘要在锁外计算，期间 UI 线程上的 {@link #add}、{@link #clear} 不会等待模型摘要；裁剪之间互相排队。线程安全。
+ * <pre>
+ * ConversationContext context = new ConversationContext(6000, Summarizer.extractive(80, 1200));
+ * context.add(ChatMessage.user(text));
+ * LlmClient.shared().streamAsync(endpoint, context, onDelta).thenAccept(reply -&gt; context.add(ChatMessage.assistant(reply)));
+ * </pre>
+ */
+public final class ConversationContext {
+
+    public static final int DEFAULT_MAX_TOKENS = 6000;
+
+    private static final Gson GSON = new Gson();
+    private static final String SUMMARY_PREFIX = "以下是更早对话的摘要：\n";
+    private static final double LOW_WATERMARK = 0.75;
+
+    private final int maxTokens;
+    private final Summarizer summarizer;
+    private final List<Turn> pinned = new ArrayList<>();
+    private final ArrayDeque<Turn> window = new ArrayDeque<>();
+    /**
+     * 固定消息、摘要、窗口依次序列化后以逗号拼接，即请求体中 messages 数组的内容
+     */
+    private final StringBuilder messagesJson = new StringBuilder();
+    /**
+     * 同一时间只有一个线程在裁剪和摘要，保证每次摘要都基于上一次的结果
+     */
+    private final Object trimLock = new Object();
+    private Turn summary;
+    /**
+     * clear 时递增，clear 之前开始的摘要结果作废
+     */
+    private long generation;
+    private int pinnedTokens;
+    private int windowTokens;
+    private long evictedCount;
+
+    /**
+     * 默认预算，移出的消息做本地摘要（每条保留开头 80 字，摘要最多 1200 字）
+     */
+    public ConversationContext() {
+        this(DEFAULT_MAX_TOKENS, Summarizer.extractive(80, 1200));
+    }
+
+    /**
+     * @param maxTokens  请求中消息部分的 token 预算
+     * @param summarizer 移出消息的摘要方式，null 表示直接丢弃
+     */
+    public ConversationContext(int maxTokens, Summarizer summarizer) {
+        if (maxTokens <= 0) {
+            throw new IllegalArgumentException("maxTokens must be positive: " + maxTokens);
+        }
+        this.maxTokens = maxTokens;
+        this.summarizer = summarizer;
+    }
+
+    /**
+     * 追加一条消息，system 消息固定保留
+     */
+    public synchronized void add(ChatMessage message) {
+        Turn turn = new Turn(message);
+        if ("system".equals(message.role())) {
+            pinned.add(turn);
+            pinnedTokens += turn.tokens;
+            rebuildJson();
+        } else {
+            window.addLast(turn);
+            windowTokens += turn.tokens;
+            appendJson(turn);
+        }
+    }
+
+    public synchronized void addAll(Collection<ChatMessage> messages) {
+        messages.forEach(this::add);
+    }
+
+    /**
+     * 裁剪后实际发送的消息：固定消息、摘要、窗口
+     */
+    public List<ChatMessage> messages() {
+        trim();
+        synchronized (this) {
+            List<ChatMessage> result = new ArrayList<>(pinned.size() + window.size() + 1);
+            pinned.forEach(turn -> result.add(turn.message));
+            if (summary != null) {
+                result.add(summary.message);
+            }
+            window.forEach(turn -> result.add(turn.message));
+            return result;
+        }
+    }
+
+    /**
+     * 裁剪后的完整请求体，与 {@link LlmClient} 按消息列表生成的请求体相同
+     */
+    public String toRequestJson(String model, boolean stream) {
+        trim();
+        String modelJson = GSON.toJson(model);
+        synchronized (this) {
+            return new StringBuilder(messagesJson.length() + modelJson.length() + 40)
+                    .append("{\"model\":").append(modelJson)
+                    .append(",\"messages\":[").append(messagesJson)
+                    .append("],\"stream\":").append(stream)
+                    .append('}')
+                    .toString();
+        }
+    }
+
+    /**
+     * 清空窗口和摘要，固定的 system 消息保留
+     */
+    public synchronized void clear() {
+        window.clear();
+        windowTokens = 0;
+        summary = null;
+        generation++;
+        rebuildJson();
+    }
+
+    /**
+     * 当前消息的估算 token 数（含回复开头的固定开销），未裁剪时可能超过预算
+     */
+    public synchronized int getTokenCount() {
+        return totalTokens();
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    public synchronized String getSummary() {
+        return summary == null ? "" : summary.message.content().substring(SUMMARY_PREFIX.length());
+    }
+
+    /**
+     * 累计移出窗口的消息数
+     */
+    public synchronized long getEvictedCount() {
+        return evictedCount;
+    }
+
+    public synchronized int size() {
+        return pinned.size() + window.size() + (summary == null ? 0 : 1);
+    }
+
+    /**
+     * 移出消息在锁内进行，摘要在锁外计算，结果再回到锁内写入
+     */
+    private void trim() {
+        synchronized (trimLock) {
+            // 每轮至少移出一条；摘要变长后仍超出预算则继续移出并重新摘要
+            for (;;) {
+                List<ChatMessage> evicted;
+                String previous;
+                long round;
+                synchronized (this) {
+                    if (totalTokens() <= maxTokens || window.size() <= 1) {
+                        return;
+                    }
+                    evicted = evict((int) (maxTokens * LOW_WATERMARK));
+                    rebuildJson();
+                    if (summarizer == null) {
+                        continue;
+                    }
+                    previous = getSummary();
+                    round = generation;
+                }
+                String next = summarizer.summarize(previous, evicted);
+                synchronized (this) {
+                    if (round == generation) {
+                        summary = next == null || next.isBlank() ? null : new Turn(ChatMessage.system(SUMMARY_PREFIX + next));
+                        rebuildJson();
+                    }
+                }
+            }
+        }
+    }
+
+    private List<ChatMessage> evict(int target) {
+        List<ChatMessage> evicted = new ArrayList<>();
+        while (window.size() > 1 && totalTokens() > target) {
+            evicted.add(evictFirst());
+        }
+        // 窗口不以 assistant 开头：失去提问的回复对模型没有意义
+        while (window.size() > 1 && "assistant".equals(window.peekFirst().message.role())) {
+            evicted.add(evictFirst());
+        }
+        return evicted;
+    }
+
+    private ChatMessage evictFirst() {
+        Turn turn = window.removeFirst();
+        windowTokens -= turn.tokens;
+        evictedCount++;
+        return turn.message;
+    }
+
+    private int totalTokens() {
+        return pinnedTokens + (summary == null ? 0 : summary.tokens) + windowTokens + TokenEstimator.REPLY_PRIMING;
+    }
+
+    private void rebuildJson() {
+        messagesJson.setLength(0);
+        pinned.forEach(this::appendJson);
+        if (summary != null) {
+            appendJson(summary);
+        }
+        window.forEach(this::appendJson);
+    }
+
+    private void appendJson(Turn turn) {
+        if (!messagesJson.isEmpty()) {
+            messagesJson.append(',');
+        }
+        messagesJson.append(turn.json);
+    }
+
+    private static final class Turn {
+        private final ChatMessage message;
+        private final int tokens;
+        private final String json;
+
+        private Turn(ChatMessage message) {
+            this.message = message;
+            this.tokens = TokenEstimator.estimate(message);
+            this.json = GSON.toJson(message);
+        }
+    }
+}
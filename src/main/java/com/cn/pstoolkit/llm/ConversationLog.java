@@ -0,0 +1,469 @@
+package com.cn.pstoolkit.llm;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorOutputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * 本地持久化的对话记录，只追加不修改。
+ * <p>
+ * 目录下按消息序号分段，每段一个数据文件和一个索引文件：
+ * <ul>
+ *     <li>{@code 00000000000000000000.log}：连续的记录，每条为 [长度 int][CRC32 int][role UTF-8][0][content UTF-8]</li>
+ *     <li>{@code 00000000000000000000.idx}：每条记录在数据文件中的偏移（long），第 n 个即第 n 条消息</li>
+ * </ul>
+ * 数据文件超过 segmentBytes 后封存，新消息写入下一段；{@link #compact()} 把封存的段用 LZ4 压缩为 {@code .log.lz4}，索引不变。
+ * <p>
+ * 打开时只读取各段索引文件的大小，最后一段（写入段）校验索引尾部和最后一条记录，补齐或截掉崩溃时写了一半的内容，
+ * 不扫描历史数据。写入段按索引只读取请求的那几条记录，显示最近的消息只涉及这一段；封存段在访问时整段读入（或解压）并软引用缓存。
+ * 数据文件不做内存映射：映射在 GC 之前不会释放，Windows 上会导致 {@link #compact()}、{@link #clear()} 删除文件失败。
+ * 追加不强制刷盘，需要时调用 {@link #sync()}。线程安全。
+ * <pre>
+ * try (ConversationLog history = ConversationLog.open(dir)) {
+ *     history.append(ChatMessage.user(text));
+ *     List&lt;ChatMessage&gt; recent = history.tail(200);
+ * }
+ * </pre>
+ */
+@Slf4j
+public final class ConversationLog implements Closeable {
+
+    public static final long DEFAULT_SEGMENT_BYTES = 4L * 1024 * 1024;
+
+    private static final int HEADER_BYTES = 8;
+    private static final String LOG = ".log";
+    private static final String INDEX = ".idx";
+    private static final String COMPRESSED = ".log.lz4";
+    private static final String TEMP = ".tmp";
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active;
+    private long size;
+    private boolean closed;
+
+    private ConversationLog(Path dir, long segmentBytes) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+    }
+
+    public static ConversationLog open(Path dir) throws IOException {
+        return open(dir, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * 打开（不存在时创建）目录下的对话记录
+     *
+     * @param segmentBytes 每段数据文件的大小上限，超过后写入新的一段
+     */
+    public static ConversationLog open(Path dir, long segmentBytes) throws IOException {
+        if (segmentBytes <= 0 || segmentBytes > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("segmentBytes out of range: " + segmentBytes);
+        }
+        Files.createDirectories(dir);
+        ConversationLog conversationLog = new ConversationLog(dir, segmentBytes);
+        conversationLog.load();
+        return conversationLog;
+    }
+
+    /**
+     * 追加一条消息，返回它的序号
+     */
+    public synchronized long append(ChatMessage message) throws IOException {
+        ensureOpen();
+        byte[] role = message.role().getBytes(StandardCharsets.UTF_8);
+        byte[] content = message.content() == null ? new byte[0] : message.content().getBytes(StandardCharsets.UTF_8);
+        int length = role.length + 1 + content.length;
+        if (active.count > 0 && active.logSize + HEADER_BYTES + length > segmentBytes) {
+            roll();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(role);
+        crc.update(0);
+        crc.update(content);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + length)
+                .putInt(length)
+                .putInt((int) crc.getValue())
+                .put(role)
+                .put((byte) 0)
+                .put(content)
+                .flip();
+        // 先写数据再写索引，崩溃时最多多出一条未索引的记录，打开时补上
+        writeFully(active.logChannel, record, active.logSize);
+        writeFully(active.indexChannel, ByteBuffer.allocate(Long.BYTES).putLong(0, active.logSize), (long) active.count * Long.BYTES);
+        active.addOffset(active.logSize);
+        active.logSize += record.capacity();
+        return size++;
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized ChatMessage get(long index) {
+        return read(index, index + 1).getFirst();
+    }
+
+    /**
+     * 读取序号在 [from, to) 的消息
+     */
+    public synchronized List<ChatMessage> read(long from, long to) {
+        ensureOpen();
+        Objects.checkFromToIndex(from, to, size);
+        List<ChatMessage> result = new ArrayList<>((int) (to - from));
+        int segmentIndex = locate(from);
+        long next = from;
+        while (next < to) {
+            Segment segment = segments.get(segmentIndex++);
+            try {
+                long[] offsets = segment.offsets();
+                long end = Math.min(to, segment.first + segment.count);
+                int record = (int) (next - segment.first);
+                long start = offsets[record];
+                ByteBuffer data = segment.data(record, (int) (end - segment.first));
+                for (; next < end; next++) {
+                    result.add(decode(data, offsets[(int) (next - segment.first)] - start));
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to read segment " + segment.logPath, e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 最近的 count 条消息
+     */
+    public synchronized List<ChatMessage> tail(int count) {
+        return read(Math.max(0, size - count), size);
+    }
+
+    /**
+     * 把所有封存且未压缩的段压缩为 LZ4，返回本次压缩的段数
+     */
+    public synchronized int compact() throws IOException {
+        ensureOpen();
+        int compacted = 0;
+        for (Segment segment : segments) {
+            if (segment == active || segment.compressed) {
+                continue;
+            }
+            Path temp = dir.resolve(segment.compressedPath.getFileName() + TEMP);
+            try (OutputStream out = new FramedLZ4CompressorOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                Files.copy(segment.logPath, out);
+            }
+            // 压缩文件到位后才删除原文件，两者同时存在时打开会以原文件为准；上次删除失败留下的压缩文件直接覆盖
+            Files.move(temp, segment.compressedPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(segment.logPath);
+            segment.compressed = true;
+            compacted++;
+        }
+        return compacted;
+    }
+
+    /**
+     * 删除所有消息。
+     * 从最新的段往前删，每段先删索引文件，删掉后才从内存中移除；中途失败时磁盘和内存里剩下的仍是同一份较短的记录，
+     * 并且总会重新打开一个写入段
+     */
+    public synchronized void clear() throws IOException {
+        ensureOpen();
+        active.close();
+        try {
+            while (!segments.isEmpty()) {
+                Segment segment = segments.getLast();
+                Files.deleteIfExists(segment.indexPath);
+                segments.removeLast();
+                Files.deleteIfExists(segment.logPath);
+                Files.deleteIfExists(segment.compressedPath);
+            }
+        } finally {
+            Segment last = segments.isEmpty() ? null : segments.getLast();
+            size = last == null ? 0 : last.first + last.count;
+            startSegment(size);
+        }
+    }
+
+    /**
+     * 把写入段刷到磁盘
+     */
+    public synchronized void sync() throws IOException {
+        ensureOpen();
+        active.logChannel.force(false);
+        active.indexChannel.force(false);
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            active.close();
+        }
+    }
+
+    private void load() throws IOException {
+        List<Long> firsts = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMP)) {
+                    Files.delete(file);
+                } else if (name.matches("\\d{20}\\" + INDEX)) {
+                    firsts.add(Long.parseLong(name.substring(0, 20)));
+                }
+            }
+        }
+        firsts.sort(null);
+        for (long first : firsts) {
+            Segment segment = new Segment(dir, first);
+            if (Files.exists(segment.logPath)) {
+                Files.deleteIfExists(segment.compressedPath);
+            } else {
+                segment.compressed = Files.exists(segment.compressedPath);
+            }
+            segment.count = (int) (Files.size(segment.indexPath) / Long.BYTES);
+            segments.add(segment);
+        }
+        if (segments.isEmpty() || segments.getLast().compressed) {
+            Segment last = segments.isEmpty() ? null : segments.getLast();
+            startSegment(last == null ? 0 : last.first + last.count);
+        } else {
+            active = segments.getLast();
+            recover(active);
+        }
+        size = active.first + active.count;
+    }
+
+    /**
+     * 打开写入段：信任首尾相接的索引，只校验最后一条记录，再向后扫描索引之后写完整的记录
+     */
+    private void recover(Segment segment) throws IOException {
+        segment.openChannels();
+        long logSize = segment.logChannel.size();
+        long[] offsets = readOffsets(segment.indexChannel, segment.count);
+        int valid = 0;
+        while (valid < offsets.length && offsets[valid] < logSize
+                && (valid == 0 ? offsets[0] == 0 : offsets[valid] > offsets[valid - 1])) {
+            valid++;
+        }
+        long end = 0;
+        while (valid > 0 && (end = recordEnd(segment.logChannel, offsets[valid - 1], logSize)) < 0) {
+            valid--;
+            end = 0;
+        }
+        int indexed = valid;
+        long next;
+        while ((next = recordEnd(segment.logChannel, end, logSize)) > 0) {
+            if (valid == offsets.length) {
+                offsets = Arrays.copyOf(offsets, Math.max(16, valid * 2));
+            }
+            offsets[valid++] = end;
+            end = next;
+        }
+        if (end < logSize) {
+            log.warn("Conversation log {} has {} bytes of incomplete records, truncating", segment.logPath, logSize - end);
+            segment.logChannel.truncate(end);
+        }
+        if (indexed != segment.count || valid != indexed) {
+            segment.indexChannel.truncate((long) indexed * Long.BYTES);
+            for (int i = indexed; i < valid; i++) {
+                writeFully(segment.indexChannel, ByteBuffer.allocate(Long.BYTES).putLong(0, offsets[i]), (long) i * Long.BYTES);
+            }
+        }
+        segment.offsets = offsets;
+        segment.count = valid;
+        segment.logSize = end;
+    }
+
+    private void roll() throws IOException {
+        active.logChannel.force(false);
+        active.indexChannel.force(false);
+        active.close();
+        startSegment(size);
+    }
+
+    private void startSegment(long first) throws IOException {
+        Segment segment = new Segment(dir, first);
+        segment.openChannels();
+        segment.logChannel.truncate(0);
+        segment.indexChannel.truncate(0);
+        segment.offsets = new long[16];
+        segments.add(segment);
+        active = segment;
+    }
+
+    private int locate(long index) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (segments.get(mid).first <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Conversation log " + dir + " is closed");
+        }
+    }
+
+    private static ChatMessage decode(ByteBuffer data, long offset) {
+        int position = (int) offset;
+        byte[] payload = new byte[data.getInt(position)];
+        data.get(position + HEADER_BYTES, payload);
+        int separator = 0;
+        while (payload[separator] != 0) {
+            separator++;
+        }
+        return new ChatMessage(new String(payload, 0, separator, StandardCharsets.UTF_8),
+                new String(payload, separator + 1, payload.length - separator - 1, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * offset 处记录完整且校验通过时返回记录结尾的偏移，否则返回 -1
+     */
+    private static long recordEnd(FileChannel channel, long offset, long logSize) throws IOException {
+        if (offset + HEADER_BYTES > logSize) {
+            return -1;
+        }
+        ByteBuffer header = readFully(channel, offset, HEADER_BYTES);
+        int length = header.getInt(0);
+        if (length <= 0 || offset + HEADER_BYTES + length > logSize) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(readFully(channel, offset + HEADER_BYTES, length));
+        return (int) crc.getValue() == header.getInt(4) ? offset + HEADER_BYTES + length : -1;
+    }
+
+    private static long[] readOffsets(FileChannel index, int count) throws IOException {
+        long[] offsets = new long[Math.max(16, count)];
+        readFully(index, 0, count * Long.BYTES).asLongBuffer().get(offsets, 0, count);
+        return offsets;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, start + buffer.position());
+        }
+    }
+
+    private static final class Segment {
+        private final long first;
+        private final Path logPath;
+        private final Path indexPath;
+        private final Path compressedPath;
+        private boolean compressed;
+        private int count;
+        /**
+         * 写入段常驻内存；封存段访问时从索引文件读取
+         */
+        private long[] offsets;
+        private long logSize;
+        private FileChannel logChannel;
+        private FileChannel indexChannel;
+        private SoftReference<ByteBuffer> loaded = new SoftReference<>(null);
+
+        private Segment(Path dir, long first) {
+            String name = String.format("%020d", first);
+            this.first = first;
+            this.logPath = dir.resolve(name + LOG);
+            this.indexPath = dir.resolve(name + INDEX);
+            this.compressedPath = dir.resolve(name + COMPRESSED);
+        }
+
+        private void openChannels() throws IOException {
+            logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            indexChannel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        private void addOffset(long offset) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = offset;
+        }
+
+        private long[] offsets() throws IOException {
+            if (offsets == null) {
+                try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+                    offsets = readOffsets(channel, count);
+                }
+            }
+            return offsets;
+        }
+
+        /**
+         * 第 from 到 to 条（不含）记录所在的数据，从第 from 条的偏移开始。
+         * 写入段只读取这一段范围；封存段整段读入堆内缓存，返回其切片
+         */
+        private ByteBuffer data(int from, int to) throws IOException {
+            long start = offsets[from];
+            if (logChannel != null) {
+                long end = to < count ? offsets[to] : logSize;
+                return readFully(logChannel, start, (int) (end - start));
+            }
+            ByteBuffer data = loaded.get();
+            if (data == null) {
+                try (InputStream in = compressed
+                        ? new FramedLZ4CompressorInputStream(new BufferedInputStream(Files.newInputStream(compressedPath)))
+                        : Files.newInputStream(logPath)) {
+                    data = ByteBuffer.wrap(in.readAllBytes());
+                }
+                loaded = new SoftReference<>(data);
+            }
+            return data.slice((int) start, data.capacity() - (int) start);
+        }
+
+        private void close() throws IOException {
+            if (logChannel != null) {
+                logChannel.close();
+                indexChannel.close();
+                logChannel = null;
+                indexChannel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.cn.pstoolkit.llm;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 从流式 chunk 的 JSON（UTF-8 字节）中直接取出 choices[0].delta.content，不构建 JsonObject 树。
+ * <p>
+ * 只沿着这一条路径前进，其余字段按字节跳过；不含转义的字符串直接由原始字节构造，
+ * 含转义时在可复用的缓冲里反转义，每个 token 只分配结果 String 本身。
+ * 不做完整的 JSON 校验，格式错误时返回 null；键名中的转义不识别（实际接口不会出现）。
+ * 非线程安全，一个流一个实例。
+ */
+public final class DeltaExtractor {
+
+    private static final byte[] CHOICES = "choices".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DELTA = "delta".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONTENT = "content".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buf;
+    private int pos;
+    private int end;
+    private byte[] scratch = new byte[128];
+
+    /**
+     * @return choices[0].delta.content，不存在、为 null 或格式错误时返回 null
+     */
+    public String extract(byte[] json, int offset, int length) {
+        buf = json;
+        pos = offset;
+        end = offset + length;
+        try {
+            if (enterObject() && findMember(CHOICES) && enterArray() && enterObject()
+                    && findMember(DELTA) && enterObject() && findMember(CONTENT)) {
+                return readString();
+            }
+            return null;
+        } finally {
+            buf = null;
+        }
+    }
+
+    private boolean enterObject() {
+        skipWhitespace();
+        if (pos < end && buf[pos] == '{') {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 进入非空数组，停在第一个元素前
+     */
+    private boolean enterArray() {
+        skipWhitespace();
+        if (pos < end && buf[pos] == '[') {
+            pos++;
+            skipWhitespace();
+            return pos < end && buf[pos] != ']';
+        }
+        return false;
+    }
+
+    /**
+     * 在当前对象的成员里查找 key，找到时停在它的值前
+     */
+    private boolean findMember(byte[] key) {
+        for (;;) {
+            skipWhitespace();
+            if (pos >= end || buf[pos] != '"') {
+                return false;
+            }
+            int keyStart = ++pos;
+            if (!skipStringBody()) {
+                return false;
+            }
+            boolean matched = equals(keyStart, pos - 1 - keyStart, key);
+            skipWhitespace();
+            if (pos >= end || buf[pos] != ':') {
+                return false;
+            }
+            pos++;
+            skipWhitespace();
+            if (matched) {
+                return true;
+            }
+            if (!skipValue()) {
+                return false;
+            }
+            skipWhitespace();
+            if (pos >= end || buf[pos] != ',') {
+                return false;
+            }
+            pos++;
+        }
+    }
+
+    private boolean skipValue() {
+        if (pos >= end) {
+            return false;
+        }
+        byte b = buf[pos];
+        if (b == '"') {
+            pos++;
+            return skipStringBody();
+        }
+        if (b == '{' || b == '[') {
+            // 容器按括号深度跳过，字符串里的括号不计数
+            int depth = 0;
+            while (pos < end) {
+                byte c = buf[pos++];
+                if (c == '"') {
+                    if (!skipStringBody()) {
+                        return false;
+                    }
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if ((c == '}' || c == ']') && --depth == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        // 数字、true、false、null
+        while (pos < end) {
+            b = buf[pos];
+            if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+                return true;
+            }
+            pos++;
+        }
+        return false;
+    }
+
+    /**
+     * 从开引号之后跳到闭引号之后
+     */
+    private boolean skipStringBody() {
+        while (pos < end) {
+            byte b = buf[pos++];
+            if (b == '\\') {
+                pos++;
+            } else if (b == '"') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String readString() {
+        if (pos >= end || buf[pos] != '"') {
+            return null;
+        }
+        int start = ++pos;
+        while (pos < end) {
+            byte b = buf[pos];
+            if (b == '"') {
+                return new String(buf, start, pos - start, StandardCharsets.UTF_8);
+            }
+            if (b == '\\') {
+                return readEscaped(start);
+            }
+            pos++;
+        }
+        return null;
+    }
+
+    /**
+     * 含转义的字符串：先拷贝已扫描的部分，再逐个反转义成 UTF-8 字节
+     */
+    private String readEscaped(int start) {
+        int n = pos - start;
+        ensureScratch(n + 16);
+        System.arraycopy(buf, start, scratch, 0, n);
+        while (pos < end) {
+            byte b = buf[pos++];
+            if (b == '"') {
+                return new String(scratch, 0, n, StandardCharsets.UTF_8);
+            }
+            ensureScratch(n + 8);
+            if (b != '\\') {
+                scratch[n++] = b;
+                continue;
+            }
+            if (pos >= end) {
+                return null;
+            }
+            byte e = buf[pos++];
+            switch (e) {
+                case 'n' -> scratch[n++] = '\n';
+                case 't' -> scratch[n++] = '\t';
+                case 'r' -> scratch[n++] = '\r';
+                case 'b' -> scratch[n++] = '\b';
+                case 'f' -> scratch[n++] = '\f';
+                case 'u' -> {
+                    int c = readHex4();
+                    if (c < 0) {
+                        return null;
+                    }
+                    if (Character.isHighSurrogate((char) c) && pos + 6 <= end
+                            && buf[pos] == '\\' && buf[pos + 1] == 'u') {
+                        pos += 2;
+                        int low = readHex4();
+                        if (low < 0) {
+                            return null;
+                        }
+                        if (Character.isLowSurrogate((char) low)) {
+                            c = Character.toCodePoint((char) c, (char) low);
+                        } else {
+                            n = encodeUtf8(c, n);
+                            c = low;
+                        }
+                    }
+                    n = encodeUtf8(c, n);
+                }
+                // \" \\ \/ 以及其他字符原样保留
+                default -> scratch[n++] = e;
+            }
+        }
+        return null;
+    }
+
+    private int readHex4() {
+        if (pos + 4 > end) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(buf[pos++], 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * 单独出现的代理项编码为 U+FFFD
+     */
+    private int encodeUtf8(int c, int n) {
+        if (c <= 0xFFFF && Character.isSurrogate((char) c)) {
+            c = 0xFFFD;
+        }
+        if (c < 0x80) {
+            scratch[n++] = (byte) c;
+        } else if (c < 0x800) {
+            scratch[n++] = (byte) (0xC0 | (c >> 6));
+            scratch[n++] = (byte) (0x80 | (c & 0x3F));
+        } else if (c < 0x10000) {
+            scratch[n++] = (byte) (0xE0 | (c >> 12));
+            scratch[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            scratch[n++] = (byte) (0x80 | (c & 0x3F));
+        } else {
+            scratch[n++] = (byte) (0xF0 | (c >> 18));
+            scratch[n++] = (byte) (0x80 | ((c >> 12) & 0x3F));
+            scratch[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            scratch[n++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return n;
+    }
+
+    private void ensureScratch(int capacity) {
+        if (capacity > scratch.length) {
+            scratch = Arrays.copyOf(scratch, Math.max(scratch.length << 1, capacity));
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            byte b = buf[pos];
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private boolean equals(int start, int length, byte[] key) {
+        if (length != key.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buf[start + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,189 @@
+package com.cn.pstoolkit.llm;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * OpenAI 兼容接口的共享客户端。
+ * <p>
+ * 整个进程共用一个 HttpClient（HTTP/2 + 虚拟线程执行器），连续发送时复用 TLS 会话和 HTTP/2 连接，
+ * 不再为每次请求重新握手、新建 selector 线程，主要缩短重复发送时的首字延迟。
+ * 桌面客户端使用 {@link #shared()}，Spring 应用注入 {@link LlmConfig} 创建的 Bean（超时来自 pstoolkit.llm）。
+ * <pre>
+ * String reply = LlmClient.shared().stream(endpoint, history, token -&gt; ui.append(token));
+ * </pre>
+ */
+public class LlmClient implements AutoCloseable {
+
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    public static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(60);
+
+    private static final Gson GSON = new Gson();
+
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final Duration readTimeout;
+
+    public LlmClient(Duration connectTimeout, Duration readTimeout) {
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("llm-", 0).factory());
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .executor(executor)
+                .build();
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * 进程内共享的默认实例
+     */
+    public static LlmClient shared() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * 非流式对话，返回完整回复
+     *
+     * @throws LlmException 状态码不是 200 或网络异常
+     */
+    public String chat(LlmEndpoint endpoint, List<ChatMessage> messages) {
+        return chat(endpoint, requestJson(endpoint, messages, false));
+    }
+
+    /**
+     * 按上下文的预算裁剪后发送，见 {@link #chat(LlmEndpoint, List)}
+     */
+    public String chat(LlmEndpoint endpoint, ConversationContext context) {
+        return chat(endpoint, context.toRequestJson(endpoint.model(), false));
+    }
+
+    private String chat(LlmEndpoint endpoint, String body) {
+        HttpResponse<String> response = send(endpoint, body, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new LlmException(response.statusCode(), "HTTP " + response.statusCode() + " - " + response.body());
+        }
+        ChatResponse chatResponse = GSON.fromJson(response.body(), ChatResponse.class);
+        if (chatResponse == null || chatResponse.choices() == null || chatResponse.choices().isEmpty()
+                || chatResponse.choices().get(0).message() == null) {
+            return "";
+        }
+        return chatResponse.choices().get(0).message().content();
+    }
+
+    /**
+     * 流式对话，每收到一段增量调用一次 onDelta，返回完整回复。
+     * 响应体由 {@link SseSubscriber} 按字节增量解析，onDelta 在 HttpClient 的接收线程（虚拟线程）上回调，
+     * 调用线程阻塞到流结束。
+     *
+     * @throws LlmException 状态码不是 200、网络异常或 onDelta 抛出异常
+     */
+    public String stream(LlmEndpoint endpoint, List<ChatMessage> messages, Consumer<String> onDelta) {
+        return stream(endpoint, requestJson(endpoint, messages, true), onDelta);
+    }
+
+    /**
+     * 按上下文的预算裁剪后发送，见 {@link #stream(LlmEndpoint, List, Consumer)}
+     */
+    public String stream(LlmEndpoint endpoint, ConversationContext context, Consumer<String> onDelta) {
+        return stream(endpoint, context.toRequestJson(endpoint.model(), true), onDelta);
+    }
+
+    private String stream(LlmEndpoint endpoint, String body, Consumer<String> onDelta) {
+        HttpResponse<String> response = send(endpoint, body, info -> info.statusCode() == 200
+                ? new SseSubscriber(onDelta)
+                : HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8));
+        if (response.statusCode() != 200) {
+            throw new LlmException(response.statusCode(), "HTTP " + response.statusCode() + " - " + response.body());
+        }
+        return response.body();
+    }
+
+    /**
+     * 在虚拟线程上执行 {@link #chat}
+     */
+    public CompletableFuture<String> chatAsync(LlmEndpoint endpoint, List<ChatMessage> messages) {
+        return CompletableFuture.supplyAsync(() -> chat(endpoint, messages), executor);
+    }
+
+    /**
+     * 在虚拟线程上执行 {@link #stream}，onDelta 在该虚拟线程上回调
+     */
+    public CompletableFuture<String> streamAsync(LlmEndpoint endpoint, List<ChatMessage> messages,
+                                                 Consumer<String> onDelta) {
+        return CompletableFuture.supplyAsync(() -> stream(endpoint, messages, onDelta), executor);
+    }
+
+    /**
+     * 在虚拟线程上裁剪上下文并执行 {@link #chat}，摘要请求也不占用调用线程
+     */
+    public CompletableFuture<String> chatAsync(LlmEndpoint endpoint, ConversationContext context) {
+        return CompletableFuture.supplyAsync(() -> chat(endpoint, context), executor);
+    }
+
+    /**
+     * 在虚拟线程上裁剪上下文并执行 {@link #stream}，onDelta 在该虚拟线程上回调
+     */
+    public CompletableFuture<String> streamAsync(LlmEndpoint endpoint, ConversationContext context,
+                                                 Consumer<String> onDelta) {
+        return CompletableFuture.supplyAsync(() -> stream(endpoint, context, onDelta), executor);
+    }
+
+    private static String requestJson(LlmEndpoint endpoint, List<ChatMessage> messages, boolean stream) {
+        return GSON.toJson(new ChatRequest(endpoint.model(), messages, stream));
+    }
+
+    private <T> HttpResponse<T> send(LlmEndpoint endpoint, String body, HttpResponse.BodyHandler<T> handler) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(endpoint.apiUrl()))
+                .timeout(readTimeout)
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + endpoint.apiKey())
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        try {
+            return httpClient.send(request, handler);
+        } catch (IOException e) {
+            if (e.getCause() instanceof LlmException cause) {
+                throw cause;
+            }
+            throw new LlmException("Request to " + endpoint.apiUrl() + " failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LlmException("Request to " + endpoint.apiUrl() + " interrupted", e);
+        }
+    }
+
+    /**
+     * 关闭连接和执行器，共享实例随进程退出，不需要关闭
+     */
+    @Override
+    public void close() {
+        httpClient.close();
+        executor.close();
+    }
+
+    record ChatRequest(String model, List<ChatMessage> messages, boolean stream) {
+    }
+
+    record ChatResponse(List<Choice> choices) {
+    }
+
+    record Choice(ChatMessage message) {
+    }
+
+    private static final class Holder {
+        private static final LlmClient INSTANCE = new LlmClient(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+    }
+}
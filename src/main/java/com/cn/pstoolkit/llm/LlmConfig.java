@@ -0,0 +1,15 @@
+package com.cn.pstoolkit.llm;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(LlmProperties.class)
+public class LlmConfig {
+
+    @Bean(destroyMethod = "close")
+    public LlmClient llmClient(LlmProperties properties) {
+        return new LlmClient(properties.getConnectTimeout(), properties.getReadTimeout());
+    }
+}
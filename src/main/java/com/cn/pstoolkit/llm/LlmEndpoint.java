@@ -0,0 +1,11 @@
+package com.cn.pstoolkit.llm;
+
+/**
+ * 一个 OpenAI 兼容的对话接口
+ *
+ * @param apiUrl 完整的 chat/completions 地址
+ */
+public record LlmEndpoint(String apiUrl, String apiKey, String model) {
+
+    public static final String DEFAULT_API_URL = "https://api.openai.com/v1/chat/completions";
+}
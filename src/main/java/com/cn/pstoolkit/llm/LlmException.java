@@ -0,0 +1,25 @@
+package com.cn.pstoolkit.llm;
+
+import lombok.Getter;
+
+/**
+ * 接口返回非 200 状态码或网络异常
+ */
+@Getter
+public class LlmException extends RuntimeException {
+
+    /**
+     * HTTP 状态码，网络异常时为 -1
+     */
+    private final int statusCode;
+
+    public LlmException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public LlmException(String message, Throwable cause) {
+        super(message, cause);
+        this.statusCode = -1;
+    }
+}
@@ -0,0 +1,44 @@
+package com.cn.pstoolkit.llm;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * LLM 网关配置，前缀 pstoolkit.llm
+ */
+@Data
+@ConfigurationProperties("pstoolkit.llm")
+public class LlmProperties {
+
+    private String apiUrl = LlmEndpoint.DEFAULT_API_URL;
+    private String apiKey = "";
+    private String model = "gpt-4o-mini";
+    /**
+     * 建立连接（含 TLS 握手）的超时
+     */
+    private Duration connectTimeout = LlmClient.DEFAULT_CONNECT_TIMEOUT;
+    /**
+     * 等待响应头的超时，流式响应开始后不再受此限制
+     */
+    private Duration readTimeout = LlmClient.DEFAULT_READ_TIMEOUT;
+    /**
+     * 转发给上游的消息的 token 预算，超出时丢弃较早的消息（system 消息保留）
+     */
+    private int maxContextTokens = ConversationContext.DEFAULT_MAX_TOKENS;
+
+    public LlmEndpoint toEndpoint() {
+        return new LlmEndpoint(apiUrl, apiKey, model);
+    }
+
+    /**
+     * 按 maxContextTokens 裁剪的上下文，装入客户端传来的消息
+     */
+    public ConversationContext toContext(List<ChatMessage> messages) {
+        ConversationContext context = new ConversationContext(maxContextTokens, null);
+        context.addAll(messages);
+        return context;
+    }
+}
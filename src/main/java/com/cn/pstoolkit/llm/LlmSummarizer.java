@@ -0,0 +1,43 @@
+package com.cn.pstoolkit.llm;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 调用模型生成滚动摘要，见 {@link Summarizer#llm}
+ */
+@Slf4j
+final class LlmSummarizer implements Summarizer {
+
+    private static final String PROMPT = "把下面的对话压缩成不超过 200 字的摘要，保留事实、结论、用户偏好和未完成的事项，只输出摘要。";
+
+    private final LlmClient client;
+    private final LlmEndpoint endpoint;
+
+    LlmSummarizer(LlmClient client, LlmEndpoint endpoint) {
+        this.client = client;
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public String summarize(String previousSummary, List<ChatMessage> evicted) {
+        StringBuilder transcript = new StringBuilder();
+        if (!previousSummary.isEmpty()) {
+            transcript.append("之前的摘要：\n").append(previousSummary).append("\n\n");
+        }
+        for (ChatMessage message : evicted) {
+            transcript.append(message.role()).append(": ").append(message.content()).append('\n');
+        }
+        List<ChatMessage> request = new ArrayList<>();
+        request.add(ChatMessage.system(PROMPT));
+        request.add(ChatMessage.user(transcript.toString()));
+        try {
+            return client.chat(endpoint, request).strip();
+        } catch (LlmException e) {
+            log.warn("Failed to summarize {} evicted messages, dropping them: {}", evicted.size(), e.getMessage());
+            return previousSummary;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.cn.pstoolkit.llm;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 增量 SSE（text/event-stream）解码器，直接处理网络层的字节块。
+ * <p>
+ * 支持 LF、CRLF、CR 三种换行（CRLF 可以被拆在两个块里）、event 字段、多行 data（以 \n 拼接）、
+ * 注释行和开头的 UTF-8 BOM；id 和 retry 字段忽略。空行触发一次事件，流结束时未以空行结尾的事件按规范丢弃。
+ * <p>
+ * 行和 data 使用两个可复用的字节数组，稳态下不产生任何分配（event 字段出现时才创建一个 String）；
+ * 只有一行 data 的事件（最常见的情况）直接交出行缓冲，不再拷贝一次。
+ * 传给 {@link Handler} 的数组只在回调期间有效。非线程安全，一个流一个实例。
+ */
+public final class SseDecoder {
+
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+    private static final byte[] BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    /**
+     * 事件回调
+     */
+    @FunctionalInterface
+    public interface Handler {
+        /**
+         * @param event 事件类型，没有 event 字段时为 null
+         * @param data  data 内容（UTF-8），多行以 \n 连接，不含末尾换行
+         */
+        void onEvent(String event, byte[] data, int offset, int length);
+    }
+
+    private final Handler handler;
+
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private byte[] data = new byte[256];
+    private int dataOffset;
+    private int dataLength;
+    private boolean hasData;
+    private String event;
+    /**
+     * 上一个字节是 CR，下一个 LF 属于同一个换行
+     */
+    private boolean afterCr;
+    /**
+     * 还在检查开头 BOM 的字节数，-1 表示检查结束
+     */
+    private int bomIndex;
+
+    public SseDecoder(Handler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * 输入一块数据，读取 position 到 limit 之间的字节，position 移到 limit
+     */
+    public void feed(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            int start = buffer.arrayOffset() + buffer.position();
+            feed(buffer.array(), start, buffer.remaining());
+            buffer.position(buffer.limit());
+        } else {
+            while (buffer.hasRemaining()) {
+                accept(buffer.get());
+            }
+        }
+    }
+
+    /**
+     * 输入一块数据
+     */
+    public void feed(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            if (bomIndex >= 0 || afterCr) {
+                accept(bytes[i++]);
+                continue;
+            }
+            // 批量拷贝到下一个换行符为止
+            int start = i;
+            while (i < end && bytes[i] != LF && bytes[i] != CR) {
+                i++;
+            }
+            appendLine(bytes, start, i - start);
+            if (i < end) {
+                accept(bytes[i++]);
+            }
+        }
+    }
+
+    /**
+     * 流结束，丢弃没有以空行结束的事件
+     */
+    public void finish() {
+        lineLength = 0;
+        resetEvent();
+    }
+
+    private void accept(byte b) {
+        if (bomIndex >= 0) {
+            if (b == BOM[bomIndex]) {
+                if (++bomIndex == BOM.length) {
+                    bomIndex = -1;
+                }
+                return;
+            }
+            // 不是 BOM，把已经匹配的前缀当作普通内容
+            int matched = bomIndex;
+            bomIndex = -1;
+            appendLine(BOM, 0, matched);
+        }
+        if (b == LF) {
+            if (afterCr) {
+                afterCr = false;
+                return;
+            }
+            endLine();
+        } else if (b == CR) {
+            afterCr = true;
+            endLine();
+        } else {
+            afterCr = false;
+            if (lineLength == line.length) {
+                line = Arrays.copyOf(line, line.length << 1);
+            }
+            line[lineLength++] = b;
+        }
+    }
+
+    private void appendLine(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return;
+        }
+        if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length << 1, lineLength + length));
+        }
+        System.arraycopy(bytes, offset, line, lineLength, length);
+        lineLength += length;
+    }
+
+    private void endLine() {
+        int length = lineLength;
+        lineLength = 0;
+        if (length == 0) {
+            dispatch();
+            return;
+        }
+        if (line[0] == ':') {
+            return;
+        }
+        int colon = indexOf(line, length, (byte) ':');
+        int fieldLength = colon >= 0 ? colon : length;
+        int valueStart = colon >= 0 ? colon + 1 : length;
+        if (valueStart < length && line[valueStart] == ' ') {
+            valueStart++;
+        }
+        if (fieldIs("data", fieldLength)) {
+            appendData(valueStart, length - valueStart);
+        } else if (fieldIs("event", fieldLength)) {
+            event = new String(line, valueStart, length - valueStart, StandardCharsets.UTF_8);
+        }
+    }
+
+    private void appendData(int start, int length) {
+        if (!hasData) {
+            // 第一行 data：与行缓冲交换，避免拷贝
+            byte[] swap = data;
+            data = line;
+            line = swap;
+            dataOffset = start;
+            dataLength = length;
+            hasData = true;
+            return;
+        }
+        int required = dataOffset + dataLength + 1 + length;
+        if (required > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length << 1, required));
+        }
+        data[dataOffset + dataLength] = LF;
+        System.arraycopy(line, start, data, dataOffset + dataLength + 1, length);
+        dataLength += 1 + length;
+    }
+
+    private void dispatch() {
+        if (hasData) {
+            handler.onEvent(event, data, dataOffset, dataLength);
+        }
+        resetEvent();
+    }
+
+    private void resetEvent() {
+        hasData = false;
+        dataOffset = 0;
+        dataLength = 0;
+        event = null;
+    }
+
+    private boolean fieldIs(String name, int fieldLength) {
+        if (fieldLength != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < fieldLength; i++) {
+            if (line[i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] bytes, int length, byte target) {
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,108 @@
+package com.cn.pstoolkit.llm;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * 流式对话的响应体订阅者：ByteBuffer 直接进入 {@link SseDecoder}，data 交给 {@link DeltaExtractor}，
+ * 每个非空增量回调一次 onDelta，收到 [DONE] 后取消订阅并以完整回复结束。
+ * 每次只请求一批数据，onDelta 处理慢时背压会传到连接上。
+ */
+final class SseSubscriber implements HttpResponse.BodySubscriber<String> {
+
+    private static final byte[] DONE = "[DONE]".getBytes(StandardCharsets.US_ASCII);
+
+    private final Consumer<String> onDelta;
+    private final SseDecoder decoder = new SseDecoder(this::onEvent);
+    private final DeltaExtractor extractor = new DeltaExtractor();
+    private final StringBuilder reply = new StringBuilder();
+    private final CompletableFuture<String> body = new CompletableFuture<>();
+    private Flow.Subscription subscription;
+    private boolean done;
+
+    SseSubscriber(Consumer<String> onDelta) {
+        this.onDelta = onDelta;
+    }
+
+    @Override
+    public CompletionStage<String> getBody() {
+        return body;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+        if (done) {
+            return;
+        }
+        try {
+            for (ByteBuffer buffer : buffers) {
+                decoder.feed(buffer);
+                if (done) {
+                    subscription.cancel();
+                    body.complete(reply.toString());
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            // onDelta 抛出异常（例如下游已断开）时停止读取
+            done = true;
+            subscription.cancel();
+            body.completeExceptionally(e);
+            return;
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        body.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        decoder.finish();
+        body.complete(reply.toString());
+    }
+
+    private void onEvent(String event, byte[] data, int offset, int length) {
+        if (done) {
+            return;
+        }
+        if (isDone(data, offset, length)) {
+            done = true;
+            return;
+        }
+        if ("error".equals(event)) {
+            throw new LlmException(-1, "Stream error: " + new String(data, offset, length, StandardCharsets.UTF_8));
+        }
+        String delta = extractor.extract(data, offset, length);
+        if (delta != null && !delta.isEmpty()) {
+            reply.append(delta);
+            onDelta.accept(delta);
+        }
+    }
+
+    private static boolean isDone(byte[] data, int offset, int length) {
+        if (length != DONE.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (data[offset + i] != DONE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
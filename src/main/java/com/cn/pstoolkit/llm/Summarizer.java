@@ -0,0 +1,46 @@
+package com.cn.pstoolkit.llm;
+
+import java.util.List;
+
+/**
+ * 把移出上下文窗口的早期对话压缩进滚动摘要
+ */
+@FunctionalInterface
+public interface Summarizer {
+
+    /**
+     * @param previousSummary 之前的摘要，没有时为空串
+     * @param evicted         本次移出窗口的消息，按时间顺序
+     * @return 新的摘要，空串表示不保留
+     */
+    String summarize(String previousSummary, List<ChatMessage> evicted);
+
+    /**
+     * 本地摘要：每条消息保留开头 charsPerMessage 个字符，整个摘要只保留最后 maxChars 个字符。
+     * 不访问网络，开销可以忽略，适合在 UI 线程或请求线程上直接调用。
+     */
+    static Summarizer extractive(int charsPerMessage, int maxChars) {
+        return (previousSummary, evicted) -> {
+            StringBuilder summary = new StringBuilder(previousSummary);
+            for (ChatMessage message : evicted) {
+                String content = message.content() == null ? "" : message.content().replaceAll("\\s+", " ").strip();
+                if (content.length() > charsPerMessage) {
+                    content = content.substring(0, charsPerMessage) + "…";
+                }
+                if (!summary.isEmpty()) {
+                    summary.append('\n');
+                }
+                summary.append(message.role()).append(": ").append(content);
+            }
+            return summary.length() > maxChars ? summary.substring(summary.length() - maxChars) : summary.toString();
+        };
+    }
+
+    /**
+     * 调用模型生成摘要，失败时保留之前的摘要（被移出的消息相当于直接丢弃）。
+     * 会发起一次同步请求，应在后台线程上触发上下文的裁剪。
+     */
+    static Summarizer llm(LlmClient client, LlmEndpoint endpoint) {
+        return new LlmSummarizer(client, endpoint);
+    }
+}
@@ -0,0 +1,54 @@
+package com.cn.pstoolkit.llm;
+
+/**
+ * 本地估算 token 数，不依赖具体模型的词表（近似 cl100k / o200k 一类 BPE 的切分结果）。
+ * <ul>
+ *     <li>连续的 ASCII 字母、数字：5 个字符以内 1 个 token（常见英文单词多为一个 token），更长的每 5 个字符 1 个</li>
+ *     <li>其他字符（中日韩文字、全角和半角标点、符号、其他文字）：每个字符约 1 个 token</li>
+ *     <li>空白并入后面的词，不单独计数</li>
+ * </ul>
+ * 用于上下文窗口的预算控制，误差在 ±20% 左右，预算应留出余量。
+ */
+public final class TokenEstimator {
+
+    /**
+     * 每条消息的格式开销（角色、分隔符），与 OpenAI 文档给出的计算方式一致
+     */
+    public static final int MESSAGE_OVERHEAD = 4;
+    /**
+     * 回复开头的固定开销
+     */
+    public static final int REPLY_PRIMING = 3;
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * 一条消息的 token 数，含格式开销
+     */
+    public static int estimate(ChatMessage message) {
+        return MESSAGE_OVERHEAD + estimate(message.role()) + estimate(message.content());
+    }
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int tokens = 0;
+        int wordChars = 0;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            if (cp < 0x80 && Character.isLetterOrDigit(cp)) {
+                wordChars++;
+                continue;
+            }
+            tokens += (wordChars + 4) / 5;
+            wordChars = 0;
+            if (!Character.isWhitespace(cp)) {
+                tokens++;
+            }
+        }
+        return tokens + (wordChars + 4) / 5;
+    }
+}
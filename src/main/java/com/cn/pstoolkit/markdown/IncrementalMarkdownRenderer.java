@@ -0,0 +1,275 @@
+package com.cn.pstoolkit.markdown;
+
+import org.commonmark.Extension;
+import org.commonmark.ext.gfm.tables.TablesExtension;
+import org.commonmark.parser.Parser;
+import org.commonmark.renderer.html.HtmlRenderer;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 流式回复的增量 Markdown 渲染。
+ * <p>
+ * 已经结束的顶层块（段落、闭合的代码块、表格、标题等）渲染一次后冻结，之后每次追加只重新渲染末尾未结束的块，
+ * 渲染开销与当前块的长度成正比，而不是与整条回复的长度成正比。
+ * <pre>
+ * IncrementalMarkdownRenderer markdown = new IncrementalMarkdownRenderer();
+ * Update update = markdown.append(token);
+ * view.appendFrozen(update.frozenHtml());   // 只追加，不再改动
+ * view.replaceTail(update.tailHtml());      // 替换末尾未结束的块
+ * </pre>
+ * 切分点只选在不会被后续内容影响的位置：空行（或顶层代码块的结束行）之后、顶格、且不是列表项的完整行之前，
+ * 代码块和 &lt;pre&gt;、&lt;script&gt;、注释等 HTML 块内部不切分，所以冻结部分与整篇渲染的结果一致。
+ * 例外是出现在后面的链接引用定义（[id]: url）不会回头影响已冻结的块。非线程安全。
+ */
+public final class IncrementalMarkdownRenderer {
+
+    private static final List<String[]> RAW_HTML_BLOCKS = List.of(
+            new String[]{"<!--", "-->"},
+            new String[]{"<pre", "</pre>"},
+            new String[]{"<script", "</script>"},
+            new String[]{"<style", "</style>"},
+            new String[]{"<textarea", "</textarea>"});
+
+    private final Parser parser;
+    private final HtmlRenderer renderer;
+    private final StringBuilder source = new StringBuilder();
+
+    /**
+     * 未冻结部分的起点
+     */
+    private int frozenEnd;
+    /**
+     * 下一个待扫描行的起点
+     */
+    private int scanPos;
+    private boolean prevBlank;
+    private boolean afterTopLevelFence;
+    private boolean inFence;
+    private boolean fenceTopLevel;
+    private char fenceChar;
+    private int fenceLength;
+    /**
+     * 所在 HTML 块的结束标记，不在 HTML 块里时为 null
+     */
+    private String htmlBlockEnd;
+
+    /**
+     * 使用 commonmark + GFM 表格扩展
+     */
+    public IncrementalMarkdownRenderer() {
+        this(List.of(TablesExtension.create()));
+    }
+
+    public IncrementalMarkdownRenderer(List<Extension> extensions) {
+        this(Parser.builder().extensions(extensions).build(), HtmlRenderer.builder().extensions(extensions).build());
+    }
+
+    public IncrementalMarkdownRenderer(Parser parser, HtmlRenderer renderer) {
+        this.parser = parser;
+        this.renderer = renderer;
+    }
+
+    /**
+     * 追加一段文本
+     *
+     * @return 本次新冻结的 HTML（可能为空串）和当前未结束部分的 HTML
+     */
+    public Update append(String text) {
+        source.append(text);
+        int split = -1;
+        for (int nl = source.indexOf("\n", scanPos); nl >= 0; nl = source.indexOf("\n", scanPos)) {
+            if (scanLine(scanPos, nl)) {
+                split = scanPos;
+            }
+            scanPos = nl + 1;
+        }
+        String frozen = "";
+        if (split > frozenEnd) {
+            frozen = render(frozenEnd, split);
+            frozenEnd = split;
+        }
+        return new Update(frozen, render(frozenEnd, source.length()));
+    }
+
+    /**
+     * 回复结束，冻结剩余的全部内容
+     */
+    public Update finish() {
+        String frozen = frozenEnd < source.length() ? render(frozenEnd, source.length()) : "";
+        frozenEnd = source.length();
+        return new Update(frozen, "");
+    }
+
+    /**
+     * 清空，开始新的回复
+     */
+    public void reset() {
+        source.setLength(0);
+        frozenEnd = 0;
+        scanPos = 0;
+        prevBlank = false;
+        afterTopLevelFence = false;
+        inFence = false;
+        htmlBlockEnd = null;
+    }
+
+    /**
+     * 目前为止的全部 Markdown 原文
+     */
+    public String getSource() {
+        return source.toString();
+    }
+
+    private String render(int start, int end) {
+        if (start >= end) {
+            return "";
+        }
+        return renderer.render(parser.parse(source.substring(start, end)));
+    }
+
+    /**
+     * 扫描一个完整的行，更新块状态
+     *
+     * @return 可以在这一行之前切分
+     */
+    private boolean scanLine(int start, int end) {
+        if (inFence) {
+            if (isClosingFence(start, end)) {
+                inFence = false;
+                afterTopLevelFence = fenceTopLevel;
+            }
+            prevBlank = false;
+            return false;
+        }
+        if (htmlBlockEnd != null) {
+            if (lineContains(start, end, htmlBlockEnd)) {
+                htmlBlockEnd = null;
+            }
+            prevBlank = false;
+            return false;
+        }
+        boolean blank = isBlank(start, end);
+        boolean splittable = !blank && (prevBlank || afterTopLevelFence) && start > frozenEnd
+                && source.charAt(start) != ' ' && source.charAt(start) != '\t' && !isListItem(start, end);
+        afterTopLevelFence = false;
+        prevBlank = blank;
+        int indent = indent(start, end);
+        if (indent <= 3 && openFence(start + indent, end)) {
+            fenceTopLevel = indent == 0;
+        } else if (indent <= 3) {
+            openHtmlBlock(start + indent, end);
+        }
+        return splittable;
+    }
+
+    private boolean openFence(int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        char c = source.charAt(start);
+        if (c != '`' && c != '~') {
+            return false;
+        }
+        int length = run(start, end, c);
+        if (length < 3) {
+            return false;
+        }
+        // 反引号代码块的信息串里不能再有反引号
+        if (c == '`') {
+            for (int i = start + length; i < end; i++) {
+                if (source.charAt(i) == '`') {
+                    return false;
+                }
+            }
+        }
+        inFence = true;
+        fenceChar = c;
+        fenceLength = length;
+        return true;
+    }
+
+    private boolean isClosingFence(int start, int end) {
+        int indent = indent(start, end);
+        if (indent > 3) {
+            return false;
+        }
+        int length = run(start + indent, end, fenceChar);
+        if (length < fenceLength) {
+            return false;
+        }
+        return isBlank(start + indent + length, end);
+    }
+
+    private void openHtmlBlock(int start, int end) {
+        if (start >= end || source.charAt(start) != '<') {
+            return;
+        }
+        String line = source.substring(start, end).toLowerCase(Locale.ROOT);
+        for (String[] block : RAW_HTML_BLOCKS) {
+            if (line.startsWith(block[0]) && line.indexOf(block[1], block[0].length()) < 0) {
+                htmlBlockEnd = block[1];
+                return;
+            }
+        }
+    }
+
+    private boolean lineContains(int start, int end, String marker) {
+        return source.substring(start, end).toLowerCase(Locale.ROOT).contains(marker);
+    }
+
+    /**
+     * 列表项标记：-、*、+ 或 1. 1) 后跟空格或行尾
+     */
+    private boolean isListItem(int start, int end) {
+        char c = source.charAt(start);
+        int next = start + 1;
+        if (c == '-' || c == '*' || c == '+') {
+            return next == end || source.charAt(next) == ' ' || source.charAt(next) == '\t';
+        }
+        int i = start;
+        while (i < end && i - start < 9 && Character.isDigit(source.charAt(i))) {
+            i++;
+        }
+        if (i == start || i >= end || (source.charAt(i) != '.' && source.charAt(i) != ')')) {
+            return false;
+        }
+        return i + 1 == end || source.charAt(i + 1) == ' ' || source.charAt(i + 1) == '\t';
+    }
+
+    private int indent(int start, int end) {
+        int i = start;
+        while (i < end && source.charAt(i) == ' ') {
+            i++;
+        }
+        return i - start;
+    }
+
+    private int run(int start, int end, char c) {
+        int i = start;
+        while (i < end && source.charAt(i) == c) {
+            i++;
+        }
+        return i - start;
+    }
+
+    private boolean isBlank(int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 一次追加的渲染结果
+     *
+     * @param frozenHtml 本次新冻结的块，追加到已冻结内容之后，不会再变化
+     * @param tailHtml   末尾未结束的块，替换上一次的 tailHtml
+     */
+    public record Update(String frozenHtml, String tailHtml) {
+    }
+}
@@ -0,0 +1,220 @@
+package com.cn.pstoolkit.markdown;
+
+import org.commonmark.Extension;
+import org.commonmark.ext.gfm.tables.TableBlock;
+import org.commonmark.ext.gfm.tables.TablesExtension;
+import org.commonmark.node.Node;
+import org.commonmark.parser.Parser;
+import org.commonmark.renderer.NodeRenderer;
+import org.commonmark.renderer.html.HtmlNodeRendererContext;
+import org.commonmark.renderer.html.HtmlRenderer;
+import org.commonmark.renderer.html.HtmlWriter;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 共享的 Markdown → HTML 渲染服务（commonmark + GFM 表格扩展），线程安全，可以在后台线程渲染。
+ * <p>
+ * commonmark 的 Parser 和 HtmlRenderer 本身无状态、可并发使用，所以整个进程共用一份即可，不需要对象池。
+ * 渲染结果按内容缓存：键是原文的 64 位哈希（不保留原文），淘汰策略是 LRU，
+ * 总大小按 HTML 字符串占用的字节数限制，重复渲染相同消息（窗口重建、重新显示历史）直接命中。
+ * <pre>
+ * MarkdownService markdown = MarkdownService.shared();
+ * String html = markdown.render(reply);
+ * </pre>
+ * 表格的额外属性（例如 Swing 需要 border="1" 才画边框）在渲染表格节点时直接写出，不需要对结果再做字符串替换。
+ */
+public final class MarkdownService {
+
+    public static final long DEFAULT_MAX_CACHE_BYTES = 8L * 1024 * 1024;
+
+    private static final MarkdownService SHARED = new MarkdownService();
+
+    private final Parser parser;
+    private final HtmlRenderer renderer;
+    private final long maxCacheBytes;
+
+    private final Map<Long, String> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedBytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * 默认配置：缓存上限 8MB，表格不加属性
+     */
+    public MarkdownService() {
+        this(DEFAULT_MAX_CACHE_BYTES, Map.of());
+    }
+
+    /**
+     * @param maxCacheBytes   缓存的 HTML 总字节数上限，0 表示不缓存
+     * @param tableAttributes 写到 &lt;table&gt; 标签上的额外属性
+     */
+    public MarkdownService(long maxCacheBytes, Map<String, String> tableAttributes) {
+        if (maxCacheBytes < 0) {
+            throw new IllegalArgumentException("maxCacheBytes must not be negative: " + maxCacheBytes);
+        }
+        List<Extension> extensions = List.of(TablesExtension.create());
+        HtmlRenderer.Builder rendererBuilder = HtmlRenderer.builder();
+        if (!tableAttributes.isEmpty()) {
+            // 先注册的渲染器优先，覆盖表格扩展对 TableBlock 的渲染，表头、单元格仍由扩展渲染
+            Map<String, String> attributes = Collections.unmodifiableMap(new LinkedHashMap<>(tableAttributes));
+            rendererBuilder.nodeRendererFactory(context -> new TableBlockRenderer(context, attributes));
+        }
+        this.parser = Parser.builder().extensions(extensions).build();
+        this.renderer = rendererBuilder.extensions(extensions).build();
+        this.maxCacheBytes = maxCacheBytes;
+    }
+
+    /**
+     * 进程内共享的默认实例
+     */
+    public static MarkdownService shared() {
+        return SHARED;
+    }
+
+    /**
+     * 渲染一段完整的 Markdown，相同内容直接返回缓存的 HTML
+     */
+    public String render(String markdown) {
+        if (markdown == null || markdown.isEmpty()) {
+            return "";
+        }
+        Long key = hash(markdown);
+        synchronized (cache) {
+            String html = cache.get(key);
+            if (html != null) {
+                hits++;
+                return html;
+            }
+            misses++;
+        }
+        // 在锁外渲染，并发渲染同一内容只是重复劳动，结果相同
+        String html = renderer.render(parser.parse(markdown));
+        long size = sizeOf(html);
+        if (size <= maxCacheBytes) {
+            synchronized (cache) {
+                String previous = cache.put(key, html);
+                cachedBytes += size - (previous == null ? 0 : sizeOf(previous));
+                evict();
+            }
+        }
+        return html;
+    }
+
+    /**
+     * 不经过缓存，只解析
+     */
+    public Node parse(String markdown) {
+        return parser.parse(markdown);
+    }
+
+    /**
+     * 流式回复用的增量渲染器，与本服务共用解析器和渲染配置
+     */
+    public IncrementalMarkdownRenderer newIncrementalRenderer() {
+        return new IncrementalMarkdownRenderer(parser, renderer);
+    }
+
+    public Parser getParser() {
+        return parser;
+    }
+
+    public HtmlRenderer getRenderer() {
+        return renderer;
+    }
+
+    public void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+            cachedBytes = 0;
+        }
+    }
+
+    public long getCachedBytes() {
+        synchronized (cache) {
+            return cachedBytes;
+        }
+    }
+
+    public int getCachedEntries() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public long getHits() {
+        synchronized (cache) {
+            return hits;
+        }
+    }
+
+    public long getMisses() {
+        synchronized (cache) {
+            return misses;
+        }
+    }
+
+    private void evict() {
+        Iterator<String> eldest = cache.values().iterator();
+        while (cachedBytes > maxCacheBytes && eldest.hasNext()) {
+            cachedBytes -= sizeOf(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * HTML 字符串的估算占用：按每字符 2 字节（非 Latin-1 内容）加对象头
+     */
+    private static long sizeOf(String html) {
+        return 2L * html.length() + 64;
+    }
+
+    /**
+     * 64 位 FNV-1a，混入长度；不同内容冲突的概率可以忽略
+     */
+    private static long hash(String text) {
+        long h = 0xcbf29ce484222325L ^ text.length();
+        for (int i = 0; i < text.length(); i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * 输出带额外属性的 &lt;table&gt;，子节点交回上下文渲染
+     */
+    private static final class TableBlockRenderer implements NodeRenderer {
+        private final HtmlNodeRendererContext context;
+        private final HtmlWriter html;
+        private final Map<String, String> attributes;
+
+        TableBlockRenderer(HtmlNodeRendererContext context, Map<String, String> attributes) {
+            this.context = context;
+            this.html = context.getWriter();
+            this.attributes = attributes;
+        }
+
+        @Override
+        public Set<Class<? extends Node>> getNodeTypes() {
+            return Set.of(TableBlock.class);
+        }
+
+        @Override
+        public void render(Node node) {
+            html.line();
+            html.tag("table", context.extendAttributes(node, "table", new LinkedHashMap<>(attributes)));
+            for (Node child = node.getFirstChild(); child != null; child = child.getNext()) {
+                context.render(child);
+            }
+            html.tag("/table");
+            html.line();
+        }
+    }
+}
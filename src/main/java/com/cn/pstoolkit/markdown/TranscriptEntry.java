@@ -0,0 +1,222 @@
+package com.cn.pstoolkit.markdown;
+
+/**
+ * 虚拟化聊天记录中的一条消息：只保存 Markdown 原文、渲染好的 HTML 和测得的尺寸，不持有任何 UI 组件。
+ * <p>
+ * 列表（JList、ListView）只为可见的行创建或复用渲染组件，组件显示某条消息时通过 {@link #attach} 挂上，
+ * 流式追加的内容经 {@link View} 增量推给它；滚出屏幕后组件被回收，消息只剩 HTML 和尺寸缓存。
+ * 内容变化时尺寸缓存失效。完整文本经 {@link MarkdownService} 渲染，相同内容命中它的缓存。只能在 UI 线程上使用。
+ */
+public final class TranscriptEntry {
+
+    public static final String USER = "user";
+    public static final String ASSISTANT = "assistant";
+
+    /**
+     * 显示消息的组件
+     */
+    @FunctionalInterface
+    public interface View {
+        /**
+         * @param frozenHtml reset 为 true 时是全部已冻结的 HTML，否则是新冻结、需要追加的部分
+         * @param tailHtml   末尾未结束的块，整体替换
+         * @param reset      丢弃已显示的内容重新渲染
+         */
+        void render(String frozenHtml, String tailHtml, boolean reset);
+    }
+
+    private final String role;
+    private final MarkdownService markdownService;
+    /**
+     * 流式输出中的渲染器，结束后释放
+     */
+    private IncrementalMarkdownRenderer streaming;
+    private String markdown;
+    private final StringBuilder frozenHtml = new StringBuilder();
+    private String tailHtml = "";
+    private View view;
+    /**
+     * 内容每变化一次加一
+     */
+    private long revision;
+
+    private int measuredFor = -1;
+    private int measuredWidth;
+    private int measuredHeight;
+
+    private TranscriptEntry(String role, String markdown, MarkdownService markdownService) {
+        this.role = role;
+        this.markdown = markdown;
+        this.markdownService = markdownService;
+        frozenHtml.append(markdownService.render(markdown));
+    }
+
+    public static TranscriptEntry user(String text) {
+        return user(text, MarkdownService.shared());
+    }
+
+    public static TranscriptEntry user(String text, MarkdownService markdownService) {
+        return new TranscriptEntry(USER, text, markdownService);
+    }
+
+    public static TranscriptEntry assistant(String text) {
+        return assistant(text, MarkdownService.shared());
+    }
+
+    public static TranscriptEntry assistant(String text, MarkdownService markdownService) {
+        return new TranscriptEntry(ASSISTANT, text, markdownService);
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public boolean isUser() {
+        return USER.equals(role);
+    }
+
+    public boolean isStreaming() {
+        return streaming != null;
+    }
+
+    /**
+     * Markdown 原文（流式输出中为目前收到的部分）
+     */
+    public String getMarkdown() {
+        return streaming != null ? streaming.getSource() : markdown;
+    }
+
+    public String getFrozenHtml() {
+        return frozenHtml.toString();
+    }
+
+    public String getTailHtml() {
+        return tailHtml;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * 清空内容，开始流式输出
+     */
+    public void beginStreaming() {
+        streaming = markdownService.newIncrementalRenderer();
+        markdown = "";
+        frozenHtml.setLength(0);
+        tailHtml = "";
+        changed("", "", true);
+    }
+
+    /**
+     * 追加流式增量，不在流式输出中时接着已有内容开始
+     */
+    public void append(String delta) {
+        if (streaming == null) {
+            resumeStreaming(delta);
+            return;
+        }
+        IncrementalMarkdownRenderer.Update update = streaming.append(delta);
+        frozenHtml.append(update.frozenHtml());
+        tailHtml = update.tailHtml();
+        changed(update.frozenHtml(), tailHtml, false);
+    }
+
+    /**
+     * 以已有内容为开头开始流式输出：重新增量渲染原文和 delta，组件整体刷新一次
+     */
+    private void resumeStreaming(String delta) {
+        streaming = markdownService.newIncrementalRenderer();
+        IncrementalMarkdownRenderer.Update seed = streaming.append(markdown);
+        IncrementalMarkdownRenderer.Update update = streaming.append(delta);
+        frozenHtml.setLength(0);
+        frozenHtml.append(seed.frozenHtml()).append(update.frozenHtml());
+        tailHtml = update.tailHtml();
+        changed(frozenHtml.toString(), tailHtml, true);
+    }
+
+    /**
+     * 流式输出结束，冻结剩余内容并释放渲染器
+     */
+    public void finish() {
+        if (streaming == null) {
+            return;
+        }
+        IncrementalMarkdownRenderer.Update update = streaming.finish();
+        markdown = streaming.getSource();
+        streaming = null;
+        frozenHtml.append(update.frozenHtml());
+        tailHtml = "";
+        changed(update.frozenHtml(), "", false);
+    }
+
+    /**
+     * 整体替换为一段完整的 Markdown
+     */
+    public void setMarkdown(String text) {
+        streaming = null;
+        markdown = text;
+        frozenHtml.setLength(0);
+        frozenHtml.append(markdownService.render(text));
+        tailHtml = "";
+        changed(frozenHtml.toString(), "", true);
+    }
+
+    /**
+     * 组件开始显示本消息：立即收到一次完整渲染，之后收到增量。同一时刻只挂一个组件。
+     */
+    public void attach(View view) {
+        attach(view, -1);
+    }
+
+    /**
+     * 挂上一个已经渲染好 shownRevision 时内容的组件（例如在后台线程排版好的），内容没有变化时不再完整渲染
+     */
+    public void attach(View view, long shownRevision) {
+        this.view = view;
+        if (shownRevision != revision) {
+            view.render(frozenHtml.toString(), tailHtml, true);
+        }
+    }
+
+    /**
+     * 组件不再显示本消息（已被其他组件替换时忽略）
+     */
+    public void detach(View view) {
+        if (this.view == view) {
+            this.view = null;
+        }
+    }
+
+    /**
+     * 记录在可用宽度 availableWidth 下测得的尺寸
+     */
+    public void setMeasuredSize(int availableWidth, int width, int height) {
+        measuredFor = availableWidth;
+        measuredWidth = width;
+        measuredHeight = height;
+    }
+
+    /**
+     * @return 可用宽度 availableWidth 下缓存的宽度，没有测量过或内容已变化时返回 -1
+     */
+    public int getMeasuredWidth(int availableWidth) {
+        return measuredFor == availableWidth ? measuredWidth : -1;
+    }
+
+    /**
+     * @return 可用宽度 availableWidth 下缓存的高度，没有测量过或内容已变化时返回 -1
+     */
+    public int getMeasuredHeight(int availableWidth) {
+        return measuredFor == availableWidth ? measuredHeight : -1;
+    }
+
+    private void changed(String frozen, String tail, boolean reset) {
+        revision++;
+        measuredFor = -1;
+        if (view != null) {
+            view.render(frozen, tail, reset);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.cn.pstoolkit.utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 大批量小任务的并行处理（如 CSV 导入的每一行），不需要为每个元素创建 Runnable。
+ * <pre>
+ * List&lt;Order&gt; orders = BulkTasks.map(rows, row -&gt; parseOrder(row));
+ * long total = BulkTasks.mapReduce(orders, Order::getAmount, 0L, Long::sum);
+ * </pre>
+ * 元素区间在 ForkJoinPool 上递归二分，空闲线程窃取未执行的一半；
+ * 结果写入各自的下标或在 join 时两两合并，没有全局计数器。
+ * 任一元素抛出异常时，异常从调用方线程重新抛出。
+ */
+public final class BulkTasks {
+
+    /**
+     * 每个工作线程大约分到的区间数，多切几份便于窃取时负载均衡
+     */
+    private static final int SPLITS_PER_THREAD = 4;
+    /**
+     * 本线程队列里积压的任务超过这个数时不再切分，直接在当前线程处理
+     */
+    private static final int SURPLUS_LIMIT = 3;
+
+    private BulkTasks() {
+    }
+
+    /**
+     * 在公共 ForkJoinPool 上并行处理每个元素
+     */
+    public static <T> void forEach(Collection<? extends T> items, Consumer<? super T> action) {
+        forEach(ForkJoinPool.commonPool(), items, action);
+    }
+
+    /**
+     * 在指定 ForkJoinPool 上并行处理每个元素
+     */
+    public static <T> void forEach(ForkJoinPool pool, Collection<? extends T> items, Consumer<? super T> action) {
+        Objects.requireNonNull(action, "action");
+        mapReduce(pool, items, item -> {
+            action.accept(item);
+            return null;
+        }, null, (a, b) -> null);
+    }
+
+    /**
+     * 在公共 ForkJoinPool 上并行转换，结果顺序与输入顺序一致
+     */
+    public static <T, R> List<R> map(Collection<? extends T> items, Function<? super T, ? extends R> mapper) {
+        return map(ForkJoinPool.commonPool(), items, mapper);
+    }
+
+    /**
+     * 在指定 ForkJoinPool 上并行转换，结果顺序与输入顺序一致
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, R> List<R> map(ForkJoinPool pool, Collection<? extends T> items,
+                                     Function<? super T, ? extends R> mapper) {
+        Objects.requireNonNull(mapper, "mapper");
+        Object[] source = items.toArray();
+        Object[] results = new Object[source.length];
+        invoke(pool, source, (Object item) -> mapper.apply((T) item), null, (a, b) -> null, results);
+        return (List<R>) Arrays.asList(results);
+    }
+
+    /**
+     * 在公共 ForkJoinPool 上并行转换并归约
+     */
+    public static <T, R> R mapReduce(Collection<? extends T> items, Function<? super T, ? extends R> mapper,
+                                     R identity, BinaryOperator<R> combiner) {
+        return mapReduce(ForkJoinPool.commonPool(), items, mapper, identity, combiner);
+    }
+
+    /**
+     * 在指定 ForkJoinPool 上并行转换并归约
+     *
+     * @param identity 空集合的结果，也是每个区间归约的初始值
+     * @param combiner 需要满足结合律，左右区间按输入顺序合并
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, R> R mapReduce(ForkJoinPool pool, Collection<? extends T> items,
+                                     Function<? super T, ? extends R> mapper,
+                                     R identity, BinaryOperator<R> combiner) {
+        Objects.requireNonNull(mapper, "mapper");
+        Objects.requireNonNull(combiner, "combiner");
+        return invoke(pool, items.toArray(), (Object item) -> mapper.apply((T) item), identity, combiner, null);
+    }
+
+    private static <R> R invoke(ForkJoinPool pool, Object[] source, Function<Object, ? extends R> mapper,
+                                R identity, BinaryOperator<R> combiner, Object[] results) {
+        if (source.length == 0) {
+            return identity;
+        }
+        int threshold = Math.max(1, source.length / (pool.getParallelism() * SPLITS_PER_THREAD));
+        return pool.invoke(new RangeTask<>(source, results, mapper, identity, combiner, threshold, 0, source.length));
+    }
+
+    /**
+     * 处理 [from, to) 区间：大于阈值且本线程不忙时二分，左半 fork 给其他线程窃取，右半自己处理
+     */
+    private static final class RangeTask<R> extends RecursiveTask<R> {
+        private final Object[] source;
+        private final Object[] results;
+        private final Function<Object, ? extends R> mapper;
+        private final R identity;
+        private final BinaryOperator<R> combiner;
+        private final int threshold;
+        private final int from;
+        private final int to;
+
+        RangeTask(Object[] source, Object[] results, Function<Object, ? extends R> mapper, R identity,
+                  BinaryOperator<R> combiner, int threshold, int from, int to) {
+            this.source = source;
+            this.results = results;
+            this.mapper = mapper;
+            this.identity = identity;
+            this.combiner = combiner;
+            this.threshold = threshold;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected R compute() {
+            int length = to - from;
+            if (length <= threshold || getSurplusQueuedTaskCount() > SURPLUS_LIMIT) {
+                return computeDirectly();
+            }
+            int mid = from + (length >>> 1);
+            RangeTask<R> left = new RangeTask<>(source, results, mapper, identity, combiner, threshold, from, mid);
+            RangeTask<R> right = new RangeTask<>(source, results, mapper, identity, combiner, threshold, mid, to);
+            left.fork();
+            R rightResult = right.compute();
+            return combiner.apply(left.join(), rightResult);
+        }
+
+        private R computeDirectly() {
+            R acc = identity;
+            for (int i = from; i < to; i++) {
+                R value = mapper.apply(source[i]);
+                if (results != null) {
+                    results[i] = value;
+                } else {
+                    acc = combiner.apply(acc, value);
+                }
+            }
+            return acc;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.cn.pstoolkit.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按下游依赖隔离的舱壁：限制同一依赖同时执行的任务数，避免一个变慢的依赖占满共享线程池。
+ * <pre>
+ * Executor redis = Bulkhead.builder("redis")
+ *         .limits(4, 64)
+ *         .latencyThreshold(50, TimeUnit.MILLISECONDS)
+ *         .maxQueued(100)
+ *         .build()
+ *         .wrap(sharedPool);
+ * LatchUtils.submitTask(redis, () -&gt; loadFromRedis(), "redis-user");
+ * </pre>
+ * 并发上限按 AIMD 自适应：任务在延迟阈值内成功完成时上限缓慢增加（每轮约 +1），
+ * 超过阈值或失败时乘以 0.9，同一个阈值周期内最多下调一次。
+ * 达到上限后任务进入有界队列，队列也满时抛出 RejectedExecutionException（LatchUtils 会按失败处理）。
+ * 排队的任务出队时被 delegate 拒绝，已经无法抛给提交方，改为让任务按失败完成（LatchUtils、FanOut 的任务）或取消（Future）。
+ * 出队前已被取消的任务不计入耗时，也不参与上限调整；运行中被取消（如 waitFor 超时中断）的任务按失败计，会下调上限。
+ */
+@Slf4j
+public final class Bulkhead {
+
+    private static final ConcurrentHashMap<String, Bulkhead> REGISTRY = new ConcurrentHashMap<>();
+    private static final double DECREASE_FACTOR = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final int maxQueued;
+
+    /**
+     * 当前上限，double 的 bit 形式，CAS 更新
+     */
+    private final AtomicLong limitBits;
+    private final AtomicLong lastDecreaseNanos = new AtomicLong(System.nanoTime());
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder cancellations = new LongAdder();
+    private final LatencyHistogram runTime = new LatencyHistogram();
+
+    private Bulkhead(Builder builder) {
+        this.name = builder.name;
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.latencyThresholdNanos = builder.latencyThresholdNanos;
+        this.maxQueued = builder.maxQueued;
+        this.limitBits = new AtomicLong(Double.doubleToLongBits(builder.initialLimit));
+    }
+
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    /**
+     * 获取已注册的舱壁，不存在时按默认配置创建
+     */
+    public static Bulkhead of(String name) {
+        Bulkhead bulkhead = REGISTRY.get(name);
+        return bulkhead != null ? bulkhead : REGISTRY.computeIfAbsent(name, k -> new Builder(k).create());
+    }
+
+    /**
+     * 所有舱壁的快照，按名称排序
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> map = new TreeMap<>();
+        REGISTRY.forEach((name, bulkhead) -> map.put(name, bulkhead.snapshotOne()));
+        return map;
+    }
+
+    /**
+     * 包装线程池：通过返回的 Executor 提交的任务受本舱壁限制，实际仍在 delegate 上执行
+     */
+    public Executor wrap(Executor delegate) {
+        return runnable -> execute(delegate, runnable);
+    }
+
+    /**
+     * 在限制内提交任务
+     *
+     * @throws RejectedExecutionException 已达上限且队列已满
+     */
+    public void execute(Executor delegate, Runnable runnable) {
+        Runnable task = new Guarded(delegate, runnable);
+        if (tryAcquire()) {
+            dispatch(delegate, task, true);
+            return;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejected.increment();
+            throw new RejectedExecutionException("Bulkhead [" + name + "] full, limit " + getLimit()
+                    + ", queued " + maxQueued);
+        }
+        queue.offer(task);
+        // 入队和任务完成可能同时发生，入队后再尝试调度一次，避免任务滞留在队列里
+        drain();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 当前并发上限
+     */
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    private boolean tryAcquire() {
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void dispatch(Executor delegate, Runnable task, boolean direct) {
+        try {
+            delegate.execute(task);
+        } catch (RejectedExecutionException e) {
+            if (direct) {
+                inFlight.decrementAndGet();
+                rejected.increment();
+                drain();
+                throw e;
+            }
+            // 排队的任务已经无法抛给提交方，让它按失败完成；在当前线程执行会嵌套调用并占用完成任务的线程
+            inFlight.decrementAndGet();
+            rejected.increment();
+            Runnable runnable = ((Guarded) task).runnable;
+            if (runnable instanceof TrackedTask tracked) {
+                tracked.reject(e);
+            } else if (runnable instanceof Future<?> future) {
+                future.cancel(false);
+            } else {
+                log.error("Bulkhead [{}] delegate rejected a queued task, dropping it", name, e);
+            }
+        }
+    }
+
+    /**
+     * 有空闲名额时把排队的任务调度出去
+     */
+    private void drain() {
+        while (!queue.isEmpty() && tryAcquire()) {
+            Runnable task = queue.poll();
+            if (task == null) {
+                inFlight.decrementAndGet();
+                continue;
+            }
+            queued.decrementAndGet();
+            dispatch(((Guarded) task).delegate, task, false);
+        }
+    }
+
+    private void onComplete(long nanos, boolean failed, boolean skipped) {
+        if (skipped) {
+            // 出队前已取消的任务立即返回，算作成功会让上限在依赖变慢时反而增加
+            cancellations.increment();
+            inFlight.decrementAndGet();
+            drain();
+            return;
+        }
+        runTime.record(nanos);
+        completed.increment();
+        boolean tooSlow = nanos > latencyThresholdNanos;
+        if (failed) {
+            failures.increment();
+        }
+        if (tooSlow) {
+            slow.increment();
+        }
+        if (failed || tooSlow) {
+            decrease();
+        } else {
+            increase();
+        }
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    private void increase() {
+        for (;;) {
+            long bits = limitBits.get();
+            double limit = Double.longBitsToDouble(bits);
+            if (limit >= maxLimit) {
+                return;
+            }
+            double next = Math.min(maxLimit, limit + 1.0 / limit);
+            if (limitBits.compareAndSet(bits, Double.doubleToLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    private void decrease() {
+        long now = System.nanoTime();
+        long last = lastDecreaseNanos.get();
+        // 同一批慢请求陆续返回时只下调一次
+        if (now - last < latencyThresholdNanos || !lastDecreaseNanos.compareAndSet(last, now)) {
+            return;
+        }
+        for (;;) {
+            long bits = limitBits.get();
+            double next = Math.max(minLimit, Double.longBitsToDouble(bits) * DECREASE_FACTOR);
+            if (limitBits.compareAndSet(bits, Double.doubleToLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    private Map<String, Object> snapshotOne() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("limit", getLimit());
+        map.put("inFlight", getInFlight());
+        map.put("queued", getQueued());
+        map.put("completed", completed.sum());
+        map.put("rejected", getRejected());
+        map.put("slow", slow.sum());
+        map.put("failures", failures.sum());
+        map.put("cancelled", cancellations.sum());
+        map.put("runTime", runTime.snapshot());
+        return map;
+    }
+
+    /**
+     * 统计耗时并在结束时归还名额
+     */
+    private final class Guarded implements Runnable {
+        private final Executor delegate;
+        private final Runnable runnable;
+
+        Guarded(Executor delegate, Runnable runnable) {
+            this.delegate = delegate;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            // 执行前就已取消的不是依赖的耗时样本；执行中被取消说明依赖慢到超时，按失败计
+            boolean skipped = isCancelled(runnable);
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                failed = execute(runnable);
+            } finally {
+                onComplete(System.nanoTime() - start, failed, skipped);
+            }
+        }
+    }
+
+    private static boolean isCancelled(Runnable runnable) {
+        if (runnable instanceof TrackedTask task) {
+            return task.isCancelled();
+        }
+        return runnable instanceof Future<?> future && future.isCancelled();
+    }
+
+    /**
+     * 执行任务并返回是否失败。工具类自己的任务会捕获异常并记录为失败，run 正常返回不代表成功
+     */
+    private static boolean execute(Runnable runnable) {
+        if (runnable instanceof TrackedTask task) {
+            return task.runTracked();
+        }
+        runnable.run();
+        return runnable instanceof Future<?> future && (future.isCancelled() || future.state() == Future.State.FAILED);
+    }
+
+    public static final class Builder {
+        private final String name;
+        private int initialLimit = 16;
+        private int minLimit = 1;
+        private int maxLimit = 256;
+        private long latencyThresholdNanos = TimeUnit.SECONDS.toNanos(1);
+        private int maxQueued;
+
+        private Builder(String name) {
+            if (name == null) {
+                throw new IllegalArgumentException("Bulkhead name must not be null");
+            }
+            this.name = name;
+        }
+
+        /**
+         * 初始上限取 min 和 max 的中间值
+         */
+        public Builder limits(int minLimit, int maxLimit) {
+            if (minLimit <= 0 || maxLimit < minLimit) {
+                throw new IllegalArgumentException("Invalid limits [" + minLimit + ", " + maxLimit + "]");
+            }
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            this.initialLimit = (minLimit + maxLimit) >>> 1;
+            return this;
+        }
+
+        public Builder initialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * 执行时间超过阈值视为依赖变慢
+         */
+        public Builder latencyThreshold(long threshold, TimeUnit unit) {
+            this.latencyThresholdNanos = unit.toNanos(threshold);
+            return this;
+        }
+
+        /**
+         * 达到上限后最多排队的任务数，0 表示直接拒绝
+         */
+        public Builder maxQueued(int maxQueued) {
+            this.maxQueued = maxQueued;
+            return this;
+        }
+
+        /**
+         * 创建并注册，同名的舱壁会被替换
+         */
+        public Bulkhead build() {
+            Bulkhead bulkhead = create();
+            REGISTRY.put(name, bulkhead);
+            return bulkhead;
+        }
+
+        private Bulkhead create() {
+            if (initialLimit < minLimit || initialLimit > maxLimit) {
+                throw new IllegalArgumentException("initialLimit " + initialLimit
+                        + " out of [" + minLimit + ", " + maxLimit + "]");
+            }
+            if (maxQueued < 0 || latencyThresholdNanos <= 0) {
+                throw new IllegalArgumentException("maxQueued must not be negative and latencyThreshold must be positive");
+            }
+            return new Bulkhead(this);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.cn.pstoolkit.utils;
+
+import org.apache.logging.log4j.ThreadContext;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * 提交线程的 Log4j2 ThreadContext（MDC 和 NDC）快照，在任务线程上执行时恢复，
+ * 使任务日志带上提交请求的 traceId 等信息。
+ * <pre>
+ * ContextSnapshot snapshot = ContextSnapshot.capture();
+ * executor.execute(snapshot.wrap(() -&gt; log.info("带有提交方的 traceId")));
+ * </pre>
+ * Log4j2 默认的 ThreadContext 是写时复制的，capture 只保存当前不可变 map 和栈的引用，不做拷贝；
+ * 上下文为空时返回共享的空快照，不产生任何分配。
+ * LatchUtils、TaskBatch、FanOut、TaskGraph 和 TaskStream 在提交时自动捕获。
+ */
+public final class ContextSnapshot {
+
+    private static final ContextSnapshot EMPTY = new ContextSnapshot(Map.of(), ThreadContext.EMPTY_STACK);
+
+    private final Map<String, String> map;
+    private final ThreadContext.ContextStack stack;
+
+    private ContextSnapshot(Map<String, String> map, ThreadContext.ContextStack stack) {
+        this.map = map;
+        this.stack = stack;
+    }
+
+    /**
+     * 捕获当前线程的上下文
+     */
+    public static ContextSnapshot capture() {
+        if (ThreadContext.isEmpty() && ThreadContext.getDepth() == 0) {
+            return EMPTY;
+        }
+        return new ContextSnapshot(ThreadContext.getImmutableContext(), ThreadContext.getImmutableStack());
+    }
+
+    public static ContextSnapshot empty() {
+        return EMPTY;
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty() && stack.getDepth() == 0;
+    }
+
+    public Map<String, String> getContextMap() {
+        return map;
+    }
+
+    /**
+     * 把快照安装到当前线程
+     *
+     * @return 安装前当前线程的上下文，执行结束后用它的 {@link #attach()} 恢复
+     */
+    public ContextSnapshot attach() {
+        ContextSnapshot previous = capture();
+        if (previous == EMPTY && this == EMPTY) {
+            return EMPTY;
+        }
+        ThreadContext.clearAll();
+        if (!map.isEmpty()) {
+            ThreadContext.putAll(map);
+        }
+        if (stack.getDepth() > 0) {
+            ThreadContext.setStack(stack);
+        }
+        return previous;
+    }
+
+    /**
+     * 包装任务，执行期间使用本快照的上下文，结束后恢复线程原有的上下文。
+     * 空快照同样会清掉线程上残留的上下文。
+     */
+    public Runnable wrap(Runnable runnable) {
+        return () -> {
+            ContextSnapshot previous = attach();
+            try {
+                runnable.run();
+            } finally {
+                previous.attach();
+            }
+        };
+    }
+
+    /**
+     * 包装任务，执行期间使用本快照的上下文，结束后恢复线程原有的上下文
+     */
+    public <T> Callable<T> wrap(Callable<T> callable) {
+        return () -> {
+            ContextSnapshot previous = attach();
+            try {
+                return callable.call();
+            } finally {
+                previous.attach();
+            }
+        };
+    }
+}
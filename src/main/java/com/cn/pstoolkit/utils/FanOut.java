@@ -0,0 +1,234 @@
+package com.cn.pstoolkit.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 带返回值的扇出工具（LatchUtils 的 Callable 版本）
+ * <pre>
+ * FanOut&lt;User&gt; fanOut = FanOut.failFast();
+ * fanOut.submit(executor, () -&gt; loadUser(1L), "user-1");
+ * fanOut.submit(executor, () -&gt; loadUser(2L), "user-2");
+ * FanOutResult&lt;User&gt; result = fanOut.await(3, TimeUnit.SECONDS);
+ * </pre>
+ * 与 LatchUtils 一致：submit 只登记任务，await 时才真正提交执行。
+ * 一个 FanOut 实例只能 await 一次。
+ */
+public class FanOut<T> {
+
+    private final boolean cancelOnFailure;
+    private final List<Slot> slots = new ArrayList<>();
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private boolean started;
+
+    private FanOut(boolean cancelOnFailure) {
+        this.cancelOnFailure = cancelOnFailure;
+    }
+
+    /**
+     * 收集全部结果，单个任务失败不影响其他任务
+     */
+    public static <T> FanOut<T> create() {
+        return new FanOut<>(false);
+    }
+
+    /**
+     * 任一任务失败时立即取消（中断）其余任务
+     */
+    public static <T> FanOut<T> failFast() {
+        return new FanOut<>(true);
+    }
+
+    /**
+     * 登记任务
+     */
+    public FanOut<T> submit(Executor executor, Callable<? extends T> callable) {
+        return submit(executor, callable, null);
+    }
+
+    /**
+     * 登记任务并指定任务名称（便于调试）
+     */
+    public FanOut<T> submit(Executor executor, Callable<? extends T> callable, String taskName) {
+        if (started) {
+            throw new IllegalStateException("FanOut already started");
+        }
+        slots.add(new Slot(executor, callable, taskName));
+        return this;
+    }
+
+    /**
+     * 等待所有任务完成（无超时）
+     */
+    public FanOutResult<T> await() {
+        return await(0, null, true);
+    }
+
+    /**
+     * 等待所有任务完成（有超时），超时后未完成的任务会被取消
+     */
+    public FanOutResult<T> await(long timeout, TimeUnit timeUnit) {
+        return await(timeout, timeUnit, false);
+    }
+
+    private FanOutResult<T> await(long timeout, TimeUnit timeUnit, boolean noTimeout) {
+        if (started) {
+            throw new IllegalStateException("FanOut already started");
+        }
+        started = true;
+        if (slots.isEmpty()) {
+            return new FanOutResult<>(List.of(), false);
+        }
+
+        CountDownLatch latch = new CountDownLatch(slots.size());
+        for (Slot slot : slots) {
+            slot.future = new TaskFuture(slot, latch);
+        }
+        for (Slot slot : slots) {
+            slot.submitNanos = System.nanoTime();
+            try {
+                slot.executor.execute(slot.future);
+            } catch (RejectedExecutionException e) {
+                slot.future.reject(e);
+            }
+        }
+
+        boolean timedOut = false;
+        try {
+            if (noTimeout) {
+                latch.await();
+            } else {
+                timedOut = !latch.await(timeout, timeUnit);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            timedOut = true;
+        }
+        if (timedOut) {
+            cancelAll();
+        }
+
+        List<FanOutResult.TaskResult<T>> results = new ArrayList<>(slots.size());
+        for (Slot slot : slots) {
+            results.add(slot.toResult());
+        }
+        return new FanOutResult<>(results, timedOut);
+    }
+
+    private void cancelAll() {
+        if (cancelled.compareAndSet(false, true)) {
+            for (Slot slot : slots) {
+                slot.future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * 包装 Callable，记录耗时并在完成（含取消）时计数
+     */
+    private final class TaskFuture extends FutureTask<T> implements TrackedTask {
+        private final Slot slot;
+        private final CountDownLatch latch;
+
+        TaskFuture(Slot slot, CountDownLatch latch) {
+            super(slot.timed());
+            this.slot = slot;
+            this.latch = latch;
+        }
+
+        @Override
+        public void reject(Throwable e) {
+            setException(e);
+        }
+
+        @Override
+        public boolean runTracked() {
+            run();
+            return isCancelled() || state() == State.FAILED;
+        }
+
+        @Override
+        protected void done() {
+            try {
+                if (cancelOnFailure && !isCancelled() && slot.failed()) {
+                    cancelAll();
+                }
+            } finally {
+                latch.countDown();
+            }
+        }
+    }
+
+    /**
+     * 任务槽位
+     */
+    private final class Slot {
+        private final Executor executor;
+        private final Callable<? extends T> callable;
+        private final String taskName;
+        private final ContextSnapshot context = ContextSnapshot.capture();
+        private TaskFuture future;
+        private volatile long submitNanos;
+        private volatile long startNanos;
+        private volatile long endNanos;
+
+        Slot(Executor executor, Callable<? extends T> callable, String taskName) {
+            this.executor = executor;
+            this.callable = callable;
+            this.taskName = taskName;
+        }
+
+        Callable<T> timed() {
+            return context.wrap(() -> {
+                startNanos = System.nanoTime();
+                try {
+                    return callable.call();
+                } finally {
+                    endNanos = System.nanoTime();
+                }
+            });
+        }
+
+        boolean failed() {
+            try {
+                future.get();
+                return false;
+            } catch (ExecutionException e) {
+                return true;
+            } catch (CancellationException | InterruptedException e) {
+                return false;
+            }
+        }
+
+        FanOutResult.TaskResult<T> toResult() {
+            long start = startNanos;
+            long end = endNanos;
+            long queueNanos = start == 0 ? 0 : start - submitNanos;
+            long runNanos = start == 0 || end == 0 ? 0 : end - start;
+            if (future.isCancelled()) {
+                return new FanOutResult.TaskResult<>(taskName, FanOutResult.State.CANCELLED,
+                        null, null, queueNanos, runNanos);
+            }
+            try {
+                return new FanOutResult.TaskResult<>(taskName, FanOutResult.State.SUCCESS,
+                        future.get(), null, queueNanos, runNanos);
+            } catch (ExecutionException e) {
+                return new FanOutResult.TaskResult<>(taskName, FanOutResult.State.FAILED,
+                        null, e.getCause(), queueNanos, runNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new FanOutResult.TaskResult<>(taskName, FanOutResult.State.CANCELLED,
+                        null, null, queueNanos, runNanos);
+            }
+        }
+    }
+}
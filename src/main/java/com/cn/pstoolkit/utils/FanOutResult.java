@@ -0,0 +1,113 @@
+package com.cn.pstoolkit.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FanOut 的执行结果，结果顺序与提交顺序一致
+ */
+public class FanOutResult<T> {
+
+    private final List<TaskResult<T>> results;
+    private final boolean timedOut;
+
+    FanOutResult(List<TaskResult<T>> results, boolean timedOut) {
+        this.results = List.copyOf(results);
+        this.timedOut = timedOut;
+    }
+
+    /**
+     * 所有任务均成功且未超时
+     */
+    public boolean isSuccess() {
+        if (timedOut) {
+            return false;
+        }
+        for (TaskResult<T> result : results) {
+            if (result.state() != State.SUCCESS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public List<TaskResult<T>> getResults() {
+        return results;
+    }
+
+    public TaskResult<T> get(int index) {
+        return results.get(index);
+    }
+
+    /**
+     * 按提交顺序返回各任务的返回值，未成功的任务对应 null
+     */
+    public List<T> values() {
+        List<T> values = new ArrayList<>(results.size());
+        for (TaskResult<T> result : results) {
+            values.add(result.value());
+        }
+        return values;
+    }
+
+    /**
+     * 所有失败的任务
+     */
+    public List<TaskResult<T>> failures() {
+        List<TaskResult<T>> failures = new ArrayList<>();
+        for (TaskResult<T> result : results) {
+            if (result.state() == State.FAILED) {
+                failures.add(result);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * 第一个失败任务的异常，没有失败时返回 null
+     */
+    public Throwable firstError() {
+        for (TaskResult<T> result : results) {
+            if (result.error() != null) {
+                return result.error();
+            }
+        }
+        return null;
+    }
+
+    public enum State {
+        SUCCESS,
+        FAILED,
+        /**
+         * 因超时、中断或其他任务失败而被取消
+         */
+        CANCELLED,
+        /**
+         * 依赖的任务未成功，没有执行（TaskGraph）
+         */
+        SKIPPED
+    }
+
+    /**
+     * 单个任务的结果
+     *
+     * @param queueNanos 提交到开始执行的等待时间，未开始时为 0
+     * @param runNanos   执行耗时，未执行完成时为 0
+     */
+    public record TaskResult<T>(String taskName, State state, T value, Throwable error,
+                                long queueNanos, long runNanos) {
+
+        public boolean isSuccess() {
+            return state == State.SUCCESS;
+        }
+
+        public long runMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(runNanos);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.cn.pstoolkit.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对冲策略：任务运行超过延迟仍未完成时，再启动一个副本，取先成功的结果。
+ * <pre>
+ * LatchUtils.submitTask(executor, () -&gt; queryPrice(), "price", HedgePolicy.p95(200, TimeUnit.MILLISECONDS));
+ * </pre>
+ * 百分位延迟取自同名任务最近的成功耗时，样本不足时使用兜底延迟。
+ */
+public final class HedgePolicy {
+
+    /**
+     * 样本少于这个数量时百分位没有参考意义
+     */
+    static final int MIN_SAMPLES = 20;
+
+    private final double percentile;
+    private final long fallbackNanos;
+
+    private HedgePolicy(double percentile, long fallbackNanos) {
+        this.percentile = percentile;
+        this.fallbackNanos = fallbackNanos;
+    }
+
+    /**
+     * 固定延迟
+     */
+    public static HedgePolicy fixedDelay(long delay, TimeUnit unit) {
+        return new HedgePolicy(0, checkDelay(delay, unit));
+    }
+
+    /**
+     * 按任务最近耗时的百分位计算延迟
+     *
+     * @param percentile    百分位，取值 (0, 100)
+     * @param fallbackDelay 样本不足时的延迟
+     */
+    public static HedgePolicy percentile(double percentile, long fallbackDelay, TimeUnit unit) {
+        if (!(percentile > 0 && percentile < 100)) {
+            throw new IllegalArgumentException("percentile must be in (0, 100): " + percentile);
+        }
+        return new HedgePolicy(percentile, checkDelay(fallbackDelay, unit));
+    }
+
+    /**
+     * 按任务最近耗时的 p95 计算延迟
+     */
+    public static HedgePolicy p95(long fallbackDelay, TimeUnit unit) {
+        return percentile(95, fallbackDelay, unit);
+    }
+
+    private static long checkDelay(long delay, TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("delay must be positive: " + delay);
+        }
+        return unit.toNanos(delay);
+    }
+
+    /**
+     * 计算本次执行的对冲延迟（纳秒）
+     */
+    long delayNanos(LatchMetrics.TaskMetrics metrics) {
+        if (percentile == 0 || metrics.recentSamples() < MIN_SAMPLES) {
+            return fallbackNanos;
+        }
+        long nanos = metrics.recentPercentileNanos(percentile);
+        return nanos > 0 ? nanos : fallbackNanos;
+    }
+}
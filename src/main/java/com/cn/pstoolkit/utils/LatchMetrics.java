@@ -0,0 +1,238 @@
+package com.cn.pstoolkit.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatchUtils 扇出指标：按 taskName 统计排队等待时间、执行时间、失败与取消次数，
+ * 以及整体的等待次数和超时率。
+ * 指标对象在任务名第一次出现时创建，之后的记录只做计数器自增。
+ * 任务名应当是稳定的类别（如依赖名），不要带请求 id 等变量；不同的任务名超过 {@link #MAX_TASK_NAMES} 个后，
+ * 新出现的名称统一归到 {@link #OTHER} 下，避免指标表无限增长。
+ */
+@Slf4j
+public class LatchMetrics {
+
+    /**
+     * 未命名任务统一归到这个名称下
+     */
+    public static final String UNNAMED = "unnamed";
+    /**
+     * 超出名称上限的任务统一归到这个名称下
+     */
+    public static final String OTHER = "other";
+    /**
+     * 最多单独统计的任务名个数，每个约占 8 KB
+     */
+    public static final int MAX_TASK_NAMES = 1024;
+
+    private static final ConcurrentHashMap<String, TaskMetrics> TASKS = new ConcurrentHashMap<>();
+    private static final LongAdder WAITS = new LongAdder();
+    private static final LongAdder TIMEOUTS = new LongAdder();
+    private static final AtomicBoolean OVERFLOW_WARNED = new AtomicBoolean();
+
+    private LatchMetrics() {
+    }
+
+    /**
+     * 获取任务名对应的指标，已存在时不产生任何分配
+     */
+    public static TaskMetrics forTask(String taskName) {
+        String key = taskName != null ? taskName : UNNAMED;
+        TaskMetrics metrics = TASKS.get(key);
+        if (metrics != null) {
+            return metrics;
+        }
+        if (TASKS.size() >= MAX_TASK_NAMES) {
+            if (OVERFLOW_WARNED.compareAndSet(false, true)) {
+                log.warn("More than {} task names, further names are counted as '{}': {}", MAX_TASK_NAMES, OTHER, key);
+            }
+            key = OTHER;
+        }
+        return TASKS.computeIfAbsent(key, k -> new TaskMetrics());
+    }
+
+    /**
+     * 记录一次 waitFor 调用
+     */
+    public static void recordWait(boolean timedOut) {
+        WAITS.increment();
+        if (timedOut) {
+            TIMEOUTS.increment();
+        }
+    }
+
+    /**
+     * 所有指标的快照，任务按名称排序
+     */
+    public static Map<String, Object> snapshot() {
+        long waits = WAITS.sum();
+        long timeouts = TIMEOUTS.sum();
+        Map<String, Object> tasks = new TreeMap<>();
+        TASKS.forEach((name, metrics) -> tasks.put(name, metrics.snapshot()));
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("waits", waits);
+        map.put("timeouts", timeouts);
+        map.put("timeoutRate", waits == 0 ? 0.0 : (double) timeouts / waits);
+        map.put("tasks", tasks);
+        return map;
+    }
+
+    /**
+     * 清空所有指标
+     */
+    public static void reset() {
+        TASKS.clear();
+        OVERFLOW_WARNED.set(false);
+        WAITS.reset();
+        TIMEOUTS.reset();
+    }
+
+    /**
+     * 单个任务名的指标
+     */
+    public static final class TaskMetrics {
+        private static final int RECENT_SIZE = 128;
+        /**
+         * 新增这么多个样本后才重新计算近期百分位
+         */
+        private static final int REFRESH_INTERVAL = RECENT_SIZE / 8;
+
+        private final LatencyHistogram queueWait = new LatencyHistogram();
+        private final LatencyHistogram runTime = new LatencyHistogram();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder cancelled = new LongAdder();
+        private final LongAdder hedges = new LongAdder();
+        private final LongAdder hedgeWins = new LongAdder();
+        /**
+         * 最近若干次成功执行的耗时，环形覆盖，用于计算对冲延迟
+         */
+        private final AtomicLongArray recent = new AtomicLongArray(RECENT_SIZE);
+        private final AtomicLong recentCursor = new AtomicLong();
+        /**
+         * 上次计算的近期百分位，对冲任务每次启动都要读取，不能每次都排序
+         */
+        private volatile RecentPercentile recentPercentile;
+
+        /**
+         * 提交到开始执行的等待时间
+         */
+        public void recordQueueWait(long nanos) {
+            queueWait.record(nanos);
+        }
+
+        /**
+         * 执行时间
+         */
+        public void recordRun(long nanos, boolean failed) {
+            runTime.record(nanos);
+            if (failed) {
+                failures.increment();
+            } else {
+                recent.set((int) (recentCursor.getAndIncrement() & (RECENT_SIZE - 1)), nanos);
+            }
+        }
+
+        /**
+         * 启动了一次对冲副本
+         */
+        public void recordHedge() {
+            hedges.increment();
+        }
+
+        /**
+         * 对冲副本先于主任务成功完成
+         */
+        public void recordHedgeWin() {
+            hedgeWins.increment();
+        }
+
+        /**
+         * 因超时或中断被取消
+         */
+        public void recordCancelled() {
+            cancelled.increment();
+        }
+
+        public LatencyHistogram getQueueWait() {
+            return queueWait;
+        }
+
+        public LatencyHistogram getRunTime() {
+            return runTime;
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public long getCancelled() {
+            return cancelled.sum();
+        }
+
+        public long getHedges() {
+            return hedges.sum();
+        }
+
+        public long getHedgeWins() {
+            return hedgeWins.sum();
+        }
+
+        /**
+         * 最近成功执行的样本数，最多 128
+         */
+        public int recentSamples() {
+            return (int) Math.min(recentCursor.get(), RECENT_SIZE);
+        }
+
+        /**
+         * 最近成功执行耗时的百分位（纳秒），没有样本时返回 -1。
+         * 与 runTime 直方图不同，只反映最近的耗时，适合随负载变化的对冲延迟。
+         * 结果会缓存，新增 16 个样本后才重新排序计算，两次计算之间不分配内存。
+         */
+        public long recentPercentileNanos(double percentile) {
+            long cursor = recentCursor.get();
+            RecentPercentile cached = recentPercentile;
+            if (cached != null && cached.percentile == percentile && cursor - cached.cursor < REFRESH_INTERVAL) {
+                return cached.nanos;
+            }
+            int samples = (int) Math.min(cursor, RECENT_SIZE);
+            if (samples == 0) {
+                return -1;
+            }
+            long[] values = new long[samples];
+            for (int i = 0; i < samples; i++) {
+                values[i] = recent.get(i);
+            }
+            Arrays.sort(values);
+            int rank = (int) Math.ceil(percentile / 100.0 * samples) - 1;
+            long nanos = values[Math.max(0, Math.min(rank, samples - 1))];
+            recentPercentile = new RecentPercentile(percentile, cursor, nanos);
+            return nanos;
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("failures", getFailures());
+            map.put("cancelled", getCancelled());
+            map.put("hedges", getHedges());
+            map.put("hedgeWins", getHedgeWins());
+            map.put("queueWait", queueWait.snapshot());
+            map.put("runTime", runTime.snapshot());
+            return map;
+        }
+
+        private record RecentPercentile(double percentile, long cursor, long nanos) {
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.cn.pstoolkit.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LatchUtils 一次等待的详细结果
+ */
+public class LatchOutcome {
+
+    private static final LatchOutcome EMPTY = new LatchOutcome(List.of(), List.of(), 0, false, false);
+
+    private final List<TaskOutcome> outcomes;
+    private final List<String> runningTasks;
+    private final int notStartedCount;
+    private final boolean timedOut;
+    private final boolean interrupted;
+    private final boolean failed;
+
+    LatchOutcome(List<TaskOutcome> outcomes, List<String> runningTasks, int notStartedCount,
+                 boolean timedOut, boolean interrupted) {
+        this(outcomes, runningTasks, notStartedCount, timedOut, interrupted, anyFailed(outcomes));
+    }
+
+    private LatchOutcome(List<TaskOutcome> outcomes, List<String> runningTasks, int notStartedCount,
+                         boolean timedOut, boolean interrupted, boolean failed) {
+        this.outcomes = outcomes;
+        this.runningTasks = runningTasks;
+        this.notStartedCount = notStartedCount;
+        this.timedOut = timedOut;
+        this.interrupted = interrupted;
+        this.failed = failed;
+    }
+
+    static LatchOutcome empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 只关心成败时使用，不携带每个任务的明细
+     */
+    static LatchOutcome of(boolean timedOut, boolean interrupted, boolean failed) {
+        if (!timedOut && !interrupted && !failed) {
+            return EMPTY;
+        }
+        return new LatchOutcome(List.of(), List.of(), 0, timedOut, interrupted, failed);
+    }
+
+    private static boolean anyFailed(List<TaskOutcome> outcomes) {
+        for (TaskOutcome outcome : outcomes) {
+            if (!outcome.isSuccess()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 所有任务都在时限内完成且没有异常
+     */
+    public boolean isSuccess() {
+        return !timedOut && !interrupted && !failed;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public boolean isInterrupted() {
+        return interrupted;
+    }
+
+    /**
+     * 已完成任务的结果（按提交顺序，不含被取消的任务）
+     */
+    public List<TaskOutcome> getOutcomes() {
+        return outcomes;
+    }
+
+    /**
+     * 执行失败的任务
+     */
+    public List<TaskOutcome> getFailures() {
+        List<TaskOutcome> failures = new ArrayList<>();
+        for (TaskOutcome outcome : outcomes) {
+            if (!outcome.isSuccess()) {
+                failures.add(outcome);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * 超时或中断时仍在运行（已被取消）的任务名称
+     */
+    public List<String> getRunningTasks() {
+        return runningTasks;
+    }
+
+    /**
+     * 超时或中断时尚未开始（已被取消）的任务数
+     */
+    public int getNotStartedCount() {
+        return notStartedCount;
+    }
+
+    /**
+     * 单个任务的执行结果
+     *
+     * @param error 任务抛出的异常，成功时为 null
+     */
+    public record TaskOutcome(String taskName, Throwable error, long durationNanos) {
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        public long durationMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        }
+    }
+}
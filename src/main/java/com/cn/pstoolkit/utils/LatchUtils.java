@@ -1,114 +1,162 @@
 package com.cn.pstoolkit.utils;
 
-import java.util.LinkedList;
-import java.util.List;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * 基于 TaskBatch 的静态门面：submitTask 暂存到当前线程的批次，waitFor 执行并归还批次。
+ * 只提交不等待会让任务一直留在当前线程上，需要手动控制生命周期时请直接使用 TaskBatch。
+ */
 public class LatchUtils {
 
-    private static final ThreadLocal<List<TaskInfo>> THREAD_LOCAL =
-            ThreadLocal.withInitial(LinkedList::new);
+    private static final ThreadLocal<TaskBatch> THREAD_LOCAL = new ThreadLocal<>();
 
     /**
      * 提交任务到线程池
      */
     public static void submitTask(Executor executor, Runnable runnable) {
-        THREAD_LOCAL.get().add(new TaskInfo(executor, runnable));
+        currentBatch().submit(executor, runnable);
     }
 
     /**
      * 提交任务并指定任务名称（便于调试）
      */
     public static void submitTask(Executor executor, Runnable runnable, String taskName) {
-        THREAD_LOCAL.get().add(new TaskInfo(executor, runnable, taskName));
+        currentBatch().submit(executor, runnable, taskName);
     }
 
     /**
-     * 清理当前线程的任务队列
+     * 提交可对冲的任务：超过对冲延迟仍未完成时再执行一个副本，取先成功的结果。
+     * 任务必须是幂等的，落后的一方会被中断。
      */
-    private static List<TaskInfo> popTask() {
-        List<TaskInfo> taskInfos = THREAD_LOCAL.get();
-        THREAD_LOCAL.remove();
-        return taskInfos;
+    public static void submitTask(Executor executor, Runnable runnable, String taskName, HedgePolicy hedge) {
+        currentBatch().submit(executor, runnable, taskName, hedge);
+    }
+
+    /**
+     * 提交任务，使用虚拟线程执行
+     */
+    public static void submitTask(Runnable runnable) {
+        currentBatch().submit(runnable);
+    }
+
+    /**
+     * 提交任务并指定任务名称，使用虚拟线程执行
+     */
+    public static void submitTask(Runnable runnable, String taskName) {
+        currentBatch().submit(runnable, taskName);
+    }
+
+    /**
+     * 打开一个流式提交窗口：任务提交即执行，同时运行的任务数不超过 maxInFlight，
+     * 适合遍历大游标等输入量未知的场景。不经过当前线程的批次。
+     */
+    public static TaskStream openStream(Executor executor, int maxInFlight) {
+        return TaskStream.open(executor, maxInFlight);
+    }
+
+    private static TaskBatch currentBatch() {
+        TaskBatch batch = THREAD_LOCAL.get();
+        if (batch == null) {
+            batch = TaskBatch.acquire();
+            THREAD_LOCAL.set(batch);
+        }
+        return batch;
+    }
+
+    /**
+     * 取出当前线程的批次并清理 ThreadLocal
+     */
+    private static TaskBatch popBatch() {
+        TaskBatch batch = THREAD_LOCAL.get();
+        if (batch != null) {
+            THREAD_LOCAL.remove();
+        }
+        return batch;
     }
 
     /**
      * 等待所有任务完成（有超时）
      */
     public static boolean waitFor(long timeout, TimeUnit timeUnit) {
-        return waitFor(timeout, timeUnit, false);
+        try (TaskBatch batch = popBatch()) {
+            return batch == null || batch.await(timeout, timeUnit);
+        }
     }
 
     /**
      * 等待所有任务完成（无超时）
      */
     public static boolean waitFor() {
-        return waitFor(0, null, true);
+        try (TaskBatch batch = popBatch()) {
+            return batch == null || batch.await();
+        }
     }
 
     /**
-     * 核心等待方法
+     * 等待所有任务完成（有超时），返回每个任务的异常和耗时
      */
-    private static boolean waitFor(long timeout, TimeUnit timeUnit, boolean noTimeout) {
-        List<TaskInfo> taskInfos = popTask();
-        if (taskInfos.isEmpty()) {
-            return true;
+    public static LatchOutcome waitForOutcome(long timeout, TimeUnit timeUnit) {
+        try (TaskBatch batch = popBatch()) {
+            return batch == null ? LatchOutcome.empty() : batch.awaitOutcome(timeout, timeUnit);
         }
+    }
 
-        CountDownLatch latch = new CountDownLatch(taskInfos.size());
-        boolean[] hasError = {false};
-
-        for (TaskInfo taskInfo : taskInfos) {
-            Executor executor = taskInfo.executor;
-            Runnable runnable = taskInfo.runnable;
-
-            executor.execute(() -> {
-                try {
-                    runnable.run();
-                } catch (Exception e) {
-                    hasError[0] = true;
-                    System.err.println("Task execution failed" +
-                            (taskInfo.taskName != null ? " [" + taskInfo.taskName + "]" : "") +
-                            ": " + e.getMessage());
-                    e.printStackTrace();
-                } finally {
-                    latch.countDown();
-                }
-            });
+    /**
+     * 等待所有任务完成（无超时），返回每个任务的异常和耗时
+     */
+    public static LatchOutcome waitForOutcome() {
+        try (TaskBatch batch = popBatch()) {
+            return batch == null ? LatchOutcome.empty() : batch.awaitOutcome();
         }
+    }
 
-        try {
-            if (noTimeout) {
-                latch.await();
-                return !hasError[0];
-            } else {
-                boolean awaitResult = latch.await(timeout, timeUnit);
-                return awaitResult && !hasError[0];
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            return false;
+    /**
+     * 非阻塞等待：立即返回，所有任务完成或超时时 future 完成，结果为是否全部成功。
+     * 超时由共享定时器触发，不占用等待线程；可以直接作为 Spring MVC 处理方法的返回值。
+     */
+    public static CompletableFuture<Boolean> waitForAsync(long timeout, TimeUnit timeUnit) {
+        try (TaskBatch batch = popBatch()) {
+            return batch == null ? CompletableFuture.completedFuture(true) : batch.awaitAsync(timeout, timeUnit);
         }
     }
 
     /**
-     * 任务信息内部类
+     * 非阻塞等待，返回每个任务的异常和耗时
      */
-    private static final class TaskInfo {
-        private final Executor executor;
-        private final Runnable runnable;
-        private final String taskName;
+    public static CompletableFuture<LatchOutcome> waitForOutcomeAsync(long timeout, TimeUnit timeUnit) {
+        try (TaskBatch batch = popBatch()) {
+            return batch == null
+                    ? CompletableFuture.completedFuture(LatchOutcome.empty())
+                    : batch.awaitOutcomeAsync(timeout, timeUnit);
+        }
+    }
 
-        public TaskInfo(Executor executor, Runnable runnable) {
-            this(executor, runnable, null);
+    /**
+     * 忽略提交时指定的线程池，每个任务都在独立的虚拟线程上执行（无超时）
+     */
+    public static boolean waitForVirtual() {
+        try (TaskBatch batch = popBatch()) {
+            return batch == null || batch.awaitVirtual();
         }
+    }
 
-        public TaskInfo(Executor executor, Runnable runnable, String taskName) {
-            this.executor = executor;
-            this.runnable = runnable;
-            this.taskName = taskName;
+    /**
+     * 忽略提交时指定的线程池，每个任务都在独立的虚拟线程上执行（有超时）
+     */
+    public static boolean waitForVirtual(long timeout, TimeUnit timeUnit) {
+        return waitForVirtual(0, timeout, timeUnit);
+    }
+
+    /**
+     * 虚拟线程执行，并用信号量限制本次调用同时运行的任务数
+     *
+     * @param maxConcurrency 最大并发数，小于等于 0 表示不限制
+     */
+    public static boolean waitForVirtual(int maxConcurrency, long timeout, TimeUnit timeUnit) {
+        try (TaskBatch batch = popBatch()) {
+            return batch == null || batch.awaitVirtual(maxConcurrency, timeout, timeUnit);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,190 @@
+package com.cn.pstoolkit.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 分段计数的完成屏障，用于替代超宽扇出下的 CountDownLatch。
+ * <p>
+ * 参与方按下标分到若干段，每段一个独立的计数器（各占一个缓存行），
+ * 完成时只在自己的段上做原子递减；段归零后再递减一次全局剩余段数，
+ * 最后一段归零的线程唤醒等待线程。等待线程只 park/unpark 一次，不经过 AQS 队列。
+ * <p>
+ * 只支持一个等待线程或一个完成回调；每个下标只能 arrive 一次。
+ */
+public final class StripedCompletionBarrier {
+
+    /**
+     * 每段占 16 个 long（128 字节），避免相邻段伪共享
+     */
+    private static final int PAD = 16;
+    /**
+     * 每段至少分到的参与方数量，参与方少时退化为单段
+     */
+    private static final int PARTIES_PER_STRIPE = 16;
+    private static final int DEFAULT_MAX_STRIPES =
+            Math.min(64, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors())) * 2);
+
+    private static final AtomicIntegerFieldUpdater<StripedCompletionBarrier> REMAINING =
+            AtomicIntegerFieldUpdater.newUpdater(StripedCompletionBarrier.class, "remainingStripes");
+    private static final AtomicReferenceFieldUpdater<StripedCompletionBarrier, Runnable> CALLBACK =
+            AtomicReferenceFieldUpdater.newUpdater(StripedCompletionBarrier.class, Runnable.class, "callback");
+    /**
+     * 回调已触发的标记
+     */
+    private static final Runnable FIRED = () -> { };
+
+    private final AtomicLongArray counts;
+    private final int maxStripes;
+    /**
+     * 在 reset 中写入，参与方线程在任务提交之后才读取，提交本身建立了 happens-before
+     */
+    private int mask;
+    private volatile int remainingStripes;
+    private volatile Thread waiter;
+    private volatile Runnable callback;
+
+    /**
+     * 按 CPU 数自动选择段数
+     */
+    public StripedCompletionBarrier(int parties) {
+        this(parties, DEFAULT_MAX_STRIPES);
+    }
+
+    /**
+     * @param maxStripes 最大段数，向上取整为 2 的幂
+     */
+    public StripedCompletionBarrier(int parties, int maxStripes) {
+        if (maxStripes <= 0) {
+            throw new IllegalArgumentException("maxStripes must be positive: " + maxStripes);
+        }
+        int stripes = Integer.highestOneBit(Math.min(maxStripes, 1 << 16));
+        this.maxStripes = stripes < maxStripes && stripes < 1 << 16 ? stripes << 1 : stripes;
+        this.counts = new AtomicLongArray((this.maxStripes + 1) * PAD);
+        reset(parties);
+    }
+
+    /**
+     * 重新设置参与方数量以复用屏障，调用时不能有未完成的参与方或等待线程
+     */
+    void reset(int parties) {
+        if (parties < 0) {
+            throw new IllegalArgumentException("parties must not be negative: " + parties);
+        }
+        int stripes = Math.min(maxStripes, Integer.highestOneBit(Math.max(1, parties / PARTIES_PER_STRIPE)));
+        int shift = Integer.numberOfTrailingZeros(stripes);
+        int base = parties >>> shift;
+        int extra = parties & (stripes - 1);
+        int nonEmpty = 0;
+        for (int s = 0; s < stripes; s++) {
+            int count = base + (s < extra ? 1 : 0);
+            counts.set((s + 1) * PAD, count);
+            if (count > 0) {
+                nonEmpty++;
+            }
+        }
+        mask = stripes - 1;
+        waiter = null;
+        callback = nonEmpty == 0 ? FIRED : null;
+        remainingStripes = nonEmpty;
+    }
+
+    /**
+     * 下标为 index 的参与方完成
+     */
+    public void arrive(int index) {
+        if (counts.decrementAndGet(((index & mask) + 1) * PAD) == 0
+                && REMAINING.decrementAndGet(this) == 0) {
+            // 先标记完成再唤醒：等待线程醒来后可能立即 reset 开始下一轮，之后不能再改动回调
+            Runnable action = CALLBACK.getAndSet(this, FIRED);
+            Thread thread = waiter;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+            if (action != null) {
+                action.run();
+            }
+        }
+    }
+
+    /**
+     * 注册完成回调（只能注册一个），由最后一个完成的参与方线程执行；已完成时在当前线程立即执行
+     */
+    public void onComplete(Runnable action) {
+        if (!CALLBACK.compareAndSet(this, null, action)) {
+            if (callback != FIRED) {
+                throw new IllegalStateException("Completion callback already registered");
+            }
+            action.run();
+        }
+    }
+
+    /**
+     * 以回调标记为准而不是剩余段数：段数归零到标记完成之间，屏障还不能被 reset
+     */
+    public boolean isDone() {
+        return callback == FIRED;
+    }
+
+    /**
+     * 尚未完成的参与方数量，只用于诊断
+     */
+    public long getCount() {
+        long sum = 0;
+        for (int s = 0; s <= mask; s++) {
+            sum += Math.max(0, counts.get((s + 1) * PAD));
+        }
+        return sum;
+    }
+
+    /**
+     * 等待所有参与方完成
+     */
+    public void await() throws InterruptedException {
+        if (isDone()) {
+            return;
+        }
+        waiter = Thread.currentThread();
+        try {
+            while (!isDone()) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waiter = null;
+        }
+    }
+
+    /**
+     * 等待所有参与方完成（有超时）
+     *
+     * @return 超时前全部完成返回 true
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        if (isDone()) {
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        waiter = Thread.currentThread();
+        try {
+            while (!isDone()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return true;
+        } finally {
+            waiter = null;
+        }
+    }
+}
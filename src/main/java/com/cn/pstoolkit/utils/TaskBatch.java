@@ -0,0 +1,759 @@
+package com.cn.pstoolkit.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 一批待并发执行的任务，LatchUtils 的静态 API 是它的一层门面。
+ * <pre>
+ * try (TaskBatch batch = TaskBatch.acquire()) {
+ *     batch.submit(executor, () -&gt; loadUser(), "user");
+ *     batch.submit(executor, () -&gt; loadOrders(), "orders");
+ *     boolean success = batch.await(3, TimeUnit.SECONDS);
+ * }
+ * </pre>
+ * 任务暂存在可增长的数组里，await 之后清空可以继续使用；close 时归还到对象池。
+ * 上一轮全部正常完成且没有安排对冲时，任务槽位对象也会被下一轮复用。
+ * 一个 TaskBatch 只能由一个线程使用。
+ */
+@Slf4j
+public final class TaskBatch implements AutoCloseable {
+
+    private static final int INITIAL_CAPACITY = 8;
+    /**
+     * 超过这个容量的批次不回收，避免对象池长期持有大数组
+     */
+    private static final int MAX_POOLED_CAPACITY = 1024;
+    private static final int POOL_SIZE = Integer.highestOneBit(Math.max(Runtime.getRuntime().availableProcessors(), 4)) * 2;
+    private static final AtomicReferenceArray<TaskBatch> POOL = new AtomicReferenceArray<>(POOL_SIZE);
+
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY =
+            Thread.ofVirtual().name("latch-vt-", 0).factory();
+
+    /**
+     * 每个任务一个虚拟线程，不需要池化
+     */
+    static final Executor VIRTUAL_EXECUTOR = runnable -> VIRTUAL_THREAD_FACTORY.newThread(runnable).start();
+
+    /**
+     * 共享定时器，只负责触发对冲副本和异步等待的超时，不执行任务本身
+     */
+    private static final ScheduledThreadPoolExecutor TIMER = newTimer();
+
+    private Executor[] executors = new Executor[INITIAL_CAPACITY];
+    private Runnable[] runnables = new Runnable[INITIAL_CAPACITY];
+    private String[] taskNames = new String[INITIAL_CAPACITY];
+    private HedgePolicy[] hedges = new HedgePolicy[INITIAL_CAPACITY];
+    private ContextSnapshot[] contexts = new ContextSnapshot[INITIAL_CAPACITY];
+    private int size;
+    private Slot[] slots = new Slot[0];
+    /**
+     * 完成屏障，和槽位一样在正常完成后复用
+     */
+    private StripedCompletionBarrier barrier = new StripedCompletionBarrier(0);
+    private boolean closed;
+
+    /**
+     * 从对象池获取一个空批次，池中没有时新建
+     */
+    public static TaskBatch acquire() {
+        int start = (int) Thread.currentThread().threadId();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            TaskBatch batch = POOL.getAndSet((start + i) & (POOL_SIZE - 1), null);
+            if (batch != null) {
+                batch.closed = false;
+                return batch;
+            }
+        }
+        return new TaskBatch();
+    }
+
+    /**
+     * 提交任务到线程池
+     */
+    public TaskBatch submit(Executor executor, Runnable runnable) {
+        return submit(executor, runnable, null);
+    }
+
+    /**
+     * 提交任务并指定任务名称（便于调试），executor 为 null 时使用虚拟线程执行
+     */
+    public TaskBatch submit(Executor executor, Runnable runnable, String taskName) {
+        return submit(executor, runnable, taskName, null);
+    }
+
+    /**
+     * 提交可对冲的任务：超过对冲延迟仍未完成时在同一线程池上再执行一个副本，
+     * 先成功的一方胜出，另一方被中断。任务必须是幂等的。
+     *
+     * @param taskName 对冲延迟按任务名的近期耗时计算，不能为空
+     */
+    public TaskBatch submit(Executor executor, Runnable runnable, String taskName, HedgePolicy hedge) {
+        if (closed) {
+            throw new IllegalStateException("TaskBatch already closed");
+        }
+        if (hedge != null && taskName == null) {
+            throw new IllegalArgumentException("Hedged task requires a task name");
+        }
+        if (size == runnables.length) {
+            int capacity = size << 1;
+            executors = Arrays.copyOf(executors, capacity);
+            runnables = Arrays.copyOf(runnables, capacity);
+            taskNames = Arrays.copyOf(taskNames, capacity);
+            hedges = Arrays.copyOf(hedges, capacity);
+            contexts = Arrays.copyOf(contexts, capacity);
+        }
+        executors[size] = executor;
+        runnables[size] = runnable;
+        taskNames[size] = taskName;
+        hedges[size] = hedge;
+        contexts[size] = ContextSnapshot.capture();
+        size++;
+        return this;
+    }
+
+    /**
+     * 提交任务，使用虚拟线程执行
+     */
+    public TaskBatch submit(Runnable runnable) {
+        return submit(null, runnable, null);
+    }
+
+    /**
+     * 提交任务并指定任务名称，使用虚拟线程执行
+     */
+    public TaskBatch submit(Runnable runnable, String taskName) {
+        return submit(null, runnable, taskName);
+    }
+
+    /**
+     * 已提交、尚未执行的任务数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 等待所有任务完成（有超时）
+     */
+    public boolean await(long timeout, TimeUnit timeUnit) {
+        return run(timeout, timeUnit, false, false, 0, false).isSuccess();
+    }
+
+    /**
+     * 等待所有任务完成（无超时）
+     */
+    public boolean await() {
+        return run(0, null, true, false, 0, false).isSuccess();
+    }
+
+    /**
+     * 等待所有任务完成（有超时），返回每个任务的异常和耗时
+     */
+    public LatchOutcome awaitOutcome(long timeout, TimeUnit timeUnit) {
+        return run(timeout, timeUnit, false, false, 0, true);
+    }
+
+    /**
+     * 等待所有任务完成（无超时），返回每个任务的异常和耗时
+     */
+    public LatchOutcome awaitOutcome() {
+        return run(0, null, true, false, 0, true);
+    }
+
+    /**
+     * 忽略提交时指定的线程池，每个任务都在独立的虚拟线程上执行（无超时）
+     */
+    public boolean awaitVirtual() {
+        return run(0, null, true, true, 0, false).isSuccess();
+    }
+
+    /**
+     * 虚拟线程执行，并用信号量限制本次调用同时运行的任务数
+     *
+     * @param maxConcurrency 最大并发数，小于等于 0 表示不限制
+     */
+    public boolean awaitVirtual(int maxConcurrency, long timeout, TimeUnit timeUnit) {
+        return run(timeout, timeUnit, false, true, maxConcurrency, false).isSuccess();
+    }
+
+    /**
+     * 非阻塞等待：启动任务后立即返回，全部完成或超时时 future 完成，不占用调用线程。
+     * 超时语义与 awaitOutcome 相同，由共享定时器触发；取消 future 等同于中断等待，会取消剩余任务。
+     * 完成回调在最后一个完成的任务线程（或定时器线程）上执行，耗时的后续处理请使用 *Async 方法。
+     */
+    public CompletableFuture<LatchOutcome> awaitOutcomeAsync(long timeout, TimeUnit timeUnit) {
+        if (closed) {
+            throw new IllegalStateException("TaskBatch already closed");
+        }
+        int count = size;
+        if (count == 0) {
+            return CompletableFuture.completedFuture(LatchOutcome.empty());
+        }
+        Slot[] running = start(count, false, 0);
+        StripedCompletionBarrier completion = barrier;
+        // 本轮的槽位和屏障交给异步等待，批次本身可以立即归还或复用
+        slots = new Slot[0];
+        barrier = new StripedCompletionBarrier(0);
+        return new AsyncWait(running, count).start(completion, timeout, timeUnit);
+    }
+
+    /**
+     * 非阻塞等待，结果为是否全部成功
+     */
+    public CompletableFuture<Boolean> awaitAsync(long timeout, TimeUnit timeUnit) {
+        return awaitOutcomeAsync(timeout, timeUnit).thenApply(LatchOutcome::isSuccess);
+    }
+
+    /**
+     * 丢弃尚未执行的任务并归还到对象池
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        clearStaged();
+        closed = true;
+        if (runnables.length > MAX_POOLED_CAPACITY) {
+            return;
+        }
+        int start = (int) Thread.currentThread().threadId();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            if (POOL.compareAndSet((start + i) & (POOL_SIZE - 1), null, this)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 核心执行方法
+     *
+     * @param detailed 是否需要构建每个任务的结果列表
+     */
+    private LatchOutcome run(long timeout, TimeUnit timeUnit, boolean noTimeout,
+                             boolean virtual, int maxConcurrency, boolean detailed) {
+        if (closed) {
+            throw new IllegalStateException("TaskBatch already closed");
+        }
+        int count = size;
+        if (count == 0) {
+            return LatchOutcome.empty();
+        }
+
+        Slot[] running = start(count, virtual, maxConcurrency);
+        StripedCompletionBarrier completion = barrier;
+        boolean timedOut = false;
+        boolean interrupted = false;
+        try {
+            if (noTimeout) {
+                completion.await();
+            } else {
+                timedOut = !completion.await(timeout, timeUnit);
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+
+        LatchOutcome outcome = finish(running, count, timedOut, interrupted, detailed);
+        if (timedOut || interrupted || hedged(running, count)) {
+            // 仍有线程持有这些槽位和屏障（超时、中断后的落后任务，对冲中落败的一方和未触发的定时器），不能再复用
+            slots = new Slot[0];
+            barrier = new StripedCompletionBarrier(0);
+        } else {
+            for (int i = 0; i < count; i++) {
+                running[i].release();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return outcome;
+    }
+
+    private static boolean hedged(Slot[] running, int count) {
+        for (int i = 0; i < count; i++) {
+            if (running[i].hedged) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 启动已暂存的任务并清空暂存区
+     */
+    private Slot[] start(int count, boolean virtual, int maxConcurrency) {
+        Slot[] running = prepareSlots(count);
+        StripedCompletionBarrier completion = barrier;
+        completion.reset(count);
+        // 许可在任务线程内获取，配合虚拟线程时排队等待的只是廉价的虚拟线程
+        Semaphore permits = maxConcurrency > 0 ? new Semaphore(maxConcurrency) : null;
+        for (int i = 0; i < count; i++) {
+            Executor executor = virtual || executors[i] == null ? VIRTUAL_EXECUTOR : executors[i];
+            running[i].reset(runnables[i], taskNames[i], i, executor, hedges[i], contexts[i], completion, permits);
+        }
+        for (int i = 0; i < count; i++) {
+            running[i].start();
+        }
+        clearStaged();
+        return running;
+    }
+
+    /**
+     * 超时或中断时取消剩余任务，记录指标并汇总结果
+     */
+    private static LatchOutcome finish(Slot[] running, int count, boolean timedOut, boolean interrupted,
+                                       boolean detailed) {
+        List<String> stragglers = List.of();
+        int notStarted = 0;
+        if (timedOut || interrupted) {
+            stragglers = new ArrayList<>();
+            notStarted = cancelStragglers(running, count, stragglers);
+            log.warn("Wait {}, cancelled running tasks {} and {} tasks not yet started",
+                    interrupted ? "interrupted" : "timed out", stragglers, notStarted);
+        }
+        LatchMetrics.recordWait(timedOut || interrupted);
+        return detailed
+                ? collectOutcomes(running, count, stragglers, notStarted, timedOut, interrupted)
+                : LatchOutcome.of(timedOut, interrupted, hasFailure(running, count));
+    }
+
+    /**
+     * 一次异步等待：屏障回调、超时定时器和调用方取消三者只有一个生效
+     */
+    private static final class AsyncWait {
+        private final Slot[] running;
+        private final int count;
+        private final CompletableFuture<LatchOutcome> future = new CompletableFuture<>();
+        private final AtomicBoolean settled = new AtomicBoolean();
+        private volatile ScheduledFuture<?> timer;
+
+        AsyncWait(Slot[] running, int count) {
+            this.running = running;
+            this.count = count;
+        }
+
+        CompletableFuture<LatchOutcome> start(StripedCompletionBarrier completion, long timeout, TimeUnit timeUnit) {
+            timer = TIMER.schedule(() -> settle(true, false), timeout, timeUnit);
+            future.whenComplete((outcome, error) -> {
+                if (future.isCancelled()) {
+                    settle(false, true);
+                }
+            });
+            completion.onComplete(() -> settle(false, false));
+            return future;
+        }
+
+        private void settle(boolean timedOut, boolean cancelled) {
+            if (!settled.compareAndSet(false, true)) {
+                return;
+            }
+            ScheduledFuture<?> scheduled = timer;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            LatchOutcome outcome = finish(running, count, timedOut, cancelled, true);
+            if (!timedOut && !cancelled) {
+                for (int i = 0; i < count; i++) {
+                    running[i].release();
+                }
+            }
+            future.complete(outcome);
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor newTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "latch-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    private Slot[] prepareSlots(int count) {
+        if (slots.length < count) {
+            Slot[] grown = Arrays.copyOf(slots, count);
+            for (int i = slots.length; i < count; i++) {
+                grown[i] = new Slot();
+            }
+            slots = grown;
+        }
+        return slots;
+    }
+
+    private void clearStaged() {
+        Arrays.fill(executors, 0, size, null);
+        Arrays.fill(runnables, 0, size, null);
+        Arrays.fill(taskNames, 0, size, null);
+        Arrays.fill(hedges, 0, size, null);
+        Arrays.fill(contexts, 0, size, null);
+        size = 0;
+    }
+
+    private static boolean hasFailure(Slot[] running, int count) {
+        for (int i = 0; i < count; i++) {
+            if (running[i].state == Slot.DONE && running[i].error != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static LatchOutcome collectOutcomes(Slot[] running, int count, List<String> stragglers,
+                                                int notStarted, boolean timedOut, boolean interrupted) {
+        List<LatchOutcome.TaskOutcome> completed = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Slot slot = running[i];
+            if (slot.state == Slot.DONE) {
+                completed.add(new LatchOutcome.TaskOutcome(slot.taskName, slot.error, slot.durationNanos));
+            }
+        }
+        return new LatchOutcome(completed, stragglers, notStarted, timedOut, interrupted);
+    }
+
+    /**
+     * 取消未完成的任务：已开始的中断其线程，未开始的不再执行
+     *
+     * @param stragglers 收集仍在运行的任务名称
+     * @return 尚未开始的任务数
+     */
+    private static int cancelStragglers(Slot[] running, int count, List<String> stragglers) {
+        int notStarted = 0;
+        for (int i = 0; i < count; i++) {
+            Slot slot = running[i];
+            int result = slot.cancel();
+            if (result == Slot.RUNNING) {
+                stragglers.add(slot.displayName());
+            } else if (result == Slot.NEW) {
+                notStarted++;
+            }
+        }
+        return notStarted;
+    }
+
+    /**
+     * 任务槽位：既是提交给线程池的 Runnable，也是取消句柄和结果记录。
+     * 结果字段在状态切换到 DONE 之前写入，读到 DONE 即可见。
+     * 配置了对冲策略时，同一个槽位最多有两次尝试（主任务 + 对冲副本），先完成的一方胜出。
+     */
+    private static final class Slot implements TrackedTask {
+        static final int NEW = 0;
+        static final int RUNNING = 1;
+        static final int DONE = 2;
+        static final int INTERRUPTING = 3;
+        static final int CANCELLED = 4;
+        static final int COMPLETING = 5;
+
+        private static final AtomicIntegerFieldUpdater<Slot> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Slot.class, "state");
+        private static final AtomicIntegerFieldUpdater<Slot> ATTEMPTS =
+                AtomicIntegerFieldUpdater.newUpdater(Slot.class, "attempts");
+
+        private Runnable runnable;
+        private String taskName;
+        private int index;
+        private Executor executor;
+        private HedgePolicy hedge;
+        private ContextSnapshot context;
+        private StripedCompletionBarrier completion;
+        private Semaphore permits;
+        private LatchMetrics.TaskMetrics metrics;
+        private long submitNanos;
+        private Throwable error;
+        private long durationNanos;
+        private ScheduledFuture<?> hedgeTimer;
+        /**
+         * 本轮安排过对冲定时器，结束后可能仍有副本或定时器引用这个槽位
+         */
+        private boolean hedged;
+        private volatile Thread runner;
+        private volatile Thread hedgeRunner;
+        private volatile int attempts;
+        private volatile int state;
+
+        void reset(Runnable runnable, String taskName, int index, Executor executor, HedgePolicy hedge,
+                   ContextSnapshot context, StripedCompletionBarrier completion, Semaphore permits) {
+            this.runnable = runnable;
+            this.taskName = taskName;
+            this.index = index;
+            this.executor = executor;
+            this.hedge = hedge;
+            this.context = context;
+            this.completion = completion;
+            this.permits = permits;
+            this.metrics = LatchMetrics.forTask(taskName);
+            this.error = null;
+            this.durationNanos = 0;
+            this.hedgeTimer = null;
+            this.hedged = false;
+            this.attempts = 1;
+            this.state = NEW;
+        }
+
+        /**
+         * 释放对任务和调用方的引用
+         */
+        void release() {
+            runnable = null;
+            executor = null;
+            hedge = null;
+            context = null;
+            completion = null;
+            permits = null;
+            hedgeTimer = null;
+        }
+
+        void start() {
+            submitNanos = System.nanoTime();
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                reject(e);
+            }
+        }
+
+        @Override
+        public void run() {
+            runTracked();
+        }
+
+        @Override
+        public boolean runTracked() {
+            if (!STATE.compareAndSet(this, NEW, RUNNING)) {
+                return false;
+            }
+            if (hedge != null) {
+                scheduleHedge();
+            }
+            return attempt(true);
+        }
+
+        /**
+         * 主任务超过对冲延迟仍未完成时，在同一线程池上启动一个副本
+         */
+        private void scheduleHedge() {
+            long delayNanos = hedge.delayNanos(metrics);
+            if (delayNanos <= 0) {
+                return;
+            }
+            Backup backup = new Backup();
+            hedged = true;
+            hedgeTimer = TIMER.schedule(() -> {
+                if (state != RUNNING) {
+                    return;
+                }
+                ATTEMPTS.incrementAndGet(this);
+                metrics.recordHedge();
+                try {
+                    executor.execute(backup);
+                } catch (RejectedExecutionException e) {
+                    backup.reject(e);
+                }
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @return 本次尝试是否失败（抛出异常或运行中被取消）；副本在胜负已分后才开始时不执行，返回 false
+         */
+        private boolean attempt(boolean primary) {
+            if (!primary && state != RUNNING) {
+                ATTEMPTS.decrementAndGet(this);
+                return false;
+            }
+            Thread current = Thread.currentThread();
+            if (primary) {
+                runner = current;
+            } else {
+                hedgeRunner = current;
+            }
+            Runnable task = runnable;
+            Semaphore semaphore = permits;
+            StripedCompletionBarrier done = completion;
+            ContextSnapshot snapshot = context;
+            // 提交方的日志上下文覆盖到执行结束（含失败日志），之后恢复线程原有的上下文
+            ContextSnapshot previous = snapshot != null ? snapshot.attach() : null;
+            long start = System.nanoTime();
+            Throwable failure = null;
+            boolean acquired = false;
+            try {
+                if (semaphore != null) {
+                    semaphore.acquire();
+                    acquired = true;
+                    start = System.nanoTime();
+                }
+                if (primary) {
+                    // 排队时间包含等待并发许可的时间
+                    metrics.recordQueueWait(start - submitNanos);
+                }
+                task.run();
+            } catch (Throwable e) {
+                failure = e;
+                if (state == RUNNING) {
+                    log.error("Task execution failed [{}]", displayName(), e);
+                }
+            } finally {
+                if (acquired) {
+                    semaphore.release();
+                }
+                if (primary) {
+                    runner = null;
+                } else {
+                    hedgeRunner = null;
+                }
+                finish(failure, System.nanoTime() - start, primary, done);
+                if (previous != null) {
+                    previous.attach();
+                }
+            }
+            // Error（OOM、栈溢出等）记录为任务失败让等待方返回，但不吞掉，继续抛给执行线程
+            if (failure instanceof Error e) {
+                throw e;
+            }
+            // 取消方中断后状态停在 CANCELLED，超时后的槽位不会被复用，这里读到的就是本轮的状态
+            return failure != null || state == CANCELLED;
+        }
+
+        private void finish(Throwable failure, long duration, boolean primary, StripedCompletionBarrier done) {
+            boolean last = ATTEMPTS.decrementAndGet(this) == 0;
+            // 对冲时一方失败而另一方仍在运行，等另一方的结果
+            if ((failure == null || last) && STATE.compareAndSet(this, RUNNING, COMPLETING)) {
+                metrics.recordRun(duration, failure != null);
+                error = failure;
+                durationNanos = duration;
+                if (hedge != null) {
+                    settleHedge(primary, failure == null);
+                }
+                state = DONE;
+                done.arrive(index);
+                return;
+            }
+            // 取消方或胜出方正在中断本线程，等它结束，避免中断落到线程池的下一个任务上
+            while (state == INTERRUPTING || state == COMPLETING) {
+                Thread.onSpinWait();
+            }
+        }
+
+        /**
+         * 胜出后取消尚未触发的对冲定时器，并中断落后的一方
+         */
+        private void settleHedge(boolean primaryWon, boolean success) {
+            ScheduledFuture<?> timer = hedgeTimer;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            Thread loser = primaryWon ? hedgeRunner : runner;
+            if (loser != null) {
+                loser.interrupt();
+            }
+            if (!primaryWon && success) {
+                metrics.recordHedgeWin();
+            }
+        }
+
+        /**
+         * 线程池拒绝执行，直接按失败完成
+         */
+        @Override
+        public void reject(Throwable e) {
+            if (STATE.compareAndSet(this, NEW, COMPLETING)) {
+                log.error("Task rejected [{}]", displayName(), e);
+                metrics.recordRun(0, true);
+                error = e;
+                durationNanos = 0;
+                state = DONE;
+                completion.arrive(index);
+            }
+        }
+
+        /**
+         * 取消任务
+         *
+         * @return 取消前的状态：NEW 表示尚未开始，RUNNING 表示已中断运行中的线程，其他表示已结束
+         */
+        int cancel() {
+            if (STATE.compareAndSet(this, NEW, CANCELLED)) {
+                metrics.recordCancelled();
+                return NEW;
+            }
+            if (STATE.compareAndSet(this, RUNNING, INTERRUPTING)) {
+                try {
+                    ScheduledFuture<?> timer = hedgeTimer;
+                    if (timer != null) {
+                        timer.cancel(false);
+                    }
+                    interrupt(runner);
+                    interrupt(hedgeRunner);
+                } finally {
+                    state = CANCELLED;
+                }
+                metrics.recordCancelled();
+                return RUNNING;
+            }
+            return DONE;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        private static void interrupt(Thread thread) {
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        String displayName() {
+            return taskName != null ? taskName : "task#" + index;
+        }
+
+        /**
+         * 对冲副本
+         */
+        private final class Backup implements TrackedTask {
+
+            @Override
+            public void run() {
+                attempt(false);
+            }
+
+            @Override
+            public boolean runTracked() {
+                return attempt(false);
+            }
+
+            /**
+             * 副本被拒绝时主任务可能已经失败并在等它，按一次失败的尝试结束
+             */
+            @Override
+            public void reject(Throwable e) {
+                finish(e, 0, false, completion);
+            }
+
+            /**
+             * 胜负已分或已取消，副本出队后直接返回
+             */
+            @Override
+            public boolean isCancelled() {
+                return state != RUNNING;
+            }
+        }
+    }
+}
@@ -0,0 +1,462 @@
+package com.cn.pstoolkit.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 依赖图任务调度：每个任务声明自己依赖的任务，依赖全部成功后立即开始执行，
+ * 整体耗时取决于最长的依赖链，而不是多个 LatchUtils 屏障之和。
+ * <pre>
+ * TaskGraph.Result result = TaskGraph.create()
+ *         .add("user", executor, ctx -&gt; loadUser(id))
+ *         .add("orders", executor, ctx -&gt; loadOrders(ctx.&lt;User&gt;get("user")), "user")
+ *         .add("prefs", executor, ctx -&gt; loadPrefs(ctx.&lt;User&gt;get("user")), "user")
+ *         .add("page", executor, ctx -&gt; render(ctx.get("orders"), ctx.get("prefs")), "orders", "prefs")
+ *         .execute(3, TimeUnit.SECONDS);
+ * </pre>
+ * 任务失败或被取消时，所有直接或间接依赖它的任务不再执行（SKIPPED），互不相关的分支照常执行。
+ * 执行前检查未知依赖和循环依赖。每个任务的排队与执行时间记录到 LatchMetrics。
+ * 一个 TaskGraph 只能 execute 一次。
+ */
+@Slf4j
+public class TaskGraph {
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private volatile boolean cancelled;
+    private boolean executed;
+
+    private TaskGraph() {
+    }
+
+    public static TaskGraph create() {
+        return new TaskGraph();
+    }
+
+    /**
+     * 添加任务
+     *
+     * @param executor  执行任务的线程池，为 null 时使用虚拟线程
+     * @param dependsOn 依赖的任务名称
+     */
+    public TaskGraph add(String name, Executor executor, Task<?> task, String... dependsOn) {
+        if (executed) {
+            throw new IllegalStateException("TaskGraph already executed");
+        }
+        if (nodes.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate task: " + name);
+        }
+        nodes.put(name, new Node(name, executor, task, dependsOn));
+        return this;
+    }
+
+    /**
+     * 添加任务，使用虚拟线程执行
+     */
+    public TaskGraph add(String name, Task<?> task, String... dependsOn) {
+        return add(name, null, task, dependsOn);
+    }
+
+    /**
+     * 执行并等待所有任务完成（无超时）
+     */
+    public Result execute() {
+        return execute(0, null, true);
+    }
+
+    /**
+     * 执行并等待所有任务完成，超时后取消仍在运行和尚未开始的任务
+     */
+    public Result execute(long timeout, TimeUnit timeUnit) {
+        return execute(timeout, timeUnit, false);
+    }
+
+    private Result execute(long timeout, TimeUnit timeUnit, boolean noTimeout) {
+        if (executed) {
+            throw new IllegalStateException("TaskGraph already executed");
+        }
+        executed = true;
+        link();
+        checkCycle();
+
+        CountDownLatch latch = new CountDownLatch(nodes.size());
+        List<Node> roots = new ArrayList<>();
+        for (Node node : nodes.values()) {
+            node.latch = latch;
+            if (node.dependencies.length == 0) {
+                roots.add(node);
+            }
+        }
+        for (Node root : roots) {
+            root.schedule();
+        }
+
+        boolean timedOut = false;
+        try {
+            if (noTimeout) {
+                latch.await();
+            } else {
+                timedOut = !latch.await(timeout, timeUnit);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            timedOut = true;
+        }
+        if (timedOut) {
+            cancelAll();
+        }
+        LatchMetrics.recordWait(timedOut);
+
+        Map<String, FanOutResult.TaskResult<Object>> results = new LinkedHashMap<>();
+        for (Node node : nodes.values()) {
+            results.put(node.name, node.toResult());
+        }
+        return new Result(results, timedOut);
+    }
+
+    /**
+     * 解析依赖名称，建立反向边
+     */
+    private void link() {
+        for (Node node : nodes.values()) {
+            node.dependencies = new Node[node.dependsOn.length];
+            for (int i = 0; i < node.dependsOn.length; i++) {
+                Node dependency = nodes.get(node.dependsOn[i]);
+                if (dependency == null) {
+                    throw new IllegalArgumentException("Task [" + node.name + "] depends on unknown task [" + node.dependsOn[i] + "]");
+                }
+                node.dependencies[i] = dependency;
+                dependency.dependents.add(node);
+            }
+            node.pending.set(node.dependencies.length);
+        }
+    }
+
+    /**
+     * Kahn 拓扑排序，无法排完的节点都在环上或依赖环
+     */
+    private void checkCycle() {
+        Map<Node, Integer> inDegree = new LinkedHashMap<>();
+        Deque<Node> ready = new ArrayDeque<>();
+        for (Node node : nodes.values()) {
+            inDegree.put(node, node.dependencies.length);
+            if (node.dependencies.length == 0) {
+                ready.add(node);
+            }
+        }
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            visited++;
+            for (Node dependent : node.dependents) {
+                if (inDegree.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        if (visited < nodes.size()) {
+            List<String> cyclic = new ArrayList<>();
+            inDegree.forEach((node, degree) -> {
+                if (degree > 0) {
+                    cyclic.add(node.name);
+                }
+            });
+            throw new IllegalStateException("Cycle detected among tasks " + cyclic);
+        }
+    }
+
+    private void cancelAll() {
+        cancelled = true;
+        List<String> running = new ArrayList<>();
+        for (Node node : nodes.values()) {
+            if (node.cancel()) {
+                running.add(node.name);
+            }
+        }
+        log.warn("TaskGraph timed out, cancelled running tasks {}", running);
+    }
+
+    /**
+     * 图中的任务，可以通过 Context 读取依赖任务的结果
+     */
+    @FunctionalInterface
+    public interface Task<V> {
+        V call(Context context) throws Exception;
+    }
+
+    /**
+     * 任务执行上下文
+     */
+    public static final class Context {
+        private final Node node;
+
+        private Context(Node node) {
+            this.node = node;
+        }
+
+        /**
+         * 读取依赖任务的返回值，只能读取声明过的依赖
+         */
+        @SuppressWarnings("unchecked")
+        public <V> V get(String dependency) {
+            for (Node candidate : node.dependencies) {
+                if (candidate.name.equals(dependency)) {
+                    try {
+                        return (V) candidate.future.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new CancellationException("Interrupted while reading " + dependency);
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException("Dependency [" + dependency + "] failed", e.getCause());
+                    }
+                }
+            }
+            throw new IllegalArgumentException("Task [" + node.name + "] does not depend on [" + dependency + "]");
+        }
+
+        public String taskName() {
+            return node.name;
+        }
+    }
+
+    /**
+     * 执行结果，顺序与添加顺序一致
+     */
+    public static final class Result {
+        private final Map<String, FanOutResult.TaskResult<Object>> results;
+        private final boolean timedOut;
+
+        private Result(Map<String, FanOutResult.TaskResult<Object>> results, boolean timedOut) {
+            this.results = results;
+            this.timedOut = timedOut;
+        }
+
+        public boolean isSuccess() {
+            if (timedOut) {
+                return false;
+            }
+            for (FanOutResult.TaskResult<Object> result : results.values()) {
+                if (!result.isSuccess()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        /**
+         * 任务的返回值，未成功时为 null
+         */
+        @SuppressWarnings("unchecked")
+        public <V> V get(String name) {
+            FanOutResult.TaskResult<Object> result = results.get(name);
+            return result == null ? null : (V) result.value();
+        }
+
+        public FanOutResult.TaskResult<Object> getResult(String name) {
+            return results.get(name);
+        }
+
+        public Map<String, FanOutResult.TaskResult<Object>> getResults() {
+            return results;
+        }
+    }
+
+    /**
+     * 图节点
+     */
+    private final class Node {
+        private static final int NEW = 0;
+        private static final int SCHEDULED = 1;
+        private static final int SKIPPED = 2;
+        private static final int CANCELLED = 3;
+
+        private final String name;
+        private final Executor executor;
+        private final Task<?> task;
+        private final String[] dependsOn;
+        private final List<Node> dependents = new ArrayList<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicInteger state = new AtomicInteger(NEW);
+        private final LatchMetrics.TaskMetrics metrics;
+        private final NodeFuture future;
+        private Node[] dependencies;
+        private CountDownLatch latch;
+        private volatile long submitNanos;
+        private volatile long startNanos;
+        private volatile long endNanos;
+
+        Node(String name, Executor executor, Task<?> task, String[] dependsOn) {
+            this.name = name;
+            this.executor = executor != null ? executor : TaskBatch.VIRTUAL_EXECUTOR;
+            this.task = task;
+            this.dependsOn = Arrays.copyOf(dependsOn, dependsOn.length);
+            this.metrics = LatchMetrics.forTask(name);
+            Context context = new Context(this);
+            this.future = new NodeFuture(ContextSnapshot.capture().wrap(() -> {
+                long start = System.nanoTime();
+                startNanos = start;
+                metrics.recordQueueWait(start - submitNanos);
+                try {
+                    return this.task.call(context);
+                } finally {
+                    endNanos = System.nanoTime();
+                }
+            }));
+        }
+
+        void schedule() {
+            if (cancelled || !state.compareAndSet(NEW, SCHEDULED)) {
+                return;
+            }
+            submitNanos = System.nanoTime();
+            try {
+                executor.execute(future);
+            } catch (RejectedExecutionException e) {
+                future.reject(e);
+            }
+        }
+
+        private void onDone() {
+            try {
+                boolean success = !future.isCancelled() && !failed();
+                long start = startNanos;
+                long end = endNanos;
+                // cancel(true) 在取消方线程上立即回调，任务的 finally 可能还没记下结束时间；取消只由 cancel() 计数
+                if (start != 0 && end != 0 && !future.isCancelled()) {
+                    metrics.recordRun(end - start, !success);
+                }
+                for (Node dependent : dependents) {
+                    if (success) {
+                        if (dependent.pending.decrementAndGet() == 0) {
+                            dependent.schedule();
+                        }
+                    } else {
+                        dependent.skip();
+                    }
+                }
+            } finally {
+                latch.countDown();
+            }
+        }
+
+        private boolean failed() {
+            try {
+                future.get();
+                return false;
+            } catch (ExecutionException e) {
+                if (startNanos != 0) {
+                    log.error("Task execution failed [{}]", name, e.getCause());
+                }
+                return true;
+            } catch (CancellationException | InterruptedException e) {
+                return true;
+            }
+        }
+
+        /**
+         * 上游失败或被取消，本节点及其下游都不再执行
+         */
+        void skip() {
+            // 超时取消时上游的 done 回调也会走到这里，此时按取消处理
+            if (state.compareAndSet(NEW, cancelled ? CANCELLED : SKIPPED)) {
+                for (Node dependent : dependents) {
+                    dependent.skip();
+                }
+                latch.countDown();
+            }
+        }
+
+        /**
+         * 超时取消
+         *
+         * @return 是否中断了正在运行的任务
+         */
+        boolean cancel() {
+            if (state.compareAndSet(NEW, CANCELLED)) {
+                metrics.recordCancelled();
+                latch.countDown();
+                return false;
+            }
+            if (state.get() == SCHEDULED && !future.isDone()) {
+                boolean running = startNanos != 0;
+                if (future.cancel(true)) {
+                    metrics.recordCancelled();
+                    return running;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 节点的 FutureTask：完成时通知下游；线程池拒绝时按失败完成，与 LatchUtils、FanOut 一致
+         */
+        private final class NodeFuture extends FutureTask<Object> implements TrackedTask {
+
+            NodeFuture(Callable<Object> callable) {
+                super(callable);
+            }
+
+            @Override
+            public void reject(Throwable e) {
+                if (isDone()) {
+                    return;
+                }
+                log.error("Task rejected [{}]", name, e);
+                metrics.recordRun(0, true);
+                setException(e);
+            }
+
+            @Override
+            public boolean runTracked() {
+                run();
+                return isCancelled() || state() == State.FAILED;
+            }
+
+            @Override
+            protected void done() {
+                onDone();
+            }
+        }
+
+        FanOutResult.TaskResult<Object> toResult() {
+            long start = startNanos;
+            long end = endNanos;
+            long queueNanos = start == 0 ? 0 : start - submitNanos;
+            long runNanos = start == 0 || end == 0 ? 0 : end - start;
+            int current = state.get();
+            if (current == SKIPPED) {
+                return new FanOutResult.TaskResult<>(name, FanOutResult.State.SKIPPED, null, null, 0, 0);
+            }
+            if (current == CANCELLED || future.isCancelled()) {
+                return new FanOutResult.TaskResult<>(name, FanOutResult.State.CANCELLED, null, null, queueNanos, runNanos);
+            }
+            try {
+                return new FanOutResult.TaskResult<>(name, FanOutResult.State.SUCCESS, future.get(), null, queueNanos, runNanos);
+            } catch (ExecutionException e) {
+                return new FanOutResult.TaskResult<>(name, FanOutResult.State.FAILED, null, e.getCause(), queueNanos, runNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new FanOutResult.TaskResult<>(name, FanOutResult.State.CANCELLED, null, null, queueNanos, runNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.cn.pstoolkit.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 流式提交：任务在 submit 时立即开始执行，同时运行的任务数不超过窗口大小，
+ * 窗口已满时 submit 阻塞，内存占用只与窗口大小有关，与输入总量无关。
+ * <pre>
+ * try (TaskStream stream = TaskStream.open(executor, 64)) {
+ *     for (Document doc : cursor) {
+ *         stream.submit(() -&gt; process(doc), "mongo-row");
+ *     }
+ *     LatchOutcome outcome = stream.await(30, TimeUnit.SECONDS);
+ * }
+ * </pre>
+ * 为了不随输入增长，结果里只保留失败的任务。一个 TaskStream 只能由一个线程提交，只能 await 一次。
+ */
+@Slf4j
+public final class TaskStream implements AutoCloseable {
+
+    private final Executor executor;
+    private final int maxInFlight;
+    private final Semaphore window;
+    private final Set<InFlight> inFlight = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<LatchOutcome.TaskOutcome> failures = new ConcurrentLinkedQueue<>();
+    private boolean interrupted;
+    private boolean finished;
+
+    private TaskStream(Executor executor, int maxInFlight) {
+        this.executor = executor != null ? executor : TaskBatch.VIRTUAL_EXECUTOR;
+        this.maxInFlight = maxInFlight;
+        this.window = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * @param executor    执行任务的线程池，为 null 时每个任务使用一个虚拟线程
+     * @param maxInFlight 同时运行的最大任务数
+     */
+    public static TaskStream open(Executor executor, int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        return new TaskStream(executor, maxInFlight);
+    }
+
+    /**
+     * 提交并立即执行任务
+     */
+    public boolean submit(Runnable runnable) {
+        return submit(runnable, null);
+    }
+
+    /**
+     * 提交并立即执行任务，窗口已满时阻塞到有任务完成
+     *
+     * @return 提交线程在等待窗口时被中断返回 false，任务不会执行，中断标记保留
+     */
+    public boolean submit(Runnable runnable, String taskName) {
+        if (finished) {
+            throw new IllegalStateException("TaskStream already finished");
+        }
+        try {
+            window.acquire();
+        } catch (InterruptedException e) {
+            interrupted = true;
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        InFlight task = new InFlight(runnable, taskName);
+        inFlight.add(task);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.error("Task rejected [{}]", task.displayName(), e);
+            task.metrics.recordRun(0, true);
+            failures.add(new LatchOutcome.TaskOutcome(taskName, e, 0));
+            inFlight.remove(task);
+            window.release();
+        }
+        return true;
+    }
+
+    /**
+     * 当前正在运行的任务数
+     */
+    public int inFlight() {
+        return maxInFlight - window.availablePermits();
+    }
+
+    /**
+     * 等待已提交的任务全部完成（无超时）
+     */
+    public LatchOutcome await() {
+        return await(0, null);
+    }
+
+    /**
+     * 等待已提交的任务全部完成，超时或中断时取消仍在运行的任务
+     */
+    public LatchOutcome await(long timeout, TimeUnit timeUnit) {
+        if (finished) {
+            throw new IllegalStateException("TaskStream already finished");
+        }
+        finished = true;
+        boolean timedOut = false;
+        try {
+            if (timeUnit == null) {
+                window.acquire(maxInFlight);
+            } else {
+                timedOut = !window.tryAcquire(maxInFlight, timeout, timeUnit);
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+
+        List<String> stragglers = List.of();
+        if (timedOut || interrupted) {
+            stragglers = cancelInFlight();
+            log.warn("Stream wait {}, cancelled running tasks {}",
+                    interrupted ? "interrupted" : "timed out", stragglers);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        LatchMetrics.recordWait(timedOut || interrupted);
+        return new LatchOutcome(new ArrayList<>(failures), stragglers, 0, timedOut, interrupted);
+    }
+
+    /**
+     * 没有 await 就关闭时，取消仍在运行的任务
+     */
+    @Override
+    public void close() {
+        if (!finished) {
+            finished = true;
+            List<String> stragglers = cancelInFlight();
+            if (!stragglers.isEmpty()) {
+                log.warn("Stream closed without await, cancelled running tasks {}", stragglers);
+            }
+        }
+    }
+
+    private List<String> cancelInFlight() {
+        List<String> stragglers = new ArrayList<>();
+        for (InFlight task : inFlight) {
+            if (task.cancel(true)) {
+                task.metrics.recordCancelled();
+                stragglers.add(task.displayName());
+            }
+        }
+        return stragglers;
+    }
+
+    /**
+     * 运行中的任务，执行结束或被取消时归还窗口（只归还一次）
+     */
+    private final class InFlight extends FutureTask<Void> {
+        private final String taskName;
+        private final LatchMetrics.TaskMetrics metrics;
+        private final long submitNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        InFlight(Runnable runnable, String taskName) {
+            super(ContextSnapshot.capture().wrap(runnable), null);
+            this.taskName = taskName;
+            this.metrics = LatchMetrics.forTask(taskName);
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                metrics.recordQueueWait(start - submitNanos);
+                super.run();
+                // 失败记录在归还窗口之前完成，await 返回时一定能看到
+                if (state() == State.FAILED) {
+                    long duration = System.nanoTime() - start;
+                    Throwable error = exceptionNow();
+                    log.error("Task execution failed [{}]", displayName(), error);
+                    metrics.recordRun(duration, true);
+                    failures.add(new LatchOutcome.TaskOutcome(taskName, error, duration));
+                    // 与 TaskBatch 一致：Error 记录为失败后继续抛给执行线程，不被 FutureTask 吞掉
+                    if (error instanceof Error e) {
+                        throw e;
+                    }
+                } else if (state() == State.SUCCESS) {
+                    metrics.recordRun(System.nanoTime() - start, false);
+                }
+            } finally {
+                release();
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                release();
+            }
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.remove(this);
+                window.release();
+            }
+        }
+
+        String displayName() {
+            return taskName != null ? taskName : "stream-task";
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.cn.pstoolkit.utils;
+
+/**
+ * 工具类内部提交到线程池的任务。
+ * 在线程池之外再做一层调度的一方（如 {@link Bulkhead} 的排队）可以据此让任务按失败完成，判断任务是否被取消，以及取得执行结果。
+ */
+interface TrackedTask extends Runnable {
+
+    /**
+     * 任务无法执行，按失败完成，等待方不会一直等下去
+     */
+    void reject(Throwable e);
+
+    /**
+     * 任务已被取消（或副本已无需执行），在 run 之前调用为 true 时本次 run 不会真正执行任务
+     */
+    boolean isCancelled();
+
+    /**
+     * 执行任务，返回本次执行是否失败：任务抛出异常，或运行中被取消中断。
+     * 结果由执行线程直接返回，不在执行后读取任务状态，槽位被下一轮复用也不影响
+     */
+    boolean runTracked();
+}
@@ -0,0 +1,128 @@
+package com.cn.pstoolkit.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UI 线程（Swing EDT、JavaFX Application Thread）的卡顿探针。
+ * <pre>
+ * UiStallProbe probe = new UiStallProbe("chat-edt", SwingUtilities::invokeLater, 50, TimeUnit.MILLISECONDS);
+ * probe.startHeartbeat(100, TimeUnit.MILLISECONDS);
+ * probe.measure("stream-flush", () -&gt; bubble.append(delta));
+ * </pre>
+ * 两类数据：每次 UI 更新在 UI 线程上占用的时间（按更新名称分别统计，超过阈值打 warn 日志），
+ * 以及心跳任务从提交到在 UI 线程上执行的延迟——后者包含布局、绘制等不在 measure 里的开销，反映用户感受到的卡顿。
+ */
+@Slf4j
+public final class UiStallProbe {
+
+    private static final ScheduledThreadPoolExecutor TIMER = newTimer();
+
+    private final String name;
+    private final Executor uiExecutor;
+    private final long warnThresholdNanos;
+    private final Map<String, LatencyHistogram> updates = new ConcurrentHashMap<>();
+    private final LatencyHistogram dispatchDelay = new LatencyHistogram();
+    private ScheduledFuture<?> heartbeat;
+
+    /**
+     * @param uiExecutor    提交到 UI 线程的执行器，例如 SwingUtilities::invokeLater
+     * @param warnThreshold 单次更新超过该耗时打 warn 日志
+     */
+    public UiStallProbe(String name, Executor uiExecutor, long warnThreshold, TimeUnit unit) {
+        this.name = name;
+        this.uiExecutor = uiExecutor;
+        this.warnThresholdNanos = unit.toNanos(warnThreshold);
+    }
+
+    /**
+     * 在当前线程（UI 线程）执行一次更新并记录耗时
+     */
+    public void measure(String update, Runnable action) {
+        long start = System.nanoTime();
+        try {
+            action.run();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            updates.computeIfAbsent(update, key -> new LatencyHistogram()).record(elapsed);
+            if (elapsed > warnThresholdNanos) {
+                log.warn("UI [{}] update [{}] blocked the UI thread for {} ms", name, update,
+                        TimeUnit.NANOSECONDS.toMillis(elapsed));
+            }
+        }
+    }
+
+    /**
+     * 包装成提交到 UI 线程时自动记录耗时的任务
+     */
+    public Runnable wrap(String update, Runnable action) {
+        return () -> measure(update, action);
+    }
+
+    /**
+     * 按固定周期向 UI 线程提交空任务，记录排队延迟
+     */
+    public synchronized void startHeartbeat(long period, TimeUnit unit) {
+        stopHeartbeat();
+        heartbeat = TIMER.scheduleAtFixedRate(() -> {
+            long posted = System.nanoTime();
+            uiExecutor.execute(() -> dispatchDelay.record(System.nanoTime() - posted));
+        }, period, period, unit);
+    }
+
+    public synchronized void stopHeartbeat() {
+        if (heartbeat != null) {
+            heartbeat.cancel(false);
+            heartbeat = null;
+        }
+    }
+
+    /**
+     * 某类更新的耗时分布，没有记录过时返回空直方图
+     */
+    public LatencyHistogram getUpdateTimes(String update) {
+        return updates.getOrDefault(update, new LatencyHistogram());
+    }
+
+    public LatencyHistogram getDispatchDelay() {
+        return dispatchDelay;
+    }
+
+    /**
+     * 各类更新耗时和心跳延迟的摘要（微秒）
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", name);
+        Map<String, Object> byUpdate = new TreeMap<>();
+        updates.forEach((update, histogram) -> byUpdate.put(update, histogram.snapshot()));
+        result.put("updates", byUpdate);
+        result.put("dispatchDelay", dispatchDelay.snapshot());
+        return result;
+    }
+
+    /**
+     * 把摘要打到 info 日志
+     */
+    public void logSummary() {
+        log.info("UI [{}] stall summary {}", name, snapshot());
+    }
+
+    private static ScheduledThreadPoolExecutor newTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "ui-stall-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+}
@@ -0,0 +1,161 @@
+package com.cn.pstoolkit.utils;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 流式文本到 UI 线程的合并器：任意线程不断 offer 增量，UI 线程上最多每个刷新间隔收到一次合并后的文本。
+ * <pre>
+ * UpdateCoalescer updates = new UpdateCoalescer(Platform::runLater, view::appendMarkdown);
+ * client.streamAsync(endpoint, history, updates::offer)
+ *         .whenComplete((reply, error) -&gt; updates.finish(() -&gt; view.finishMarkdown()));
+ * </pre>
+ * 刷新间隔不低于一帧（默认 16ms），并按实测渲染耗时自适应：取渲染耗时滑动平均的 2 倍，
+ * 使 UI 线程花在渲染上的时间不超过一半，上限默认 250ms。
+ * 无论每秒到达多少 token，UI 队列里同一时刻最多只有一个待执行的刷新任务。
+ * {@link #finish} 立即刷新剩余内容，再执行结束回调。
+ */
+public final class UpdateCoalescer {
+
+    private static final long DEFAULT_MIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+    private static final long DEFAULT_MAX_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final ScheduledThreadPoolExecutor TIMER = newTimer();
+
+    private final Executor uiExecutor;
+    private final Consumer<String> sink;
+    private final long minIntervalNanos;
+    private final long maxIntervalNanos;
+    private final Runnable flushTask = this::flush;
+
+    private final Object lock = new Object();
+    private final StringBuilder pending = new StringBuilder();
+    /**
+     * 已有刷新任务在定时器或 UI 队列里
+     */
+    private boolean scheduled;
+    private long nextFlushNanos = System.nanoTime();
+    private double renderCostNanos;
+    private long offers;
+    private long flushes;
+
+    /**
+     * @param uiExecutor 提交到 UI 线程的执行器，例如 Platform::runLater、SwingUtilities::invokeLater
+     * @param sink       在 UI 线程上接收合并后的文本
+     */
+    public UpdateCoalescer(Executor uiExecutor, Consumer<String> sink) {
+        this(uiExecutor, sink, DEFAULT_MIN_INTERVAL_NANOS, DEFAULT_MAX_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    public UpdateCoalescer(Executor uiExecutor, Consumer<String> sink,
+                           long minInterval, long maxInterval, TimeUnit unit) {
+        if (minInterval < 0 || maxInterval < minInterval) {
+            throw new IllegalArgumentException("Invalid interval [" + minInterval + ", " + maxInterval + "]");
+        }
+        this.uiExecutor = uiExecutor;
+        this.sink = sink;
+        this.minIntervalNanos = unit.toNanos(minInterval);
+        this.maxIntervalNanos = unit.toNanos(maxInterval);
+    }
+
+    /**
+     * 追加一段增量，可在任意线程调用
+     */
+    public void offer(String delta) {
+        if (delta == null || delta.isEmpty()) {
+            return;
+        }
+        long delay;
+        synchronized (lock) {
+            pending.append(delta);
+            offers++;
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+            delay = nextFlushNanos - System.nanoTime();
+        }
+        if (delay <= 0) {
+            uiExecutor.execute(flushTask);
+        } else {
+            TIMER.schedule(() -> uiExecutor.execute(flushTask), delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 流结束：在 UI 线程上立即刷新剩余内容，然后执行 then（可为 null）。
+     * 在这之前提交到 UI 线程的刷新都已执行完。
+     */
+    public void finish(Runnable then) {
+        uiExecutor.execute(() -> {
+            drain();
+            if (then != null) {
+                then.run();
+            }
+        });
+    }
+
+    /**
+     * 当前的刷新间隔
+     */
+    public long getIntervalNanos() {
+        synchronized (lock) {
+            return interval();
+        }
+    }
+
+    public long getOffers() {
+        synchronized (lock) {
+            return offers;
+        }
+    }
+
+    public long getFlushes() {
+        synchronized (lock) {
+            return flushes;
+        }
+    }
+
+    private void flush() {
+        synchronized (lock) {
+            scheduled = false;
+            // 先按当前估计推迟下一次刷新，渲染期间到达的增量不会立即再排一个任务
+            nextFlushNanos = System.nanoTime() + interval();
+        }
+        drain();
+    }
+
+    private void drain() {
+        String batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending.toString();
+            pending.setLength(0);
+            flushes++;
+        }
+        long start = System.nanoTime();
+        sink.accept(batch);
+        long cost = System.nanoTime() - start;
+        synchronized (lock) {
+            renderCostNanos = renderCostNanos == 0 ? cost : renderCostNanos * 0.8 + cost * 0.2;
+            nextFlushNanos = Math.max(nextFlushNanos, start + interval());
+        }
+    }
+
+    private long interval() {
+        return Math.clamp((long) (renderCostNanos * 2), minIntervalNanos, maxIntervalNanos);
+    }
+
+    private static ScheduledThreadPoolExecutor newTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "ui-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+}
@@ -0,0 +1,81 @@
+package com.cn.bench;
+
+import com.cn.pstoolkit.utils.BulkTasks;
+import com.cn.pstoolkit.utils.LatchUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * 10 万个小元素的批处理：BulkTasks（ForkJoin 递归切分）vs 每个元素一个 LatchUtils 任务。
+ * parallelism 从 1 递增，观察随核数的扩展情况；超过机器核数的取值没有意义。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkTasksBenchmark {
+
+    private static final int ITEMS = 100_000;
+    /**
+     * 每个元素的计算量，大致相当于解析一行 CSV
+     */
+    private static final int WORK_TOKENS = 200;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private List<Integer> rows;
+    private ForkJoinPool forkJoinPool;
+    private ExecutorService threadPool;
+
+    @Setup
+    public void setup() {
+        rows = IntStream.range(0, ITEMS).boxed().toList();
+        forkJoinPool = new ForkJoinPool(parallelism);
+        threadPool = Executors.newFixedThreadPool(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        forkJoinPool.shutdown();
+        threadPool.shutdown();
+    }
+
+    @Benchmark
+    public long bulkTasks() {
+        return BulkTasks.mapReduce(forkJoinPool, rows, BulkTasksBenchmark::parse, 0L, Long::sum);
+    }
+
+    @Benchmark
+    public boolean latchUtilsPerItem() {
+        for (Integer row : rows) {
+            LatchUtils.submitTask(threadPool, () -> parse(row));
+        }
+        return LatchUtils.waitFor();
+    }
+
+    private static long parse(Integer row) {
+        Blackhole.consumeCPU(WORK_TOKENS);
+        return row;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(BulkTasksBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
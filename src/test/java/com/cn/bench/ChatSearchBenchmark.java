@@ -0,0 +1,138 @@
+package com.cn.bench;
+
+import com.cn.pstoolkit.llm.ChatMessage;
+import com.cn.pstoolkit.llm.ChatSearchIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 10 万条对话记录上的关键词检索：ChatSearchIndex 倒排索引与逐条 contains 扫描对比。
+ * <p>
+ * 语料按真实对话的特征生成：约 3500 个不同汉字组成 2 万个词，另有英文标识符和数字，词频服从 Zipf 分布；
+ * 提问较短，回答较长且部分带代码块。查询里的技术词放在词表的不同名次上，
+ * query 分别为两个中频词、三个不同频率的词、单个汉字，以及只出现在约千分之一消息里的低频词（线性扫描要走完全部消息）。
+ * setup 打印消息数、文本大小、索引词数和倒排表字节数。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChatSearchBenchmark {
+
+    private static final int MESSAGES = 100_000;
+    private static final int VOCABULARY = 20_000;
+    private static final double ZIPF_EXPONENT = 1.05;
+    /**
+     * 查询用到的技术词及其在词表中的名次（0 为最常用）
+     */
+    private static final String[] TERMS = {"数据库", "连接池", "内存映射", "压缩", "监控", "线程池", "超时", "重试"};
+    private static final int[] TERM_RANKS = {40, 120, 2_500, 300, 900, 60, 25, 200};
+    private static final String[] CODE = {
+            "```java\nExecutorService pool = Executors.newFixedThreadPool(8);\n```",
+            "```sql\nSELECT id, name FROM user WHERE status = 1 LIMIT 100;\n```",
+            "```yaml\nspring:\n  datasource:\n    hikari:\n      maximum-pool-size: 20\n```"};
+
+    @Param({"数据库 连接池", "内存映射 压缩 监控", "池", "死锁排查"})
+    public String query;
+
+    private final List<String> contents = new ArrayList<>();
+    private final ChatSearchIndex index = new ChatSearchIndex();
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        String[] words = vocabulary(random);
+        double[] cumulative = new double[words.length];
+        double sum = 0;
+        for (int i = 0; i < words.length; i++) {
+            sum += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cumulative[i] = sum;
+        }
+        long textBytes = 0;
+        for (int i = 0; i < MESSAGES; i++) {
+            boolean question = i % 2 == 0;
+            int length = question ? 5 + random.nextInt(25) : 30 + random.nextInt(220);
+            StringBuilder content = new StringBuilder(length * 4);
+            for (int w = 0; w < length; w++) {
+                int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+                content.append(words[rank < 0 ? -rank - 1 : rank]);
+                int punctuation = random.nextInt(10);
+                content.append(punctuation == 0 ? "，" : punctuation == 1 ? "。" : punctuation == 2 ? " " : "");
+            }
+            if (!question && random.nextInt(5) == 0) {
+                content.append("\n\n").append(CODE[random.nextInt(CODE.length)]);
+            }
+            if (i % 997 == 0) {
+                content.append("死锁排查");
+            }
+            String text = content.toString();
+            textBytes += text.getBytes(StandardCharsets.UTF_8).length;
+            contents.add(text);
+            index.add(i, question ? ChatMessage.user(text) : ChatMessage.assistant(text));
+        }
+        System.out.printf("%nmessages=%d textBytes=%d terms=%d postingsBytes=%d%n",
+                index.size(), textBytes, index.getTermCount(), index.getPostingsBytes());
+    }
+
+    /**
+     * Zipf 名次到词：大部分是 1~4 个汉字的词，约 15% 是英文标识符或数字，查询用的技术词放在指定名次
+     */
+    private static String[] vocabulary(Random random) {
+        char[] hanzi = new char[3_500];
+        for (int i = 0; i < hanzi.length; i++) {
+            hanzi[i] = (char) (0x4E00 + random.nextInt(0x9FA5 - 0x4E00));
+        }
+        String[] syllables = {"get", "set", "user", "order", "cache", "pool", "list", "map", "id", "async", "task", "config"};
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < words.length; i++) {
+            int kind = random.nextInt(20);
+            if (kind < 2) {
+                words[i] = syllables[random.nextInt(syllables.length)]
+                        + Character.toUpperCase(syllables[random.nextInt(syllables.length)].charAt(0))
+                        + syllables[random.nextInt(syllables.length)].substring(1);
+            } else if (kind == 2) {
+                words[i] = Integer.toString(random.nextInt(10_000));
+            } else {
+                StringBuilder word = new StringBuilder();
+                for (int c = 1 + random.nextInt(4); c > 0; c--) {
+                    word.append(hanzi[random.nextInt(hanzi.length)]);
+                }
+                words[i] = word.toString();
+            }
+        }
+        for (int i = 0; i < TERMS.length; i++) {
+            words[TERM_RANKS[i]] = TERMS[i];
+        }
+        return words;
+    }
+
+    @Benchmark
+    public List<Long> invertedIndex() {
+        return index.search(query, 50);
+    }
+
+    @Benchmark
+    public List<Long> linearScan() {
+        String[] parts = query.split(" ");
+        List<Long> result = new ArrayList<>();
+        for (int i = contents.size() - 1; i >= 0 && result.size() < 50; i--) {
+            String content = contents.get(i);
+            boolean all = true;
+            for (String part : parts) {
+                all &= content.contains(part);
+            }
+            if (all) {
+                result.add((long) i);
+            }
+        }
+        return result;
+    }
+}
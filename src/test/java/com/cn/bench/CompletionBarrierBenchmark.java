@@ -0,0 +1,70 @@
+package com.cn.bench;
+
+import com.cn.pstoolkit.utils.StripedCompletionBarrier;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 64 个线程同时对同一个屏障做完成计数：CountDownLatch（单个 AQS state 上 CAS）
+ * vs StripedCompletionBarrier（按下标分段计数）。
+ * 计数初始化为 Integer.MAX_VALUE，测量期间不会归零，只衡量递减本身的竞争开销。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class CompletionBarrierBenchmark {
+
+    @Param({"1", "16", "64"})
+    public int stripes;
+
+    private CountDownLatch latch;
+    private StripedCompletionBarrier barrier;
+    private final AtomicInteger threadIds = new AtomicInteger();
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        latch = new CountDownLatch(Integer.MAX_VALUE);
+        barrier = new StripedCompletionBarrier(Integer.MAX_VALUE, stripes);
+    }
+
+    /**
+     * 每个线程固定使用一个下标，相当于该线程执行的任务总落在同一段
+     */
+    @State(Scope.Thread)
+    public static class Participant {
+        int index;
+
+        @Setup
+        public void setup(CompletionBarrierBenchmark benchmark) {
+            index = benchmark.threadIds.getAndIncrement();
+        }
+    }
+
+    @Benchmark
+    public void countDownLatch() {
+        latch.countDown();
+    }
+
+    @Benchmark
+    public void stripedBarrier(Participant participant) {
+        barrier.arrive(participant.index);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CompletionBarrierBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,59 @@
+package com.cn.bench;
+
+import com.cn.pstoolkit.utils.LatchUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LatchUtils 一次扇出的端到端开销：不同扇出宽度 × 不同线程池类型。
+ * 每个任务只做少量计算，结果主要反映提交、调度和等待本身的成本。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LatchFanOutBenchmark {
+
+    private static final Runnable WORK = () -> Blackhole.consumeCPU(100);
+
+    @Param({"1", "8", "64", "512"})
+    public int width;
+
+    @Param({"fixed", "forkjoin", "virtual"})
+    public String executorType;
+
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        executor = switch (executorType) {
+            case "fixed" -> Executors.newFixedThreadPool(threads);
+            case "forkjoin" -> new ForkJoinPool(threads);
+            // 虚拟线程由 LatchUtils 自己创建，不需要线程池
+            default -> null;
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public boolean fanOut() {
+        for (int i = 0; i < width; i++) {
+            LatchUtils.submitTask(executor, WORK, "bench-fan-out");
+        }
+        return LatchUtils.waitFor(10, TimeUnit.SECONDS);
+    }
+}
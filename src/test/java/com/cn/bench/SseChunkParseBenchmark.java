@@ -0,0 +1,130 @@
+package com.cn.bench;
+
+import com.cn.pstoolkit.llm.DeltaExtractor;
+import com.cn.pstoolkit.llm.SseDecoder;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OpenAI 兼容接口流式响应的 SSE 行解析：每个 "data: {...}" 行取出 choices[0].delta.content。
+ * treeModel 是 FxChatApp 原来的写法（每行构建 JsonObject 树），typed 使用 Gson 直接绑定到 record，
+ * 两者都从已经拆好的行开始，不含 ofLines 解码的开销；decoder 是 LlmClient 现在的路径，
+ * 从 512 字节的网络块开始经过 SseDecoder 和 DeltaExtractor。
+ * 一次操作处理一条完整回复的全部 chunk，每个 token 的分配量用 -prof gc 的 gc.alloc.rate.norm 除以 chunks。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SseChunkParseBenchmark {
+
+    private static final Gson GSON = new Gson();
+
+    @Param({"500"})
+    public int chunks;
+
+    private List<String> lines;
+    private ByteBuffer[] buffers;
+
+    @Setup
+    public void setup() {
+        lines = sseLines(chunks);
+        byte[] body = (String.join("\n", lines) + "\n\n").getBytes(StandardCharsets.UTF_8);
+        buffers = new ByteBuffer[(body.length + 511) / 512];
+        for (int i = 0; i < buffers.length; i++) {
+            int from = i * 512;
+            buffers[i] = ByteBuffer.wrap(Arrays.copyOfRange(body, from, Math.min(body.length, from + 512)));
+        }
+    }
+
+    /**
+     * 模拟一条回复的 SSE 行，每个 chunk 一个 token，中间穿插空行，最后是 [DONE]
+     */
+    static List<String> sseLines(int chunks) {
+        List<String> lines = new ArrayList<>(chunks * 2 + 1);
+        for (int i = 0; i < chunks; i++) {
+            String token = i % 3 == 0 ? "并发" : i % 3 == 1 ? " token" : "\\n";
+            lines.add("data: {\"id\":\"chatcmpl-123\",\"object\":\"chat.completion.chunk\",\"created\":1700000000,"
+                    + "\"model\":\"gpt-4o-mini\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"" + token
+                    + "\"},\"finish_reason\":null}]}");
+            lines.add("");
+        }
+        lines.add("data: [DONE]");
+        return lines;
+    }
+
+    @Benchmark
+    public String treeModel() {
+        StringBuilder reply = new StringBuilder();
+        for (String line : lines) {
+            if (line.startsWith("data:") && !line.contains("[DONE]")) {
+                JsonObject chunk = JsonParser.parseString(line.substring(5).trim()).getAsJsonObject();
+                JsonArray choices = chunk.getAsJsonArray("choices");
+                if (choices != null && !choices.isEmpty()) {
+                    JsonObject delta = choices.get(0).getAsJsonObject().getAsJsonObject("delta");
+                    JsonElement content = delta != null ? delta.get("content") : null;
+                    if (content != null && !content.isJsonNull()) {
+                        reply.append(content.getAsString());
+                    }
+                }
+            }
+        }
+        return reply.toString();
+    }
+
+    @Benchmark
+    public String typed() {
+        StringBuilder reply = new StringBuilder();
+        for (String line : lines) {
+            if (line.startsWith("data:") && !line.contains("[DONE]")) {
+                Chunk chunk = GSON.fromJson(line.substring(5).trim(), Chunk.class);
+                if (chunk.choices() != null && !chunk.choices().isEmpty()) {
+                    Delta delta = chunk.choices().get(0).delta();
+                    if (delta != null && delta.content() != null) {
+                        reply.append(delta.content());
+                    }
+                }
+            }
+        }
+        return reply.toString();
+    }
+
+    @Benchmark
+    public String decoder() {
+        StringBuilder reply = new StringBuilder();
+        DeltaExtractor extractor = new DeltaExtractor();
+        SseDecoder decoder = new SseDecoder((event, data, offset, length) -> {
+            String delta = extractor.extract(data, offset, length);
+            if (delta != null) {
+                reply.append(delta);
+            }
+        });
+        for (ByteBuffer buffer : buffers) {
+            decoder.feed(buffer.rewind());
+        }
+        decoder.finish();
+        return reply.toString();
+    }
+
+    record Chunk(List<Choice> choices) {
+    }
+
+    record Choice(Delta delta) {
+    }
+
+    record Delta(String content) {
+    }
+}
@@ -0,0 +1,141 @@
+package com.cn.bench;
+
+import com.cn.pstoolkit.utils.LatchMetrics;
+import com.cn.pstoolkit.utils.LatchUtils;
+import com.cn.pstoolkit.utils.TaskBatch;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 任务暂存方式对比：旧的 ThreadLocal + LinkedList + 每任务 TaskInfo/FutureTask，
+ * 新的 TaskBatch（数组暂存 + 槽位复用 + 对象池）以及基于它的 LatchUtils 门面。
+ * 使用调用线程直接执行的 Executor，只衡量暂存和调度本身的开销。
+ * 分配速率看 GCProfiler 输出的 gc.alloc.rate.norm（每次操作分配的字节数）。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TaskBatchBenchmark {
+
+    private static final Executor DIRECT = Runnable::run;
+    private static final Runnable NOOP = () -> { };
+
+    @Param({"2", "16", "256"})
+    public int batchSize;
+
+    @Benchmark
+    public boolean legacyThreadLocalList() {
+        for (int i = 0; i < batchSize; i++) {
+            LegacyLatch.submitTask(DIRECT, NOOP, "bench");
+        }
+        return LegacyLatch.waitFor(1, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public boolean latchUtilsFacade() {
+        for (int i = 0; i < batchSize; i++) {
+            LatchUtils.submitTask(DIRECT, NOOP, "bench");
+        }
+        return LatchUtils.waitFor(1, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public boolean taskBatch() {
+        try (TaskBatch batch = TaskBatch.acquire()) {
+            for (int i = 0; i < batchSize; i++) {
+                batch.submit(DIRECT, NOOP, "bench");
+            }
+            return batch.await(1, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 改造前 LatchUtils 的暂存与执行方式
+     */
+    static final class LegacyLatch {
+        private static final ThreadLocal<List<TaskInfo>> THREAD_LOCAL =
+                ThreadLocal.withInitial(LinkedList::new);
+
+        static void submitTask(Executor executor, Runnable runnable, String taskName) {
+            THREAD_LOCAL.get().add(new TaskInfo(executor, runnable, taskName));
+        }
+
+        static boolean waitFor(long timeout, TimeUnit timeUnit) {
+            List<TaskInfo> taskInfos = THREAD_LOCAL.get();
+            THREAD_LOCAL.remove();
+            int size = taskInfos.size();
+            CountDownLatch latch = new CountDownLatch(size);
+            AtomicReferenceArray<Throwable[]> outcomes = new AtomicReferenceArray<>(size);
+            int index = 0;
+            for (TaskInfo taskInfo : taskInfos) {
+                LatchMetrics.TaskMetrics metrics = LatchMetrics.forTask(taskInfo.taskName);
+                int slot = index++;
+                long submitNanos = System.nanoTime();
+                taskInfo.future = new FutureTask<>(() -> {
+                    long start = System.nanoTime();
+                    metrics.recordQueueWait(start - submitNanos);
+                    Throwable error = null;
+                    try {
+                        taskInfo.runnable.run();
+                    } catch (Throwable e) {
+                        error = e;
+                    } finally {
+                        metrics.recordRun(System.nanoTime() - start, error != null);
+                        outcomes.set(slot, new Throwable[]{error});
+                        latch.countDown();
+                    }
+                }, null);
+                taskInfo.executor.execute(taskInfo.future);
+            }
+            try {
+                boolean done = latch.await(timeout, timeUnit);
+                for (int i = 0; i < size; i++) {
+                    Throwable[] outcome = outcomes.get(i);
+                    if (outcome == null || outcome[0] != null) {
+                        return false;
+                    }
+                }
+                return done;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private static final class TaskInfo {
+            private final Executor executor;
+            private final Runnable runnable;
+            private final String taskName;
+            private FutureTask<Void> future;
+
+            TaskInfo(Executor executor, Runnable runnable, String taskName) {
+                this.executor = executor;
+                this.runnable = runnable;
+                this.taskName = taskName;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TaskBatchBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,79 @@
+package com.cn.bench;
+
+import com.cn.pstoolkit.entity.User;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User 实体的序列化开销：Gson、Jackson（Spring MVC 默认）以及 JDK 序列化（Redis 默认的 JdkSerializationRedisSerializer）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserSerializationBenchmark {
+
+    private static final Gson GSON = new Gson();
+    private static final JsonMapper JACKSON = JsonMapper.builder().build();
+
+    private User user;
+    private String json;
+    private byte[] jdkBytes;
+
+    @Setup
+    public void setup() throws IOException {
+        user = new User(10086L, "张三", "zhangsan@example.com", 28);
+        json = GSON.toJson(user);
+        jdkBytes = jdkSerialize(user);
+    }
+
+    @Benchmark
+    public String gsonWrite() {
+        return GSON.toJson(user);
+    }
+
+    @Benchmark
+    public User gsonRead() {
+        return GSON.fromJson(json, User.class);
+    }
+
+    @Benchmark
+    public String jacksonWrite() {
+        return JACKSON.writeValueAsString(user);
+    }
+
+    @Benchmark
+    public User jacksonRead() {
+        return JACKSON.readValue(json, User.class);
+    }
+
+    @Benchmark
+    public byte[] jdkWrite() throws IOException {
+        return jdkSerialize(user);
+    }
+
+    @Benchmark
+    public Object jdkRead() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(jdkBytes))) {
+            return in.readObject();
+        }
+    }
+
+    private static byte[] jdkSerialize(User user) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(user);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -1,8 +1,11 @@
 package com.cn.fx;
 
+import com.cn.pstoolkit.llm.ChatMessage;
+import com.cn.pstoolkit.llm.ConversationContext;
+import com.cn.pstoolkit.llm.LlmClient;
+import com.cn.pstoolkit.llm.LlmEndpoint;
+import com.cn.pstoolkit.utils.UpdateCoalescer;
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.concurrent.Worker;
@@ -24,13 +27,10 @@ import netscape.javascript.JSObject;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 import java.util.prefs.Preferences;
 
 /**
@@ -40,6 +40,10 @@ public class FxChatApp extends Application {
 
     private static final Gson gson = new Gson();
     private final List<ChatMessage> conversationHistory = new ArrayList<>();
+    /**
+     * 实际发送的上下文，超出 token 预算时裁剪；conversationHistory 保留完整记录用于导出
+     */
+    private final ConversationContext context = new ConversationContext();
     private VBox messageContainer;
     private ScrollPane scrollPane;
     private TextArea inputArea;
@@ -139,7 +143,8 @@ public class FxChatApp extends Application {
 
         // 1. UI添加用户气泡
         addMessageBubble(content, true);
-        conversationHistory.add(new ChatMessage("user", content));
+        conversationHistory.add(ChatMessage.user(content));
+        context.add(ChatMessage.user(content));
 
         // 2. UI添加AI占位气泡（用于流式更新）
         MarkdownWebView aiBubble = new MarkdownWebView();
@@ -151,68 +156,28 @@ public class FxChatApp extends Application {
         String apiUrl = prefs.get("apiUrl", "https://api.openai.com/v1/chat/completions");
         String model = prefs.get("model", "gpt-3.5-turbo");
 
-        JsonObject reqJson = new JsonObject();
-        reqJson.addProperty("model", model);
-        reqJson.addProperty("stream", true);
-
-        JsonArray messages = new JsonArray();
-        // 添加上下文历史 (简单策略：发送全部)
-        for (ChatMessage msg : conversationHistory) {
-            JsonObject m = new JsonObject();
-            m.addProperty("role", msg.role);
-            m.addProperty("content", msg.content);
-            messages.add(m);
-        }
-        reqJson.add("messages", messages);
-
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(apiUrl))
-                .header("Content-Type", "application/json")
-                .header("Authorization", "Bearer " + apiKey)
-                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(reqJson)))
-                .build();
-
-        // 4. 异步流式处理
-        new Thread(() -> {
-            try {
-                client.send(request, HttpResponse.BodyHandlers.ofLines())
-                        .body()
-                        .forEach(line -> {
-                            // 处理 SSE 格式: data: {...}
-                            if (line.startsWith("data:") && !line.contains("[DONE]")) {
-                                String jsonStr = line.substring(5).trim();
-                                try {
-                                    JsonObject chunk = gson.fromJson(jsonStr, JsonObject.class);
-                                    JsonArray choices = chunk.getAsJsonArray("choices");
-                                    if (choices != null && !choices.isEmpty()) {
-                                        JsonObject delta = choices.get(0).getAsJsonObject().getAsJsonObject("delta");
-                                        if (delta.has("content")) {
-                                            String token = delta.get("content").getAsString();
-                                            fullResponse.append(token);
-                                            // 更新 UI 必须在 JavaFX 线程
-                                            Platform.runLater(() -> aiBubble.updateMarkdown(fullResponse.toString()));
-                                        }
-                                    }
-                                } catch (Exception ignored) {}
-                            }
-                        });
-
-                // 完成后保存历史
-                Platform.runLater(() -> {
-                    conversationHistory.add(new ChatMessage("assistant", fullResponse.toString()));
-                    sendBtn.setDisable(false);
-                    // 绑定导出事件到这个气泡
-                    aiBubble.setExportContent(fullResponse.toString());
-                });
+        // 添加上下文历史（超出预算时较早的消息压缩为摘要）
+        LlmEndpoint endpoint = new LlmEndpoint(apiUrl, apiKey, model);
 
-            } catch (Exception ex) {
-                Platform.runLater(() -> {
-                    aiBubble.updateMarkdown("**Error:** " + ex.getMessage());
+        // 4. 异步流式处理，增量在 LlmClient 的虚拟线程上回调，合并后每帧最多刷新一次（更新 UI 必须在 JavaFX 线程）
+        UpdateCoalescer updates = new UpdateCoalescer(Platform::runLater, delta -> {
+            fullResponse.append(delta);
+            aiBubble.updateMarkdown(fullResponse.toString());
+        });
+        LlmClient.shared().streamAsync(endpoint, context, updates::offer)
+                .whenComplete((reply, error) -> updates.finish(() -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        aiBubble.updateMarkdown("**Error:** " + cause.getMessage());
+                    } else {
+                        // 完成后保存历史
+                        conversationHistory.add(ChatMessage.assistant(reply));
+                        context.add(ChatMessage.assistant(reply));
+                        // 绑定导出事件到这个气泡
+                        aiBubble.setExportContent(reply);
+                    }
                     sendBtn.setDisable(false);
-                });
-            }
-        }).start();
+                }));
     }
 
     // --- UI组件：用户气泡 ---
@@ -291,6 +256,7 @@ public class FxChatApp extends Application {
     // --- 功能：清空历史 ---
     private void clearHistory() {
         conversationHistory.clear();
+        context.clear();
         messageContainer.getChildren().clear();
     }
 
@@ -308,8 +274,8 @@ public class FxChatApp extends Application {
                     writer.write(singleContent);
                 } else {
                     for (ChatMessage msg : conversationHistory) {
-                        writer.write("### " + msg.role.toUpperCase() + "\n\n");
-                        writer.write(msg.content + "\n\n");
+                        writer.write("### " + msg.role().toUpperCase() + "\n\n");
+                        writer.write(msg.content() + "\n\n");
                         writer.write("---\n\n");
                     }
                 }
@@ -320,13 +286,6 @@ public class FxChatApp extends Application {
         }
     }
 
-    // --- 内部类：简单的消息对象 ---
-    private static class ChatMessage {
-        String role;
-        String content;
-        ChatMessage(String role, String content) { this.role = role; this.content = content; }
-    }
-
     /**
      * 自定义组件：支持 Markdown 的 WebView
      * 使用 marked.js 和 highlight.js 进行渲染
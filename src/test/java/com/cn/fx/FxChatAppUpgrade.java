@@ -1,8 +1,14 @@
 package com.cn.fx;
 
+import com.cn.pstoolkit.llm.ChatMessage;
+import com.cn.pstoolkit.llm.ChatSearchIndex;
+import com.cn.pstoolkit.llm.ConversationContext;
+import com.cn.pstoolkit.llm.ConversationLog;
+import com.cn.pstoolkit.llm.LlmClient;
+import com.cn.pstoolkit.llm.LlmEndpoint;
+import com.cn.pstoolkit.markdown.TranscriptEntry;
+import com.cn.pstoolkit.utils.UpdateCoalescer;
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
 import javafx.animation.FadeTransition;
 import javafx.animation.ParallelTransition;
 import javafx.animation.ScaleTransition;
@@ -11,6 +17,7 @@ import javafx.application.Platform;
 import javafx.concurrent.Worker;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.geometry.Insets;
+import javafx.geometry.Orientation;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.Scene;
@@ -37,20 +44,32 @@ import javax.imageio.ImageIO;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Path;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 import java.util.prefs.Preferences;
 
 public class FxChatAppUpgrade extends Application {
 
     private static final Gson gson = new Gson();
-    private final List<ChatMessage> conversationHistory = new ArrayList<>();
-    private VBox messageContainer;
-    private ScrollPane scrollPane;
+    // 本地保存的对话记录，启动时只读索引和最近的消息
+    private static final Path HISTORY_DIR = Path.of(System.getProperty("user.home"), ".pstoolkit", "chat-fx");
+    private static final int HISTORY_TAIL = 200;
+    private final ConversationContext conversationHistory = new ConversationContext();
+    private ConversationLog history;
+    // 历史记录的全文索引，只在 indexer 线程上按序号顺序更新
+    private final ChatSearchIndex searchIndex = new ChatSearchIndex();
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chat-search-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * 聊天记录：只有可见的行持有 WebView，滚出屏幕的消息只剩 HTML 和测得的高度
+     */
+    private ListView<TranscriptEntry> transcript;
     private TextArea inputArea;
     private Button sendBtn;
     private final Preferences prefs = Preferences.userNodeForPackage(FxChatAppUpgrade.class);
@@ -74,19 +93,19 @@ public class FxChatAppUpgrade extends Application {
         Button clearBtn = new Button("🗑 清空");
         clearBtn.setOnAction(e -> clearHistory());
 
-        HBox topBar = new HBox(10, settingsBtn, clearBtn);
+        Button searchBtn = new Button("🔍 搜索");
+        searchBtn.setOnAction(e -> showSearchDialog(primaryStage));
+
+        HBox topBar = new HBox(10, searchBtn, settingsBtn, clearBtn);
         topBar.setPadding(new Insets(10));
         topBar.setStyle("-fx-background-color: #f8f9fa; -fx-border-color: #ddd; -fx-border-width: 0 0 1 0;");
         topBar.setAlignment(Pos.CENTER_RIGHT);
 
         // --- 聊天显示区域 ---
-        messageContainer = new VBox(20); // 消息块之间的垂直间距
-        messageContainer.setPadding(new Insets(20));
-        messageContainer.setStyle("-fx-background-color: white;");
-
-        scrollPane = new ScrollPane(messageContainer);
-        scrollPane.setFitToWidth(true); // 关键：让内容宽度自适应
-        scrollPane.setStyle("-fx-background: white; -fx-border-color: transparent;");
+        transcript = new ListView<>();
+        transcript.setCellFactory(list -> new MessageCell());
+        transcript.setFocusTraversable(false);
+        transcript.setStyle("-fx-background-color: white; -fx-background-insets: 0; -fx-padding: 10 0 10 0;");
 
         // --- 底部输入区域 ---
         inputArea = new TextArea();
@@ -115,18 +134,21 @@ public class FxChatAppUpgrade extends Application {
 
         BorderPane root = new BorderPane();
         root.setTop(topBar);
-        root.setCenter(scrollPane);
+        root.setCenter(transcript);
         root.setBottom(inputLayout);
 
         Scene scene = new Scene(root, 950, 750);
         // 添加通用样式
         scene.getStylesheets().add("data:text/css," +
                 ".action-btn { -fx-background-color: transparent; -fx-text-fill: #999; -fx-cursor: hand; -fx-padding: 2 5 2 5; }" +
-                ".action-btn:hover { -fx-background-color: #eee; -fx-text-fill: #333; -fx-background-radius: 3; }"
+                ".action-btn:hover { -fx-background-color: #eee; -fx-text-fill: #333; -fx-background-radius: 3; }" +
+                // 聊天记录不需要选中、悬停效果
+                ".list-cell, .list-cell:filled:selected, .list-cell:filled:hover { -fx-background-color: white; }"
         );
 
         primaryStage.setScene(scene);
         primaryStage.show();
+        loadHistory();
 
         // 如果没有配置过API Key，自动弹出设置框
         if (prefs.get("apiKey", "").isEmpty()) {
@@ -134,6 +156,51 @@ public class FxChatAppUpgrade extends Application {
         }
     }
 
+    @Override
+    public void stop() {
+        if (history == null) return;
+        try {
+            history.compact();
+            history.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void loadHistory() {
+        try {
+            history = ConversationLog.open(HISTORY_DIR);
+            long indexed = history.size();
+            indexer.execute(() -> {
+                try {
+                    searchIndex.addAll(history, 0, indexed);
+                } catch (RuntimeException e) {
+                    // 建索引期间清空了历史记录
+                    e.printStackTrace();
+                }
+            });
+            for (ChatMessage message : history.tail(HISTORY_TAIL)) {
+                transcript.getItems().add("user".equals(message.role())
+                        ? TranscriptEntry.user(message.content())
+                        : TranscriptEntry.assistant(message.content()));
+                conversationHistory.add(message);
+            }
+            scrollToBottom();
+        } catch (IOException e) {
+            new Alert(Alert.AlertType.ERROR, "读取历史记录失败: " + e.getMessage()).show();
+        }
+    }
+
+    private void saveHistory(ChatMessage message) {
+        if (history == null) return;
+        try {
+            long id = history.append(message);
+            indexer.execute(() -> searchIndex.add(id, message));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     // --- 核心逻辑：发送消息 ---
     private void sendMessage() {
         String content = inputArea.getText().trim();
@@ -143,114 +210,89 @@ public class FxChatAppUpgrade extends Application {
         sendBtn.setDisable(true);
 
         // 1. 添加用户消息 (右侧)
-        addUserMessage(content);
-        conversationHistory.add(new ChatMessage("user", content));
+        transcript.getItems().add(TranscriptEntry.user(content));
+        conversationHistory.add(ChatMessage.user(content));
+        saveHistory(ChatMessage.user(content));
 
         // 2. 添加AI消息占位符 (左侧)
-        MarkdownWebView aiWebView = new MarkdownWebView();
-        // isUser = false, 靠左对齐
-        MessageBlock aiBlock = new MessageBlock(aiWebView, false);
-        messageContainer.getChildren().add(aiBlock);
+        TranscriptEntry aiEntry = TranscriptEntry.assistant("");
+        transcript.getItems().add(aiEntry);
         scrollToBottom();
 
-        StringBuilder fullResponse = new StringBuilder();
-
         // 3. 异步请求API
-        new Thread(() -> {
-            try {
-                String apiKey = prefs.get("apiKey", "");
-                String apiUrl = prefs.get("apiUrl", "https://api.openai.com/v1/chat/completions");
-                String model = prefs.get("model", "gpt-3.5-turbo");
-
-                JsonObject req = new JsonObject();
-                req.addProperty("model", model);
-                req.addProperty("stream", true);
-                JsonArray messages = new JsonArray();
-                for (ChatMessage msg : conversationHistory) {
-                    JsonObject m = new JsonObject();
-                    m.addProperty("role", msg.role);
-                    m.addProperty("content", msg.content);
-                    messages.add(m);
-                }
-                req.add("messages", messages);
-
-                HttpClient client = HttpClient.newHttpClient();
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(apiUrl))
-                        .header("Content-Type", "application/json")
-                        .header("Authorization", "Bearer " + apiKey)
-                        .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(req)))
-                        .build();
-
-                client.send(request, HttpResponse.BodyHandlers.ofLines()).body()
-                        .forEach(line -> {
-                            if (line.startsWith("data:") && !line.contains("[DONE]")) {
-                                try {
-                                    JsonObject chunk = gson.fromJson(line.substring(5), JsonObject.class);
-                                    if (chunk.getAsJsonArray("choices").size() > 0) {
-                                        JsonObject delta = chunk.getAsJsonArray("choices").get(0).getAsJsonObject().getAsJsonObject("delta");
-                                        if (delta.has("content")) {
-                                            String text = delta.get("content").getAsString();
-                                            fullResponse.append(text);
-                                            // 实时更新WebView内容
-                                            Platform.runLater(() -> aiWebView.updateMarkdown(fullResponse.toString()));
-                                        }
-                                    }
-                                } catch (Exception e) {}
-                            }
-                        });
-
-                Platform.runLater(() -> {
-                    conversationHistory.add(new ChatMessage("assistant", fullResponse.toString()));
-                    sendBtn.setDisable(false);
-                    // 保存完整内容供导出使用
-                    aiBlock.setContentForExport(fullResponse.toString());
-                });
-
-            } catch (Exception e) {
-                Platform.runLater(() -> {
-                    aiWebView.updateMarkdown("**Error:** " + e.getMessage() + "\n\n请检查设置中的API Key和网络连接。");
+        String apiKey = prefs.get("apiKey", "");
+        String apiUrl = prefs.get("apiUrl", "https://api.openai.com/v1/chat/completions");
+        String model = prefs.get("model", "gpt-3.5-turbo");
+        LlmEndpoint endpoint = new LlmEndpoint(apiUrl, apiKey, model);
+
+        // 增量先合并，每帧最多刷新一次；消息在屏幕上时 WebView 只重绘末尾未结束的块
+        UpdateCoalescer updates = new UpdateCoalescer(Platform::runLater, aiEntry::append);
+        LlmClient.shared().streamAsync(endpoint, conversationHistory, updates::offer)
+                .whenComplete((reply, error) -> updates.finish(() -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        aiEntry.setMarkdown("**Error:** " + cause.getMessage() + "\n\n请检查设置中的API Key和网络连接。");
+                    } else {
+                        aiEntry.finish();
+                        conversationHistory.add(ChatMessage.assistant(reply));
+                        saveHistory(ChatMessage.assistant(reply));
+                    }
                     sendBtn.setDisable(false);
-                });
-            }
-        }).start();
+                }));
     }
 
-    private void addUserMessage(String text) {
-        Label textLabel = new Label(text);
-        textLabel.setWrapText(true);
-        textLabel.setMaxWidth(500); // 限制用户气泡最大宽度，防止太宽阅读困难
-        textLabel.setStyle("-fx-text-fill: white; -fx-font-size: 14px;");
-        textLabel.setPadding(new Insets(10));
-
-        StackPane bubble = new StackPane(textLabel);
-        // 调整圆角，使其看起来更像聊天气泡（右上角直角改为右下角直角或其他风格）
-        bubble.setStyle("-fx-background-color: #007bff; -fx-background-radius: 15 15 0 15;");
-
-        // 添加一点阴影让气泡更立体
-        DropShadow ds = new DropShadow();
-        ds.setColor(Color.color(0, 0, 0, 0.1));
-        ds.setOffsetY(2);
-        bubble.setEffect(ds);
-
-        // isUser = true
-        MessageBlock userBlock = new MessageBlock(bubble, true);
-        userBlock.setContentForExport(text);
-        messageContainer.getChildren().add(userBlock);
-        scrollToBottom();
+    private void showSearchDialog(Stage owner) {
+        if (history == null) return;
+        TextInputDialog input = new TextInputDialog();
+        input.initOwner(owner);
+        input.setTitle("搜索");
+        input.setHeaderText(null);
+        input.setContentText("搜索历史记录：");
+        String query = input.showAndWait().orElse("");
+        if (query.isBlank()) return;
+
+        ListView<String> results = new ListView<>();
+        for (long id : searchIndex.search(query, 50)) {
+            if (id >= history.size()) continue;
+            ChatMessage message = history.get(id);
+            String content = message.content().replaceAll("\\s+", " ").strip();
+            results.getItems().add("#" + id + " " + message.role() + ": "
+                    + (content.length() > 80 ? content.substring(0, 80) + "…" : content));
+        }
+        if (results.getItems().isEmpty()) {
+            new Alert(Alert.AlertType.INFORMATION, "没有找到包含“" + query.strip() + "”的消息").showAndWait();
+            return;
+        }
+        results.setPrefSize(720, 360);
+        Alert dialog = new Alert(Alert.AlertType.NONE, null, ButtonType.CLOSE);
+        dialog.initOwner(owner);
+        dialog.setTitle("搜索结果（从新到旧）");
+        dialog.getDialogPane().setContent(results);
+        dialog.showAndWait();
     }
 
     private void scrollToBottom() {
-        // 延迟执行以确保高度计算完成
-        Platform.runLater(() -> {
-            try { Thread.sleep(50); } catch (Exception e) {}
-            scrollPane.setVvalue(1.0);
-        });
+        int last = transcript.getItems().size() - 1;
+        if (last < 0) return;
+        transcript.scrollTo(last);
+        // 最后一条比视口高时 scrollTo 只对齐到它的顶部，等布局完成后再把滚动条拉到底
+        Platform.runLater(() -> transcript.lookupAll(".scroll-bar").stream()
+                .filter(node -> node instanceof ScrollBar bar && bar.getOrientation() == Orientation.VERTICAL)
+                .map(ScrollBar.class::cast)
+                .findFirst()
+                .ifPresent(bar -> bar.setValue(bar.getMax())));
     }
 
     private void clearHistory() {
         conversationHistory.clear();
-        messageContainer.getChildren().clear();
+        transcript.getItems().clear();
+        if (history == null) return;
+        try {
+            history.clear();
+            indexer.execute(searchIndex::clear);
+        } catch (IOException e) {
+            new Alert(Alert.AlertType.ERROR, "清空历史记录失败: " + e.getMessage()).show();
+        }
     }
 
     // --- 修复后的设置对话框 ---
@@ -379,10 +421,71 @@ public class FxChatAppUpgrade extends Application {
         pt.play();
     }
 
+    // --- 聊天记录的行：复用的单元格，按消息角色切换用户气泡或 Markdown 气泡 ---
+    class MessageCell extends ListCell<TranscriptEntry> {
+        private Label userLabel;
+        private MessageBlock userBlock;
+        private MarkdownWebView aiView;
+        private MessageBlock aiBlock;
+
+        MessageCell() {
+            setPadding(new Insets(10, 20, 10, 20));
+            setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+        }
+
+        @Override
+        protected void updateItem(TranscriptEntry entry, boolean empty) {
+            super.updateItem(entry, empty);
+            if (empty || entry == null) {
+                if (aiView != null) aiView.show(null);
+                setGraphic(null);
+                return;
+            }
+            if (entry.isUser()) {
+                if (aiView != null) aiView.show(null);
+                if (userBlock == null) createUserBlock();
+                userLabel.setText(entry.getMarkdown());
+                userBlock.setContentForExport(entry::getMarkdown);
+                setAlignment(Pos.CENTER_RIGHT);
+                setGraphic(userBlock);
+            } else {
+                if (aiBlock == null) {
+                    aiView = new MarkdownWebView();
+                    aiBlock = new MessageBlock(aiView, false);
+                }
+                aiView.show(entry);
+                aiBlock.setContentForExport(entry::getMarkdown);
+                setAlignment(Pos.CENTER_LEFT);
+                setGraphic(aiBlock);
+            }
+        }
+
+        private void createUserBlock() {
+            userLabel = new Label();
+            userLabel.setWrapText(true);
+            userLabel.setMaxWidth(500); // 限制用户气泡最大宽度，防止太宽阅读困难
+            userLabel.setStyle("-fx-text-fill: white; -fx-font-size: 14px;");
+            userLabel.setPadding(new Insets(10));
+
+            StackPane bubble = new StackPane(userLabel);
+            // 调整圆角，使其看起来更像聊天气泡（右上角直角改为右下角直角或其他风格）
+            bubble.setStyle("-fx-background-color: #007bff; -fx-background-radius: 15 15 0 15;");
+
+            // 添加一点阴影让气泡更立体
+            DropShadow ds = new DropShadow();
+            ds.setColor(Color.color(0, 0, 0, 0.1));
+            ds.setOffsetY(2);
+            bubble.setEffect(ds);
+
+            // isUser = true
+            userBlock = new MessageBlock(bubble, true);
+        }
+    }
+
     // --- 核心修复：消息块组件 ---
     // 包含气泡和下方的工具栏，并控制左右对齐
     class MessageBlock extends VBox {
-        private String rawContent = "";
+        private Supplier<String> rawContent = () -> "";
         private final Node bubbleNode;
 
         public MessageBlock(Node bubble, boolean isUser) {
@@ -405,7 +508,7 @@ public class FxChatAppUpgrade extends Application {
             Button btnCopy = createIconBtn("📄", "复制内容");
             btnCopy.setOnAction(e -> {
                 ClipboardContent cc = new ClipboardContent();
-                cc.putString(rawContent);
+                cc.putString(rawContent.get());
                 Clipboard.getSystemClipboard().setContent(cc);
                 flashButton(btnCopy);
             });
@@ -415,7 +518,7 @@ public class FxChatAppUpgrade extends Application {
 
             // Markdown导出只对AI消息有意义，或者都加也可以
             Button btnMd = createIconBtn("⬇", "导出Markdown");
-            btnMd.setOnAction(e -> exportAsMarkdown(rawContent));
+            btnMd.setOnAction(e -> exportAsMarkdown(rawContent.get()));
 
             toolbar.getChildren().addAll(btnCopy, btnImg, btnMd);
 
@@ -423,7 +526,7 @@ public class FxChatAppUpgrade extends Application {
             this.getChildren().addAll(bubble, toolbar);
         }
 
-        public void setContentForExport(String content) {
+        public void setContentForExport(Supplier<String> content) {
             this.rawContent = content;
         }
 
@@ -482,10 +585,15 @@ public class FxChatAppUpgrade extends Application {
         }
     }
 
-    // --- Markdown WebView 组件 (无需修改，保持原样) ---
-    public class MarkdownWebView extends StackPane {
+    // --- Markdown WebView 组件：单元格复用时切换显示的消息 ---
+    public class MarkdownWebView extends StackPane implements TranscriptEntry.View {
+        private static final int WIDTH = 650;
         private final WebView webView;
         private final WebEngine engine;
+        /**
+         * 当前显示的消息
+         */
+        private TranscriptEntry entry;
 
         // CSS 样式：确保 body 背景也是浅灰色，与气泡融合
         private static final String HTML_TEMPLATE = """
@@ -508,16 +616,23 @@ public class FxChatAppUpgrade extends Application {
                     p { margin-bottom: 8px; line-height: 1.6; }
                     img { max-width: 100%; }
                 </style>
-                <script src="https://cdn.jsdelivr.net/npm/marked/marked.min.js"></script>
                 <link rel="stylesheet" href="https://cdnjs.cloudflare.com/ajax/libs/highlight.js/11.9.0/styles/atom-one-dark.min.css">
                 <script src="https://cdnjs.cloudflare.com/ajax/libs/highlight.js/11.9.0/highlight.min.js"></script>
             </head>
             <body>
-                <div id="content"></div>
+                <div id="content"><div id="frozen"></div><div id="tail"></div></div>
                 <script>
-                    function updateContent(markdownText) {
-                        document.getElementById('content').innerHTML = marked.parse(markdownText);
-                        hljs.highlightAll();
+                    // 已冻结的块只追加一次（只对新块做高亮），未结束的块整体替换
+                    function applyUpdate(reset, frozenHtml, tailHtml) {
+                        var frozen = document.getElementById('frozen');
+                        if (reset) frozen.innerHTML = '';
+                        if (frozenHtml) {
+                            var holder = document.createElement('div');
+                            holder.innerHTML = frozenHtml;
+                            if (window.hljs) holder.querySelectorAll('pre code').forEach(function (el) { hljs.highlightElement(el); });
+                            while (holder.firstChild) frozen.appendChild(holder.firstChild);
+                        }
+                        document.getElementById('tail').innerHTML = tailHtml;
                         return document.body.scrollHeight;
                     }
                 </script>
@@ -542,40 +657,53 @@ public class FxChatAppUpgrade extends Application {
             // 限制宽度：设为固定宽度或根据窗口调整。
             // 650px 是一个比较舒适的阅读宽度。因为外层 MessageBlock 设置了 setFillWidth(false)，
             // 所以这个 StackPane 不会再被拉伸到全屏，而是保持这个首选宽度。
-            webView.setPrefWidth(650);
+            webView.setPrefWidth(WIDTH);
             webView.setMinWidth(300); // 最小宽度
             webView.setPrefHeight(60); // 初始高度
 
             webView.setContextMenuEnabled(false);
+            engine.getLoadWorker().stateProperty().addListener((obs, oldState, newState) -> {
+                if (newState == Worker.State.SUCCEEDED && entry != null) entry.attach(this);
+            });
             engine.loadContent(HTML_TEMPLATE);
 
             this.getChildren().add(webView);
         }
 
-        public void updateMarkdown(String text) {
+        /**
+         * 切换显示的消息，null 表示单元格已空
+         */
+        public void show(TranscriptEntry next) {
+            if (next == entry) return;
+            if (entry != null) entry.detach(this);
+            entry = next;
+            if (next == null) return;
+            // 先用缓存的高度占位，滚动时行高不跳动
+            int height = next.getMeasuredHeight(WIDTH);
+            webView.setPrefHeight(height > 0 ? height : 60);
+            // ListView 还会借用临时单元格测量屏幕外的行，推迟到下一个脉冲，仍在显示这条消息才渲染
+            Platform.runLater(() -> {
+                if (entry == next) next.attach(this);
+            });
+        }
+
+        @Override
+        public void render(String frozenHtml, String tailHtml, boolean reset) {
+            // 页面加载完成前忽略，加载完成后重新挂上一次性渲染
             if (engine.getLoadWorker().getState() == Worker.State.SUCCEEDED) {
-                executeJsUpdate(text);
-            } else {
-                engine.getLoadWorker().stateProperty().addListener((obs, oldState, newState) -> {
-                    if (newState == Worker.State.SUCCEEDED) executeJsUpdate(text);
-                });
+                executeJsUpdate(reset, frozenHtml, tailHtml);
             }
         }
 
-        private void executeJsUpdate(String text) {
-            String jsonStr = gson.toJson(text);
+        private void executeJsUpdate(boolean reset, String frozen, String tail) {
             try {
-                engine.executeScript("updateContent(" + jsonStr + ");");
-                Object res = engine.executeScript("document.body.scrollHeight");
+                Object res = engine.executeScript("applyUpdate(" + reset + "," + gson.toJson(frozen) + ","
+                        + gson.toJson(tail) + ");");
                 if (res instanceof Integer h) {
                     webView.setPrefHeight(h + 25);
+                    if (entry != null) entry.setMeasuredSize(WIDTH, WIDTH, h + 25);
                 }
             } catch (Exception ignored) {}
         }
     }
-
-    private static class ChatMessage {
-        String role, content;
-        ChatMessage(String role, String content) { this.role = role; this.content = content; }
-    }
 }
\ No newline at end of file
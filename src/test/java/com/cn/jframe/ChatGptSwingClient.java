@@ -1,6 +1,9 @@
 package com.cn.jframe;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+
+import com.cn.pstoolkit.llm.ChatMessage;
+import com.cn.pstoolkit.llm.ConversationContext;
+import com.cn.pstoolkit.llm.LlmClient;
+import com.cn.pstoolkit.llm.LlmEndpoint;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -8,13 +11,6 @@ import javax.swing.text.html.HTMLEditorKit;
 import javax.swing.text.html.StyleSheet;
 import java.awt.*;
 import java.awt.event.ActionEvent;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.Duration;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.prefs.Preferences;
 import java.util.regex.Matcher;
@@ -34,9 +30,7 @@ public class ChatGptSwingClient extends JFrame {
     private JLabel statusLabel;
 
     // --- 数据与状态 ---
-    private final List<Message> conversationHistory = new ArrayList<>();
-    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
-    private final HttpClient httpClient;
+    private final ConversationContext conversationHistory = new ConversationContext();
     private final AppConfig config = new AppConfig(); // 配置管理
 
     // --- HTML 内容构建 ---
@@ -49,12 +43,6 @@ public class ChatGptSwingClient extends JFrame {
     private boolean isTyping = false; // 是否正在打字
 
     public ChatGptSwingClient() {
-        // 初始化 HttpClient
-        this.httpClient = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_2)
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
-
         // 加载保存的配置
         config.load();
 
@@ -187,37 +175,15 @@ public class ChatGptSwingClient extends JFrame {
 
         // 1. 显示用户消息 (直接显示，不需要打字机)
         appendHtml("User", text);
-        conversationHistory.add(new Message("user", text));
+        conversationHistory.add(ChatMessage.user(text));
 
         // 2. 异步请求 API
-        ChatRequest requestPayload = new ChatRequest(config.getModel(), conversationHistory);
-        String jsonBody = gson.toJson(requestPayload);
+        LlmEndpoint endpoint = new LlmEndpoint(config.getApiUrl(), config.getApiKey(), config.getModel());
 
         CompletableFuture.runAsync(() -> {
             try {
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(config.getApiUrl()))
-                        .header("Content-Type", "application/json")
-                        .header("Authorization", "Bearer " + config.getApiKey())
-                        .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
-                        .build();
-
-                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() == 200) {
-                    ChatResponse chatResponse = gson.fromJson(response.body(), ChatResponse.class);
-                    if (chatResponse.choices() != null && !chatResponse.choices().isEmpty()) {
-                        String aiContent = chatResponse.choices().get(0).message().content();
-
-                        // 成功获取，开始打字机效果
-                        SwingUtilities.invokeLater(() -> startTypewriterEffect(aiContent));
-                    }
-                } else {
-                    SwingUtilities.invokeLater(() -> {
-                        appendHtml("System", "Error: " + response.statusCode() + " - " + response.body());
-                        resetInputState();
-                    });
-                }
+                String aiContent = LlmClient.shared().chat(endpoint, conversationHistory);
+                SwingUtilities.invokeLater(() -> startTypewriterEffect(aiContent));
 
             } catch (Exception ex) {
                 SwingUtilities.invokeLater(() -> {
@@ -239,7 +205,7 @@ public class ChatGptSwingClient extends JFrame {
         statusLabel.setText("正在输入...");
 
         // 将新的 AI 消息占位符添加到 conversation history
-        conversationHistory.add(new Message("assistant", fullText));
+        conversationHistory.add(ChatMessage.assistant(fullText));
 
         // 创建定时器，每 30ms 输出几个字符
         typewriterTimer = new Timer(30, e -> {
@@ -386,14 +352,6 @@ public class ChatGptSwingClient extends JFrame {
         public void setModel(String model) { this.model = model; }
     }
 
-    // ==========================================
-    // API 数据结构 Record
-    // ==========================================
-    record ChatRequest(String model, List<Message> messages) {}
-    record Message(String role, String content) {}
-    record ChatResponse(String id, List<Choice> choices) {}
-    record Choice(int index, Message message, String finish_reason) {}
-
     // ==========================================
     // Main
     // ==========================================
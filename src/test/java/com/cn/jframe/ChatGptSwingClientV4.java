@@ -1,7 +1,9 @@
 package com.cn.jframe;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.cn.pstoolkit.llm.ChatMessage;
+import com.cn.pstoolkit.llm.ConversationContext;
+import com.cn.pstoolkit.llm.LlmClient;
+import com.cn.pstoolkit.llm.LlmEndpoint;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -9,13 +11,6 @@ import javax.swing.text.html.HTMLEditorKit;
 import javax.swing.text.html.StyleSheet;
 import java.awt.*;
 import java.awt.event.*;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.Duration;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.prefs.Preferences;
 
@@ -45,9 +40,7 @@ public class ChatGptSwingClientV4 extends JFrame {
     private JLabel statusLabel;
 
     // --- 数据 ---
-    private final List<Message> conversationHistory = new ArrayList<>();
-    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
-    private final HttpClient httpClient;
+    private final ConversationContext conversationHistory = new ConversationContext();
     private final AppConfig config = new AppConfig();
 
     // --- 打字机状态 ---
@@ -61,10 +54,6 @@ public class ChatGptSwingClientV4 extends JFrame {
         System.setProperty("awt.useSystemAAFontSettings", "on");
         System.setProperty("swing.aatext", "true");
 
-        httpClient = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_2)
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
         config.load();
 
         initUI();
@@ -217,36 +206,16 @@ public class ChatGptSwingClientV4 extends JFrame {
         statusLabel.setText("思考中...");
 
         addBubble(text, true);
-        conversationHistory.add(new Message("user", text));
+        conversationHistory.add(ChatMessage.user(text));
 
         currentAiBubble = addBubble("...", false);
 
-        ChatRequest payload = new ChatRequest(config.getModel(), conversationHistory);
-        String jsonBody = gson.toJson(payload);
+        LlmEndpoint endpoint = new LlmEndpoint(config.getApiUrl(), config.getApiKey(), config.getModel());
 
         CompletableFuture.runAsync(() -> {
             try {
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(config.getApiUrl()))
-                        .header("Content-Type", "application/json")
-                        .header("Authorization", "Bearer " + config.getApiKey())
-                        .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
-                        .build();
-
-                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() == 200) {
-                    ChatResponse chatResp = gson.fromJson(response.body(), ChatResponse.class);
-                    if (chatResp.choices() != null && !chatResp.choices().isEmpty()) {
-                        String content = chatResp.choices().get(0).message().content();
-                        SwingUtilities.invokeLater(() -> startTypewriter(content));
-                    }
-                } else {
-                    SwingUtilities.invokeLater(() -> {
-                        currentAiBubble.setTextContent("Error: " + response.statusCode());
-                        resetState();
-                    });
-                }
+                String content = LlmClient.shared().chat(endpoint, conversationHistory);
+                SwingUtilities.invokeLater(() -> startTypewriter(content));
             } catch (Exception e) {
                 SwingUtilities.invokeLater(() -> {
                     currentAiBubble.setTextContent("Exception: " + e.getMessage());
@@ -285,7 +254,7 @@ public class ChatGptSwingClientV4 extends JFrame {
         typeIndex = 0;
         statusLabel.setText("输入中...");
 
-        conversationHistory.add(new Message("assistant", fullText));
+        conversationHistory.add(ChatMessage.assistant(fullText));
 
         typewriterTimer = new Timer(20, e -> {
             typeIndex += 3;
@@ -503,11 +472,6 @@ public class ChatGptSwingClientV4 extends JFrame {
         public void setModel(String s) { model = s; }
     }
 
-    record ChatRequest(String model, List<Message> messages) {}
-    record Message(String role, String content) {}
-    record ChatResponse(String id, List<Choice> choices) {}
-    record Choice(int index, Message message) {}
-
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> new ChatGptSwingClientV4().setVisible(true));
     }
@@ -1,34 +1,46 @@
 package com.cn.jframe;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import org.commonmark.Extension;
-import org.commonmark.ext.gfm.tables.TablesExtension;
-import org.commonmark.node.Node;
-import org.commonmark.parser.Parser;
-import org.commonmark.renderer.html.HtmlRenderer;
+import com.cn.pstoolkit.llm.ChatMessage;
+import com.cn.pstoolkit.llm.ChatSearchIndex;
+import com.cn.pstoolkit.llm.ConversationContext;
+import com.cn.pstoolkit.llm.ConversationLog;
+import com.cn.pstoolkit.llm.LlmClient;
+import com.cn.pstoolkit.llm.LlmEndpoint;
+import com.cn.pstoolkit.markdown.MarkdownService;
+import com.cn.pstoolkit.markdown.TranscriptEntry;
+import com.cn.pstoolkit.utils.UiStallProbe;
+import com.cn.pstoolkit.utils.UpdateCoalescer;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.html.HTMLDocument;
 import javax.swing.text.html.HTMLEditorKit;
 import javax.swing.text.html.StyleSheet;
 import java.awt.*;
 import java.awt.event.*;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.Duration;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.prefs.Preferences;
 
 /**
  * ChatGPT Swing Client V6
  * 升级：使用 commonmark-java 进行专业级 Markdown 解析。
  * 支持：表格、列表、引用、标准代码块渲染。
+ * 聊天记录用 JList 虚拟化：只有最近绘制的消息持有 HTMLDocument，其余消息只保存 HTML 和测得的尺寸。
  */
 public class ChatGptSwingClientV6 extends JFrame {
 
@@ -39,25 +51,37 @@ public class ChatGptSwingClientV6 extends JFrame {
     private static final Color TOP_BAR_COLOR = new Color(255, 255, 255);
     private static final Color USER_BUBBLE_COLOR = new Color(0, 122, 255);
     private static final Color AI_BUBBLE_COLOR = new Color(255, 255, 255);
-
-    private JPanel chatListPanel;
+    // Swing 默认不显示 table border，除非属性里写了 border="1"，渲染表格时直接带上
+    private static final MarkdownService MARKDOWN = new MarkdownService(MarkdownService.DEFAULT_MAX_CACHE_BYTES,
+            Map.of("border", "1", "cellspacing", "0", "cellpadding", "4"));
+    // 本地保存的对话记录，启动时只读索引和最近的消息
+    private static final Path HISTORY_DIR = Path.of(System.getProperty("user.home"), ".pstoolkit", "chat-v6");
+    private static final int HISTORY_TAIL = 200;
+
+    private DefaultListModel<TranscriptEntry> transcriptModel;
+    private TranscriptRenderer transcriptRenderer;
     private JScrollPane scrollPane;
     private JTextField inputField;
     private JButton sendButton;
     private JButton clearButton;
     private JLabel statusLabel;
 
-    private final List<Message> conversationHistory = new ArrayList<>();
-    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
-    private final HttpClient httpClient;
+    private final ConversationContext conversationHistory = new ConversationContext();
+    private ConversationLog history;
+    // 历史记录的全文索引，只在 indexer 线程上按序号顺序更新
+    private final ChatSearchIndex searchIndex = new ChatSearchIndex();
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chat-search-index");
+        thread.setDaemon(true);
+        return thread;
+    });
     private final AppConfig config = new AppConfig();
-
-    // Markdown 解析器实例 (复用)
-    private final MarkdownRenderer markdownRenderer = new MarkdownRenderer();
+    // EDT 卡顿探针：每次界面更新的耗时 + 心跳排队延迟，单次更新超过 50ms 打日志
+    private final UiStallProbe edtProbe = new UiStallProbe("chat-v6", SwingUtilities::invokeLater, 50, TimeUnit.MILLISECONDS);
 
     private volatile boolean isTyping = false;
     private Timer typewriterTimer;
-    private BubblePanel currentAiBubble;
+    private TranscriptEntry currentAiEntry;
     private String currentAiFullText = "";
     private int typeIndex = 0;
 
@@ -65,19 +89,67 @@ public class ChatGptSwingClientV6 extends JFrame {
         System.setProperty("awt.useSystemAAFontSettings", "on");
         System.setProperty("swing.aatext", "true");
 
-        httpClient = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_2)
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
         config.load();
 
         initUI();
+        loadHistory();
+    }
+
+    private void loadHistory() {
+        try {
+            history = ConversationLog.open(HISTORY_DIR);
+            long indexed = history.size();
+            indexer.execute(() -> {
+                try {
+                    searchIndex.addAll(history, 0, indexed);
+                } catch (RuntimeException e) {
+                    // 建索引期间清空了历史记录
+                    e.printStackTrace();
+                }
+            });
+            for (ChatMessage message : history.tail(HISTORY_TAIL)) {
+                transcriptModel.addElement("user".equals(message.role())
+                        ? TranscriptEntry.user(message.content(), MARKDOWN)
+                        : TranscriptEntry.assistant(message.content(), MARKDOWN));
+                conversationHistory.add(message);
+            }
+            scrollToBottom();
+        } catch (IOException e) {
+            statusLabel.setText("历史记录不可用");
+            e.printStackTrace();
+        }
+    }
+
+    private void saveHistory(ChatMessage message) {
+        if (history == null) return;
+        try {
+            long id = history.append(message);
+            indexer.execute(() -> searchIndex.add(id, message));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void closeHistory() {
+        if (history == null) return;
+        try {
+            history.compact();
+            history.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     private void initUI() {
         setTitle("ChatGPT Professional Client V6");
         setSize(1100, 850);
         setDefaultCloseOperation(EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                closeHistory();
+            }
+        });
         setLocationRelativeTo(null);
 
         JPanel mainPanel = new JPanel(new BorderLayout());
@@ -100,6 +172,10 @@ public class ChatGptSwingClientV6 extends JFrame {
 
         JPanel headerRight = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         headerRight.setOpaque(false);
+        JButton searchButton = new JButton("🔍 搜索");
+        styleButton(searchButton, new Color(245, 245, 245), Color.BLACK);
+        searchButton.addActionListener(e -> showSearchDialog());
+        headerRight.add(searchButton);
         headerRight.add(settingsButton);
 
         headerPanel.add(titleLabel, BorderLayout.WEST);
@@ -107,12 +183,16 @@ public class ChatGptSwingClientV6 extends JFrame {
         add(headerPanel, BorderLayout.NORTH);
 
         // Chat Area
-        chatListPanel = new JPanel();
-        chatListPanel.setLayout(new BoxLayout(chatListPanel, BoxLayout.Y_AXIS));
-        chatListPanel.setBackground(BG_COLOR);
-        chatListPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
-
-        scrollPane = new JScrollPane(chatListPanel);
+        transcriptModel = new DefaultListModel<>();
+        transcriptRenderer = new TranscriptRenderer(this::refresh, edtProbe);
+        edtProbe.startHeartbeat(100, TimeUnit.MILLISECONDS);
+        JList<TranscriptEntry> transcriptList = new JList<>(transcriptModel);
+        transcriptList.setCellRenderer(transcriptRenderer);
+        transcriptList.setFocusable(false);
+        transcriptList.setBackground(BG_COLOR);
+        transcriptList.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        scrollPane = new JScrollPane(transcriptList);
         scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
         scrollPane.setBorder(null);
         scrollPane.getVerticalScrollBar().setUnitIncrement(25);
@@ -167,25 +247,6 @@ public class ChatGptSwingClientV6 extends JFrame {
         add(bottomPanel, BorderLayout.SOUTH);
     }
 
-    // --- Markdown 解析器封装 (使用 commonmark-java) ---
-    static class MarkdownRenderer {
-        private final Parser parser;
-        private final HtmlRenderer renderer;
-
-        public MarkdownRenderer() {
-            // 启用表格扩展
-            List<Extension> extensions = Arrays.asList(TablesExtension.create());
-            this.parser = Parser.builder().extensions(extensions).build();
-            this.renderer = HtmlRenderer.builder().extensions(extensions).build();
-        }
-
-        public String render(String markdown) {
-            if (markdown == null) return "";
-            Node document = parser.parse(markdown);
-            return renderer.render(document); // 转为标准 HTML
-        }
-    }
-
     private void onSend() {
         if (isTyping) return;
         String text = inputField.getText().trim();
@@ -201,40 +262,23 @@ public class ChatGptSwingClientV6 extends JFrame {
         clearButton.setEnabled(false);
         statusLabel.setText("Thinking...");
 
-        addBubble(text, true);
-        conversationHistory.add(new Message("user", text));
+        addEntry(TranscriptEntry.user(text, MARKDOWN));
+        conversationHistory.add(ChatMessage.user(text));
+        saveHistory(ChatMessage.user(text));
 
-        currentAiBubble = addBubble("...", false);
+        currentAiEntry = TranscriptEntry.assistant("...", MARKDOWN);
+        addEntry(currentAiEntry);
 
-        ChatRequest payload = new ChatRequest(config.getModel(), conversationHistory);
-        String jsonBody = gson.toJson(payload);
+        LlmEndpoint endpoint = new LlmEndpoint(config.getApiUrl(), config.getApiKey(), config.getModel());
 
         CompletableFuture.runAsync(() -> {
             try {
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(config.getApiUrl()))
-                        .header("Content-Type", "application/json")
-                        .header("Authorization", "Bearer " + config.getApiKey())
-                        .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
-                        .build();
-
-                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() == 200) {
-                    ChatResponse chatResp = gson.fromJson(response.body(), ChatResponse.class);
-                    if (chatResp.choices() != null && !chatResp.choices().isEmpty()) {
-                        String content = chatResp.choices().get(0).message().content();
-                        SwingUtilities.invokeLater(() -> startTypewriter(content));
-                    }
-                } else {
-                    SwingUtilities.invokeLater(() -> {
-                        currentAiBubble.setTextContent("Error: " + response.statusCode());
-                        resetState();
-                    });
-                }
+                String content = LlmClient.shared().chat(endpoint, conversationHistory);
+                SwingUtilities.invokeLater(() -> startTypewriter(content));
             } catch (Exception e) {
                 SwingUtilities.invokeLater(() -> {
-                    currentAiBubble.setTextContent("Error: " + e.getMessage());
+                    currentAiEntry.setMarkdown("Error: " + e.getMessage());
+                    refresh(currentAiEntry);
                     resetState();
                 });
                 e.printStackTrace();
@@ -242,27 +286,17 @@ public class ChatGptSwingClientV6 extends JFrame {
         });
     }
 
-    private BubblePanel addBubble(String text, boolean isUser) {
-        JPanel wrapper = new JPanel(new FlowLayout(isUser ? FlowLayout.RIGHT : FlowLayout.LEFT));
-        wrapper.setBackground(BG_COLOR);
-        wrapper.setBorder(new EmptyBorder(5, 0, 5, 0));
-
-        AvatarPanel avatar = new AvatarPanel(isUser ? "Me" : "AI", isUser ? USER_BUBBLE_COLOR : new Color(90, 90, 90));
-        // 注意：这里传入的是 markdownRenderer
-        BubblePanel bubble = new BubblePanel(text, isUser, markdownRenderer);
-
-        if (isUser) {
-            wrapper.add(bubble);
-            wrapper.add(avatar);
-        } else {
-            wrapper.add(avatar);
-            wrapper.add(bubble);
-        }
-
-        chatListPanel.add(wrapper);
-        chatListPanel.revalidate();
+    private void addEntry(TranscriptEntry entry) {
+        transcriptModel.addElement(entry);
         scrollToBottom();
-        return bubble;
+    }
+
+    /**
+     * 消息内容变了：通知 JList 重新取这一行的尺寸并重绘
+     */
+    private void refresh(TranscriptEntry entry) {
+        int index = transcriptModel.lastIndexOf(entry);
+        if (index >= 0) transcriptModel.set(index, entry);
     }
 
     private void startTypewriter(String fullText) {
@@ -271,22 +305,33 @@ public class ChatGptSwingClientV6 extends JFrame {
         typeIndex = 0;
         statusLabel.setText("Typing...");
 
-        conversationHistory.add(new Message("assistant", fullText));
+        conversationHistory.add(ChatMessage.assistant(fullText));
+        saveHistory(ChatMessage.assistant(fullText));
 
+        TranscriptEntry entry = currentAiEntry;
+        entry.beginStreaming();
+        refresh(entry);
+        // 打字机只负责产出文本，渲染由合并器按实测渲染耗时调度，渲染慢时自动降低刷新频率
+        UpdateCoalescer updates = new UpdateCoalescer(SwingUtilities::invokeLater, delta -> edtProbe.measure("stream-flush", () -> {
+            entry.append(delta);
+            refresh(entry);
+            scrollToBottom();
+        }));
         typewriterTimer = new Timer(20, e -> {
-            // 打字机逻辑：为了防止 commonmark 解析不完整的 markdown 标签（如 <ta...），
-            // 简单的做法是：仅在特定字符后渲染，或者接受轻微的闪烁。
-            // 这里我们采用全量截取渲染。Commonmark 容错性很好。
-            typeIndex += 5; // 加快一点速度，因为大文本渲染慢
+            int from = typeIndex;
+            typeIndex += 5;
             if (typeIndex > currentAiFullText.length()) typeIndex = currentAiFullText.length();
 
-            String sub = currentAiFullText.substring(0, typeIndex);
-            currentAiBubble.setTextContent(sub);
-            scrollToBottom();
+            updates.offer(currentAiFullText.substring(from, typeIndex));
 
             if (typeIndex >= currentAiFullText.length()) {
                 ((Timer)e.getSource()).stop();
-                resetState();
+                updates.finish(() -> {
+                    entry.finish();
+                    refresh(entry);
+                    scrollToBottom();
+                    resetState();
+                });
             }
         });
         typewriterTimer.start();
@@ -299,6 +344,7 @@ public class ChatGptSwingClientV6 extends JFrame {
         clearButton.setEnabled(true);
         inputField.requestFocus();
         statusLabel.setText("Ready");
+        edtProbe.logSummary();
     }
 
     private void clearHistory() {
@@ -306,12 +352,45 @@ public class ChatGptSwingClientV6 extends JFrame {
         int opt = JOptionPane.showConfirmDialog(this, "清空所有对话记录？", "确认", JOptionPane.YES_NO_OPTION);
         if (opt == JOptionPane.YES_OPTION) {
             conversationHistory.clear();
-            chatListPanel.removeAll();
-            chatListPanel.revalidate();
-            chatListPanel.repaint();
+            transcriptModel.clear();
+            if (history != null) {
+                try {
+                    history.clear();
+                    indexer.execute(searchIndex::clear);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            transcriptRenderer.clear();
         }
     }
 
+    private void showSearchDialog() {
+        if (history == null) return;
+        String query = JOptionPane.showInputDialog(this, "搜索历史记录：", "搜索", JOptionPane.PLAIN_MESSAGE);
+        if (query == null || query.isBlank()) return;
+        long start = System.nanoTime();
+        List<Long> ids = searchIndex.search(query, 50);
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        DefaultListModel<String> results = new DefaultListModel<>();
+        for (long id : ids) {
+            if (id >= history.size()) continue;
+            ChatMessage message = history.get(id);
+            String content = message.content().replaceAll("\\s+", " ").strip();
+            results.addElement("#" + id + " " + message.role() + ": "
+                    + (content.length() > 80 ? content.substring(0, 80) + "…" : content));
+        }
+        statusLabel.setText("找到 " + results.size() + " 条（" + micros + " µs）");
+        if (results.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "没有找到包含“" + query.strip() + "”的消息");
+            return;
+        }
+        JList<String> list = new JList<>(results);
+        JScrollPane pane = new JScrollPane(list);
+        pane.setPreferredSize(new Dimension(720, 360));
+        JOptionPane.showMessageDialog(this, pane, "搜索结果（从新到旧）", JOptionPane.PLAIN_MESSAGE);
+    }
+
     private void scrollToBottom() {
         SwingUtilities.invokeLater(() -> {
             JScrollBar vertical = scrollPane.getVerticalScrollBar();
@@ -319,34 +398,212 @@ public class ChatGptSwingClientV6 extends JFrame {
         });
     }
 
-    // --- 气泡组件 (CSS 重点优化) ---
-    static class BubblePanel extends JPanel {
-        private final boolean isUser;
-        private final JEditorPane textPane;
-        private final MarkdownRenderer renderer;
-        private static final int MAX_WIDTH = 780;
+    // --- 聊天记录渲染器：JList 只把行组件当图章用 ---
+    // 消息尺寸测一次后缓存在 TranscriptEntry 上；带 HTMLDocument 的编辑器只为最近绘制的消息保留，
+    // 流式消息的编辑器挂在消息上增量更新。新消息和被淘汰后重新显示的消息，HTML 解析和按宽度排版
+    // 都在后台线程完成，EDT 只把做好的编辑器换进来；在这之前按文本长度估算尺寸、只画气泡背景。
+    static class TranscriptRenderer implements ListCellRenderer<TranscriptEntry> {
+        private static final int CACHED_PANES = 32;
+        private final StyleSheet userStyle = createStyleSheet(true);
+        private final StyleSheet aiStyle = createStyleSheet(false);
+        private final MessageRow userRow = new MessageRow(true, this);
+        private final MessageRow aiRow = new MessageRow(false, this);
+        private final Consumer<TranscriptEntry> onReady;
+        private final UiStallProbe probe;
+        private final Map<TranscriptEntry, EntryPane> panes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TranscriptEntry, EntryPane> eldest) {
+                if (size() <= CACHED_PANES) return false;
+                eldest.getKey().detach(eldest.getValue());
+                return true;
+            }
+        };
+        /**
+         * 正在后台排版的消息（只在 EDT 上访问）
+         */
+        private final Map<TranscriptEntry, LayoutJob> pending = new HashMap<>();
+        /**
+         * 需要绘制、排版完成后要留下编辑器的消息；只为测量尺寸排版的编辑器用完即弃
+         */
+        private final Set<TranscriptEntry> wanted = new HashSet<>();
+        /**
+         * 单个后台线程，要绘制的消息优先于只需测量的消息
+         */
+        private final ThreadPoolExecutor layoutWorker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "bubble-layout");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        private long jobSequence;
+
+        /**
+         * @param onReady 后台排版完成、尺寸或内容可用时在 EDT 上回调，用于通知 JList 刷新这一行
+         */
+        TranscriptRenderer(Consumer<TranscriptEntry> onReady, UiStallProbe probe) {
+            this.onReady = onReady;
+            this.probe = probe;
+        }
 
-        public BubblePanel(String text, boolean isUser, MarkdownRenderer renderer) {
-            this.isUser = isUser;
-            this.renderer = renderer;
-            setLayout(new BorderLayout());
-            setOpaque(false);
-            setBorder(new EmptyBorder(12, 18, 12, 18));
+        @Override
+        public Component getListCellRendererComponent(JList<? extends TranscriptEntry> list, TranscriptEntry entry,
+                                                      int index, boolean isSelected, boolean cellHasFocus) {
+            MessageRow row = entry.isUser() ? userRow : aiRow;
+            row.bubble.show(entry);
+            return row;
+        }
 
-            textPane = new JEditorPane();
-            textPane.setEditable(false);
-            textPane.setContentType("text/html");
-            textPane.putClientProperty(JEditorPane.HONOR_DISPLAY_PROPERTIES, Boolean.TRUE);
-            textPane.setOpaque(false);
+        /**
+         * 绘制用的编辑器，还没准备好时安排后台排版并返回 null
+         */
+        EntryPane paneForPaint(TranscriptEntry entry) {
+            EntryPane pane = panes.get(entry);
+            if (pane == null) {
+                wanted.add(entry);
+                prepare(entry, true);
+            }
+            return pane;
+        }
 
-            // --- 核心 CSS 样式表 (适配 Swing HTML 3.2 引擎) ---
-            HTMLEditorKit kit = new HTMLEditorKit();
-            StyleSheet style = kit.getStyleSheet();
+        /**
+         * 气泡尺寸：优先用缓存；已有编辑器（例如流式消息）时在 EDT 上增量测量；否则安排后台排版并先返回估算值
+         */
+        Dimension sizeOf(TranscriptEntry entry) {
+            if (entry.getMeasuredWidth(BubblePanel.MAX_WIDTH) < 0) {
+                EntryPane pane = panes.get(entry);
+                if (pane == null) {
+                    prepare(entry, false);
+                    return estimate(entry);
+                }
+                Dimension size = measure(pane);
+                entry.setMeasuredSize(BubblePanel.MAX_WIDTH, size.width, size.height);
+            }
+            return new Dimension(entry.getMeasuredWidth(BubblePanel.MAX_WIDTH),
+                    entry.getMeasuredHeight(BubblePanel.MAX_WIDTH));
+        }
+
+        void clear() {
+            panes.forEach((entry, pane) -> entry.detach(pane));
+            panes.clear();
+            // 进行中的排版完成后找不到对应的 pending，结果直接丢弃
+            pending.clear();
+            wanted.clear();
+        }
+
+        private void prepare(TranscriptEntry entry, boolean forPaint) {
+            LayoutJob job = pending.get(entry);
+            if (job != null && job.revision == entry.getRevision()) return;
+            job = new LayoutJob(entry, entry.isUser() ? userStyle : aiStyle, forPaint, jobSequence++);
+            pending.put(entry, job);
+            layoutWorker.execute(job);
+        }
+
+        /**
+         * EDT 上接收后台排版的结果
+         */
+        private void swapIn(LayoutJob job) {
+            TranscriptEntry entry = job.entry;
+            if (pending.get(entry) != job) return;
+            pending.remove(entry);
+            if (job.pane == null) return;
+            boolean current = job.revision == entry.getRevision();
+            if (current) {
+                entry.setMeasuredSize(BubblePanel.MAX_WIDTH, job.size.width, job.size.height);
+            }
+            if (wanted.remove(entry)) {
+                panes.put(entry, job.pane);
+                // 排版期间内容变了（流式输出中）才在 EDT 上补一次完整渲染
+                entry.attach(job.pane, job.revision);
+            } else if (!current) {
+                return;
+            }
+            onReady.accept(entry);
+        }
+
+        /**
+         * 按气泡最大宽度排版编辑器，返回气泡尺寸（含内边距）
+         */
+        private static Dimension measure(EntryPane pane) {
+            Insets padding = BubblePanel.PADDING;
+            int horizontal = padding.left + padding.right;
+            pane.setSize(new Dimension(BubblePanel.MAX_WIDTH - horizontal, Short.MAX_VALUE));
+            Dimension pref = pane.getPreferredSize();
+            return new Dimension(Math.min(BubblePanel.MAX_WIDTH, pref.width + horizontal),
+                    pref.height + padding.top + padding.bottom);
+        }
+
+        /**
+         * 排版完成前的占位尺寸：按字数粗估行数，CJK 字符约一个字号宽，其他字符约半个
+         */
+        private static Dimension estimate(TranscriptEntry entry) {
+            String text = entry.getMarkdown();
+            int lines = 1;
+            int halfWidths = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\n') lines++;
+                halfWidths += c < '\u2E80' ? 1 : 2;
+            }
+            Insets padding = BubblePanel.PADDING;
+            int horizontal = padding.left + padding.right;
+            int textWidth = halfWidths * FONT_SIZE / 2;
+            lines += textWidth / (BubblePanel.MAX_WIDTH - horizontal);
+            int width = Math.min(BubblePanel.MAX_WIDTH, horizontal + textWidth);
+            return new Dimension(width, padding.top + padding.bottom + lines * (FONT_SIZE + 8));
+        }
+
+        // --- 后台排版任务：在工作线程上创建编辑器、解析 HTML、按气泡宽度排版并测量，完成后交给 EDT ---
+        private final class LayoutJob implements Runnable, Comparable<LayoutJob> {
+            private final TranscriptEntry entry;
+            private final long revision;
+            private final String frozenHtml;
+            private final String tailHtml;
+            private final StyleSheet style;
+            private final boolean forPaint;
+            private final long sequence;
+            private EntryPane pane;
+            private Dimension size;
+
+            LayoutJob(TranscriptEntry entry, StyleSheet style, boolean forPaint, long sequence) {
+                // 消息只在 EDT 上访问，构造时取好内容快照
+                this.entry = entry;
+                this.revision = entry.getRevision();
+                this.frozenHtml = entry.getFrozenHtml();
+                this.tailHtml = entry.getTailHtml();
+                this.style = style;
+                this.forPaint = forPaint;
+                this.sequence = sequence;
+            }
+
+            @Override
+            public void run() {
+                try {
+                    // 编辑器还没有显示，只被这个线程访问，交给 EDT 之后才挂到界面上
+                    EntryPane prepared = new EntryPane(style);
+                    prepared.render(frozenHtml, tailHtml, true);
+                    size = measure(prepared);
+                    pane = prepared;
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                SwingUtilities.invokeLater(probe.wrap("bubble-swap", () -> swapIn(this)));
+            }
+
+            @Override
+            public int compareTo(LayoutJob other) {
+                if (forPaint != other.forPaint) return forPaint ? -1 : 1;
+                return Long.compare(sequence, other.sequence);
+            }
+        }
+
+        // --- 核心 CSS 样式表 (适配 Swing HTML 3.2 引擎)，用户和 AI 各一份，所有编辑器共享 ---
+        private static StyleSheet createStyleSheet(boolean isUser) {
+            StyleSheet style = new StyleSheet();
+            style.addStyleSheet(new HTMLEditorKit().getStyleSheet());
 
             String fontFamily = String.format("'%s', 'Microsoft YaHei', sans-serif", FONT_FACE);
             String textColor = isUser ? "white" : "#333333";
             String codeBg = isUser ? "#1E90FF" : "#F2F2F2";
-            String quoteBorder = isUser ? "white" : "#AAAAAA";
 
             // 全局
             style.addRule("body { font-family: " + fontFamily + "; font-size: " + FONT_SIZE + "px; color: " + textColor + "; margin: 0; }");
@@ -379,32 +636,89 @@ public class ChatGptSwingClientV6 extends JFrame {
             style.addRule("table { border-collapse: collapse; margin: 8px 0; width: 100%; }");
             style.addRule("th { font-weight: bold; background-color: #E0E0E0; padding: 4px; text-align: left; color: #000000;}");
             style.addRule("td { padding: 4px; background-color: #FAFAFA; color: #000000; }");
+            return style;
+        }
+    }
+
+    // --- 一行：头像 + 气泡 ---
+    static class MessageRow extends JPanel {
+        private final BubblePanel bubble;
 
-            textPane.setEditorKit(kit);
-            setTextContent(text);
+        MessageRow(boolean isUser, TranscriptRenderer renderer) {
+            super(new FlowLayout(isUser ? FlowLayout.RIGHT : FlowLayout.LEFT));
+            setBackground(BG_COLOR);
+            setBorder(new EmptyBorder(5, 0, 5, 0));
 
-            add(textPane, BorderLayout.CENTER);
+            AvatarPanel avatar = new AvatarPanel(isUser ? "Me" : "AI", isUser ? USER_BUBBLE_COLOR : new Color(90, 90, 90));
+            bubble = new BubblePanel(isUser, renderer);
+            if (isUser) {
+                add(bubble);
+                add(avatar);
+            } else {
+                add(avatar);
+                add(bubble);
+            }
         }
+    }
+
+    // --- 一条消息的 HTML 编辑器：已冻结的块插入到 frozen 末尾，tail 整体替换为未结束的块 ---
+    static class EntryPane extends JEditorPane implements TranscriptEntry.View {
 
-        public void setTextContent(String text) {
-            // 1. 使用 CommonMark 解析 Markdown -> HTML
-            String htmlBody = renderer.render(text);
-
-            // 2. 针对 Swing 表格的 Hack：Swing 默认不显示 table border，除非属性里写了 border="1"
-            //    Commonmark 生成的 html 不带 border 属性。我们暴力替换一下。
-            htmlBody = htmlBody.replace("<table>", "<table border='1' cellspacing='0' cellpadding='4'>");
-
-            // 3. 包装完整 HTML
-            textPane.setText("<html><body>" + htmlBody + "</body></html>");
-
-            // 4. 计算尺寸
-            setSize(new Dimension(MAX_WIDTH, Short.MAX_VALUE));
-            Dimension pref = textPane.getPreferredSize();
-            int w = Math.min(MAX_WIDTH, pref.width + 30);
-            int h = pref.height + 24;
-            setPreferredSize(new Dimension(w, h));
-            revalidate();
-            repaint();
+        EntryPane(StyleSheet style) {
+            setEditable(false);
+            putClientProperty(JEditorPane.HONOR_DISPLAY_PROPERTIES, Boolean.TRUE);
+            setOpaque(false);
+            setEditorKit(new HTMLEditorKit() {
+                @Override
+                public StyleSheet getStyleSheet() {
+                    return style;
+                }
+            });
+        }
+
+        @Override
+        public void render(String frozenHtml, String tailHtml, boolean reset) {
+            if (reset) {
+                setText("<html><body><div id='frozen'>" + frozenHtml + "</div><div id='tail'>" + tailHtml
+                        + "</div></body></html>");
+                return;
+            }
+            HTMLDocument doc = (HTMLDocument) getDocument();
+            try {
+                if (!frozenHtml.isEmpty()) {
+                    doc.insertBeforeEnd(doc.getElement("frozen"), frozenHtml);
+                }
+                doc.setInnerHTML(doc.getElement("tail"), tailHtml);
+            } catch (BadLocationException | IOException e) {
+                throw new IllegalStateException("Failed to update bubble content", e);
+            }
+        }
+    }
+
+    // --- 气泡组件：尺寸取自消息的缓存，绘制时才借用消息的编辑器 ---
+    static class BubblePanel extends JPanel {
+        private static final int MAX_WIDTH = 780;
+        private static final Insets PADDING = new Insets(12, 18, 12, 18);
+        private final boolean isUser;
+        private final TranscriptRenderer renderer;
+        private TranscriptEntry entry;
+
+        public BubblePanel(boolean isUser, TranscriptRenderer renderer) {
+            this.isUser = isUser;
+            this.renderer = renderer;
+            setOpaque(false);
+            setBorder(new EmptyBorder(PADDING));
+        }
+
+        void show(TranscriptEntry entry) {
+            this.entry = entry;
+            // 行组件会缓存上一条消息的首选尺寸
+            invalidate();
+        }
+
+        @Override
+        public Dimension getPreferredSize() {
+            return renderer.sizeOf(entry);
         }
 
         @Override
@@ -420,6 +734,20 @@ public class ChatGptSwingClientV6 extends JFrame {
             g2.dispose();
             super.paintComponent(g);
         }
+
+        @Override
+        protected void paintChildren(Graphics g) {
+            // 编辑器还在后台排版时先只画气泡背景，完成后 JList 会重绘这一行
+            EntryPane pane = renderer.paneForPaint(entry);
+            if (pane == null) return;
+            pane.setSize(getWidth() - PADDING.left - PADDING.right, getHeight() - PADDING.top - PADDING.bottom);
+            Graphics paneGraphics = g.create(PADDING.left, PADDING.top, pane.getWidth(), pane.getHeight());
+            try {
+                pane.paint(paneGraphics);
+            } finally {
+                paneGraphics.dispose();
+            }
+        }
     }
 
     // --- 辅助类 ---
@@ -528,11 +856,6 @@ public class ChatGptSwingClientV6 extends JFrame {
         public void setModel(String s) { model = s; }
     }
 
-    record ChatRequest(String model, List<Message> messages) {}
-    record Message(String role, String content) {}
-    record ChatResponse(String id, List<Choice> choices) {}
-    record Choice(int index, Message message) {}
-
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> new ChatGptSwingClientV6().setVisible(true));
     }
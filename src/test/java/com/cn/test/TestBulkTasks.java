@@ -0,0 +1,50 @@
+package com.cn.test;
+
+import com.cn.pstoolkit.utils.BulkTasks;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestBulkTasks {
+
+    @Test
+    public void testMapKeepsOrder() {
+        List<Integer> rows = IntStream.range(0, 100_000).boxed().toList();
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        List<String> mapped = BulkTasks.map(pool, rows, row -> "row-" + row);
+        assertEquals(rows.size(), mapped.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals("row-" + i, mapped.get(i));
+        }
+
+        long sum = BulkTasks.mapReduce(pool, rows, Integer::longValue, 0L, Long::sum);
+        assertEquals(100_000L * 99_999 / 2, sum);
+
+        LongAdder visited = new LongAdder();
+        BulkTasks.forEach(pool, rows, row -> visited.increment());
+        assertEquals(rows.size(), visited.sum());
+
+        assertEquals(List.of(), BulkTasks.map(pool, new ArrayList<Integer>(), row -> row));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testFailurePropagates() {
+        List<Integer> rows = IntStream.range(0, 10_000).boxed().toList();
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> BulkTasks.forEach(rows, row -> {
+                    if (row == 5_000) {
+                        throw new IllegalStateException("bad row " + row);
+                    }
+                }));
+        // 跨线程抛出时 ForkJoin 会包一层同类型异常，原始异常在 cause 里
+        assertTrue(error.getMessage().contains("bad row 5000"), error.getMessage());
+    }
+}
@@ -0,0 +1,170 @@
+package com.cn.test;
+
+import com.cn.pstoolkit.utils.Bulkhead;
+import com.cn.pstoolkit.utils.LatchOutcome;
+import com.cn.pstoolkit.utils.LatchUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestBulkhead {
+
+    @Test
+    public void testLimitAndQueue() {
+        ExecutorService shared = Executors.newFixedThreadPool(16);
+        Bulkhead bulkhead = Bulkhead.builder("test-redis")
+                .limits(2, 2)
+                .maxQueued(3)
+                .build();
+        Executor redis = bulkhead.wrap(shared);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        for (int i = 0; i < 6; i++) {
+            LatchUtils.submitTask(redis, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(100);
+                running.decrementAndGet();
+            }, "redis-get");
+        }
+        LatchOutcome outcome = LatchUtils.waitForOutcome(5, TimeUnit.SECONDS);
+
+        // 2 个执行 + 3 个排队，第 6 个被拒绝
+        assertEquals(1, outcome.getFailures().size());
+        assertInstanceOf(RejectedExecutionException.class, outcome.getFailures().get(0).error());
+        assertEquals(2, maxRunning.get());
+        assertEquals(1, bulkhead.getRejected());
+        awaitIdle(bulkhead);
+        assertEquals(0, bulkhead.getQueued());
+        assertTrue(Bulkhead.snapshot().containsKey("test-redis"));
+        shared.shutdown();
+    }
+
+    @Test
+    public void testSlowDependencyShrinksLimit() {
+        ExecutorService shared = Executors.newFixedThreadPool(8);
+        Bulkhead bulkhead = Bulkhead.builder("test-slow")
+                .limits(1, 8)
+                .initialLimit(8)
+                .latencyThreshold(10, TimeUnit.MILLISECONDS)
+                .maxQueued(1_000)
+                .build();
+        Executor slow = bulkhead.wrap(shared);
+
+        for (int i = 0; i < 40; i++) {
+            LatchUtils.submitTask(slow, () -> sleep(30), "slow-call");
+        }
+        assertTrue(LatchUtils.waitFor(10, TimeUnit.SECONDS));
+        assertTrue(bulkhead.getLimit() < 8, "limit " + bulkhead.getLimit());
+        System.out.println(Bulkhead.snapshot().get("test-slow"));
+        shared.shutdown();
+    }
+
+    @Test
+    public void testQueuedTaskFailsWhenDelegateRejects() {
+        ExecutorService shared = Executors.newFixedThreadPool(2);
+        Bulkhead bulkhead = Bulkhead.builder("test-shutdown")
+                .limits(1, 1)
+                .maxQueued(2)
+                .build();
+        Executor dependency = bulkhead.wrap(shared);
+        AtomicInteger ran = new AtomicInteger();
+
+        // 第一个任务运行时线程池关闭，它结束后排队的任务出队时被拒绝
+        LatchUtils.submitTask(dependency, () -> {
+            sleep(50);
+            shared.shutdown();
+            ran.incrementAndGet();
+        }, "running");
+        LatchUtils.submitTask(dependency, ran::incrementAndGet, "queued-1");
+        LatchUtils.submitTask(dependency, ran::incrementAndGet, "queued-2");
+        LatchOutcome outcome = LatchUtils.waitForOutcome(5, TimeUnit.SECONDS);
+
+        assertFalse(outcome.isTimedOut());
+        assertEquals(1, ran.get(), "rejected tasks must not run in the completing thread");
+        assertEquals(2, outcome.getFailures().size());
+        outcome.getFailures().forEach(failure -> assertInstanceOf(RejectedExecutionException.class, failure.error()));
+        assertEquals(2, bulkhead.getRejected());
+        awaitIdle(bulkhead);
+    }
+
+    @Test
+    public void testFastFailuresShrinkLimit() {
+        ExecutorService shared = Executors.newFixedThreadPool(8);
+        Bulkhead bulkhead = Bulkhead.builder("test-failing")
+                .limits(1, 8)
+                .initialLimit(8)
+                .latencyThreshold(10, TimeUnit.MILLISECONDS)
+                .maxQueued(1_000)
+                .build();
+        Executor failing = bulkhead.wrap(shared);
+
+        // 依赖立即报错：任务很快返回，但异常被 LatchUtils 捕获记录，不能算作成功
+        for (int round = 0; round < 5; round++) {
+            sleep(15);
+            for (int i = 0; i < 8; i++) {
+                LatchUtils.submitTask(failing, () -> {
+                    throw new IllegalStateException("connection refused");
+                }, "failing-call");
+            }
+            assertFalse(LatchUtils.waitFor(1, TimeUnit.SECONDS));
+        }
+        awaitIdle(bulkhead);
+        assertTrue(bulkhead.getLimit() < 8, "limit " + bulkhead.getLimit());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> stats = (Map<String, Object>) Bulkhead.snapshot().get("test-failing");
+        assertEquals(40L, stats.get("completed"));
+        shared.shutdown();
+    }
+
+    @Test
+    public void testInterruptedTasksShrinkLimit() {
+        ExecutorService shared = Executors.newFixedThreadPool(8);
+        Bulkhead bulkhead = Bulkhead.builder("test-cancelled")
+                .limits(1, 64)
+                .initialLimit(4)
+                .latencyThreshold(50, TimeUnit.MILLISECONDS)
+                .maxQueued(100)
+                .build();
+        Executor dependency = bulkhead.wrap(shared);
+
+        for (int i = 0; i < 40; i++) {
+            LatchUtils.submitTask(dependency, () -> sleep(10_000), "hanging-call");
+        }
+        // 超时后运行中的 4 个任务被中断，按失败下调上限；排队的任务出队时已取消，不计入
+        assertFalse(LatchUtils.waitFor(100, TimeUnit.MILLISECONDS));
+        awaitIdle(bulkhead);
+        assertTrue(bulkhead.getLimit() < 4, "limit " + bulkhead.getLimit());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> stats = (Map<String, Object>) Bulkhead.snapshot().get("test-cancelled");
+        assertEquals(36L, stats.get("cancelled"));
+        assertEquals(4L, stats.get("completed"));
+        shared.shutdown();
+    }
+
+    /**
+     * 任务在 Runnable 返回后才归还名额，可能晚于 waitFor 返回
+     */
+    private static void awaitIdle(Bulkhead bulkhead) {
+        for (int i = 0; i < 100 && bulkhead.getInFlight() > 0; i++) {
+            sleep(10);
+        }
+        assertEquals(0, bulkhead.getInFlight());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
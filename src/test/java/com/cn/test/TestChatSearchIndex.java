@@ -0,0 +1,99 @@
+package com.cn.test;
+
+import com.cn.pstoolkit.llm.ChatMessage;
+import com.cn.pstoolkit.llm.ChatSearchIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestChatSearchIndex {
+
+    private static final String[] WORDS = {"线程池", "虚拟线程", "缓存", "数据库", "连接池", "超时", "重试", "索引", "事务",
+            "消息队列", "序列化", "内存映射", "压缩", "日志", "接口", "配置", "部署", "监控", "Redis", "Spring", "JVM", "GC"};
+
+    @Test
+    public void testTokenization() {
+        assertEquals(Set.of("线", "程", "池", "线程", "程池", "spring", "boot", "4"), ChatSearchIndex.terms("线程池 Spring-Boot ４"));
+        assertEquals(Set.of("す", "し", "すし", "한", "국", "한국"), ChatSearchIndex.terms("すし，한국"));
+        assertEquals(Set.of(), ChatSearchIndex.terms("  ，。!? "));
+    }
+
+    @Test
+    public void testIncrementalSearch() {
+        ChatSearchIndex index = new ChatSearchIndex();
+        index.addAll(0, List.of(
+                ChatMessage.user("Redis 连接池怎么配置？"),
+                ChatMessage.assistant("连接池的最大连接数建议按 QPS 估算"),
+                ChatMessage.user("线程池和虚拟线程有什么区别"),
+                ChatMessage.assistant("虚拟线程适合阻塞 IO，线程池适合 CPU 密集任务")));
+        assertEquals(List.of(1L, 0L), index.search("连接池", 10));
+        assertEquals(List.of(0L), index.search("redis 配置", 10));
+        assertEquals(List.of(3L, 2L), index.search("虚拟线程", 10));
+        assertEquals(List.of(3L), index.search("阻塞", 10));
+        assertEquals(List.of(3L), index.search("io", 10));
+        // 单字查询
+        assertEquals(List.of(3L, 2L), index.search("虚", 10));
+        assertEquals(List.of(), index.search("数据库", 10));
+        assertEquals(List.of(), index.search("", 10));
+
+        index.add(4, ChatMessage.user("数据库连接池泄漏"));
+        assertEquals(List.of(4L, 1L, 0L), index.search("连接池", 10));
+        assertEquals(List.of(4L, 1L), index.search("连接池", 2));
+        assertEquals(List.of(4L), index.search("数据库", 10));
+        assertThrows(IllegalArgumentException.class, () -> index.add(4, ChatMessage.user("重复")));
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertEquals(List.of(), index.search("连接池", 10));
+    }
+
+    @Test
+    public void testMatchesLinearScanAtScale() {
+        Random random = new Random(42);
+        List<String> contents = new ArrayList<>();
+        ChatSearchIndex index = new ChatSearchIndex();
+        for (int i = 0; i < 100_000; i++) {
+            StringBuilder content = new StringBuilder();
+            for (int w = 0; w < 12; w++) {
+                content.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(3) == 0 ? "，" : "的");
+            }
+            contents.add(content.toString());
+            index.add(i, i % 2 == 0 ? ChatMessage.user(content.toString()) : ChatMessage.assistant(content.toString()));
+        }
+        assertEquals(100_000, index.size());
+        // 压缩后平均每条倒排记录不到 2 字节
+        long postings = 0;
+        for (String content : contents.subList(0, 1000)) {
+            postings += ChatSearchIndex.terms(content).size();
+        }
+        assertTrue(index.getPostingsBytes() < postings * 100 * 2, "postings bytes " + index.getPostingsBytes());
+
+        for (String query : List.of("内存映射 压缩", "虚拟线程", "Redis 超时", "消息队列 序列化 监控")) {
+            List<Long> expected = new ArrayList<>();
+            for (int i = contents.size() - 1; i >= 0 && expected.size() < 50; i--) {
+                String content = contents.get(i).toLowerCase();
+                boolean all = true;
+                for (String part : query.toLowerCase().split(" ")) {
+                    all &= content.contains(part);
+                }
+                if (all) {
+                    expected.add((long) i);
+                }
+            }
+            assertEquals(expected, index.search(query, 50), query);
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 20; round++) {
+            long start = System.nanoTime();
+            index.search("数据库 连接池", 50);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        assertTrue(best < 10_000_000, "search took " + best + " ns");
+    }
+}
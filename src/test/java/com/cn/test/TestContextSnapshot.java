@@ -0,0 +1,93 @@
+package com.cn.test;
+
+import com.cn.pstoolkit.utils.ContextSnapshot;
+import com.cn.pstoolkit.utils.FanOut;
+import com.cn.pstoolkit.utils.FanOutResult;
+import com.cn.pstoolkit.utils.LatchUtils;
+import org.apache.logging.log4j.ThreadContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestContextSnapshot {
+
+    /**
+     * 4000 个批次由 32 个请求线程并发提交到同一个 8 线程的池，
+     * 每个任务都必须看到自己批次的 traceId，池线程在任务之间不能残留上下文。
+     */
+    @Test
+    public void testNoLeakAcrossConcurrentBatches() throws InterruptedException {
+        ExecutorService shared = Executors.newFixedThreadPool(8);
+        ExecutorService requests = Executors.newFixedThreadPool(32);
+        ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+
+        for (int i = 0; i < 4_000; i++) {
+            String traceId = "trace-" + i;
+            boolean withContext = i % 4 != 0;
+            requests.execute(() -> {
+                if (withContext) {
+                    ThreadContext.put("traceId", traceId);
+                    ThreadContext.push(traceId);
+                }
+                try {
+                    for (int t = 0; t < 4; t++) {
+                        LatchUtils.submitTask(shared, () -> {
+                            String expected = withContext ? traceId : null;
+                            String actual = ThreadContext.get("traceId");
+                            if (!Objects.equals(expected, actual)
+                                    || ThreadContext.getDepth() != (withContext ? 1 : 0)) {
+                                errors.add(traceId + " saw " + actual);
+                            }
+                        });
+                    }
+                    if (!LatchUtils.waitFor(10, TimeUnit.SECONDS)) {
+                        errors.add(traceId + " timed out");
+                    }
+                } finally {
+                    ThreadContext.clearAll();
+                }
+            });
+        }
+        requests.shutdown();
+        assertTrue(requests.awaitTermination(60, TimeUnit.SECONDS));
+
+        // 池线程执行完后回到空上下文
+        for (int i = 0; i < 64; i++) {
+            LatchUtils.submitTask(shared, () -> {
+                if (!ThreadContext.isEmpty() || ThreadContext.getDepth() != 0) {
+                    errors.add("leaked " + ThreadContext.getImmutableContext());
+                }
+            });
+        }
+        assertTrue(LatchUtils.waitFor(5, TimeUnit.SECONDS));
+        shared.shutdown();
+        assertTrue(errors.isEmpty(), () -> errors.size() + " errors, e.g. " + errors.peek());
+    }
+
+    @Test
+    public void testFanOutAndWrap() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        ThreadContext.put("traceId", "fan-out");
+        try {
+            FanOutResult<String> result = FanOut.<String>create()
+                    .submit(executor, () -> ThreadContext.get("traceId"))
+                    .submit(executor, () -> ThreadContext.get("traceId"))
+                    .await(5, TimeUnit.SECONDS);
+            assertEquals(List.of("fan-out", "fan-out"), result.values());
+
+            ContextSnapshot snapshot = ContextSnapshot.capture();
+            assertEquals("fan-out", snapshot.getContextMap().get("traceId"));
+        } finally {
+            ThreadContext.clearAll();
+        }
+        assertSame(ContextSnapshot.empty(), ContextSnapshot.capture());
+        executor.shutdown();
+    }
+}
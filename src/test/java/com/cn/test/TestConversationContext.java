@@ -0,0 +1,132 @@
+package com.cn.test;
+
+import com.cn.pstoolkit.llm.ChatMessage;
+import com.cn.pstoolkit.llm.ConversationContext;
+import com.cn.pstoolkit.llm.Summarizer;
+import com.cn.pstoolkit.llm.TokenEstimator;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestConversationContext {
+
+    @Test
+    public void testEstimator() {
+        assertEquals(0, TokenEstimator.estimate(""));
+        assertEquals(1, TokenEstimator.estimate("hello"));
+        assertEquals(2, TokenEstimator.estimate("hello world"));
+        assertEquals(4, TokenEstimator.estimate("你好世界"));
+        assertEquals(3, TokenEstimator.estimate("int a;"));
+        assertEquals(TokenEstimator.MESSAGE_OVERHEAD + 1 + 2, TokenEstimator.estimate(ChatMessage.user("你好")));
+    }
+
+    @Test
+    public void testStaysWithinBudgetAndKeepsPinned() {
+        ConversationContext context = new ConversationContext(300, null);
+        context.add(ChatMessage.system("你是一个助手"));
+        for (int i = 0; i < 100; i++) {
+            context.add(ChatMessage.user("问题 " + i + " " + "字".repeat(20)));
+            context.add(ChatMessage.assistant("回答 " + i + " " + "字".repeat(30)));
+            List<ChatMessage> messages = context.messages();
+            assertTrue(context.getTokenCount() <= 300, "tokens " + context.getTokenCount());
+            assertEquals("system", messages.get(0).role());
+            // 移出后窗口不以 assistant 开头
+            assertEquals("user", messages.get(1).role());
+            assertEquals("回答 " + i + " " + "字".repeat(30), messages.getLast().content());
+        }
+        assertTrue(context.getEvictedCount() > 150);
+        assertEquals("", context.getSummary());
+
+        // 单条超出预算时仍保留最后一条
+        context.add(ChatMessage.user("长".repeat(1000)));
+        List<ChatMessage> messages = context.messages();
+        assertEquals(2, messages.size());
+        assertEquals(1000, messages.getLast().content().length());
+
+        context.clear();
+        assertEquals(List.of(ChatMessage.system("你是一个助手")), context.messages());
+    }
+
+    @Test
+    public void testEvictedTurnsFoldedIntoSummary() {
+        List<List<ChatMessage>> batches = new ArrayList<>();
+        Summarizer extractive = Summarizer.extractive(10, 60);
+        ConversationContext context = new ConversationContext(200, (previous, evicted) -> {
+            batches.add(evicted);
+            return extractive.summarize(previous, evicted);
+        });
+        for (int i = 0; i < 20; i++) {
+            context.add(ChatMessage.user("第" + i + "个问题" + "啊".repeat(20)));
+            context.add(ChatMessage.assistant("第" + i + "个回答" + "嗯".repeat(20)));
+            context.messages();
+        }
+        // 成批移出，不是每轮都摘要
+        assertTrue(batches.size() < 15, "batches " + batches.size());
+        assertTrue(batches.stream().allMatch(batch -> !batch.isEmpty()));
+        assertTrue(context.getSummary().contains("assistant: 第"), context.getSummary());
+        assertTrue(context.getSummary().length() <= 60);
+
+        List<ChatMessage> messages = context.messages();
+        assertEquals("system", messages.get(0).role());
+        assertTrue(messages.get(0).content().endsWith(context.getSummary()));
+        assertTrue(context.getTokenCount() <= 200, "tokens " + context.getTokenCount());
+    }
+
+    @Test
+    public void testSummarizerRunsOutsideTheLock() throws Exception {
+        CountDownLatch summarizing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ConversationContext context = new ConversationContext(100, (previous, evicted) -> {
+            summarizing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "摘要 " + evicted.size();
+        });
+        for (int i = 0; i < 10; i++) {
+            context.add(ChatMessage.user("问题 " + i + " " + "字".repeat(10)));
+        }
+        CompletableFuture<List<ChatMessage>> request = CompletableFuture.supplyAsync(context::messages);
+        assertTrue(summarizing.await(1, TimeUnit.SECONDS));
+
+        // 模型摘要进行中，UI 线程追加消息不等待摘要
+        CompletableFuture.runAsync(() -> context.add(ChatMessage.assistant("回答"))).get(1, TimeUnit.SECONDS);
+        assertFalse(request.isDone());
+        release.countDown();
+
+        List<ChatMessage> messages = request.get(1, TimeUnit.SECONDS);
+        assertTrue(messages.get(0).content().contains("摘要"), messages.get(0).content());
+        assertEquals("回答", context.messages().getLast().content());
+        assertTrue(context.getTokenCount() <= 100, "tokens " + context.getTokenCount());
+    }
+
+    @Test
+    public void testRequestJsonMatchesMessages() {
+        Gson gson = new Gson();
+        ConversationContext context = new ConversationContext(120, Summarizer.extractive(8, 100));
+        context.add(ChatMessage.user("带 \"引号\" 和\n换行的 </script> 内容"));
+        for (int i = 0; i < 30; i++) {
+            context.add(i % 2 == 0 ? ChatMessage.assistant("回复 " + i) : ChatMessage.user("提问 " + i));
+            // 中途加入的 system 消息排在最前
+            if (i == 10) {
+                context.add(ChatMessage.system("保持简洁"));
+            }
+            JsonObject request = JsonParser.parseString(context.toRequestJson("gpt-4o-mini", true)).getAsJsonObject();
+            assertEquals("gpt-4o-mini", request.get("model").getAsString());
+            assertTrue(request.get("stream").getAsBoolean());
+            assertEquals(gson.toJsonTree(context.messages()), request.get("messages"));
+        }
+        assertEquals("保持简洁", context.messages().get(0).content());
+    }
+}
@@ -0,0 +1,130 @@
+package com.cn.test;
+
+import com.cn.pstoolkit.llm.ChatMessage;
+import com.cn.pstoolkit.llm.ConversationLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestConversationLog {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testReopenSegmentsAndCompaction() throws IOException {
+        List<ChatMessage> expected = new ArrayList<>();
+        try (ConversationLog history = ConversationLog.open(dir, 4096)) {
+            for (int i = 0; i < 500; i++) {
+                ChatMessage message = i % 2 == 0
+                        ? ChatMessage.user("问题 " + i)
+                        : ChatMessage.assistant("回答 " + i + "\n\n```java\nint a = " + i + ";\n```\n" + "内容".repeat(i % 40));
+                assertEquals(i, history.append(message));
+                expected.add(message);
+            }
+            assertTrue(history.getSegmentCount() > 5, "segments " + history.getSegmentCount());
+            assertEquals(expected, history.read(0, 500));
+            assertTrue(history.compact() > 0);
+            assertEquals(0, history.compact());
+        }
+        try (ConversationLog history = ConversationLog.open(dir, 4096)) {
+            assertEquals(500, history.size());
+            assertEquals(expected.subList(450, 500), history.tail(50));
+            // 跨越多个压缩段和写入段
+            assertEquals(expected, history.read(0, 500));
+            assertEquals(expected.get(123), history.get(123));
+            history.append(ChatMessage.user("继续"));
+            assertEquals(ChatMessage.user("继续"), history.get(500));
+            assertThrows(IndexOutOfBoundsException.class, () -> history.read(400, 502));
+
+            history.clear();
+            assertEquals(0, history.size());
+            assertEquals(List.of(), history.tail(10));
+            history.append(ChatMessage.user("重新开始"));
+        }
+        try (ConversationLog history = ConversationLog.open(dir, 4096)) {
+            assertEquals(List.of(ChatMessage.user("重新开始")), history.tail(10));
+            assertEquals(1, history.getSegmentCount());
+        }
+    }
+
+    @Test
+    public void testClearAfterTail() throws IOException {
+        try (ConversationLog history = ConversationLog.open(dir, 1024)) {
+            for (int i = 0; i < 100; i++) {
+                history.append(ChatMessage.user("消息 " + i + " " + "字".repeat(i % 20)));
+            }
+            // 读过写入段和封存段之后，文件仍然可以删除
+            assertEquals(ChatMessage.user("消息 99 " + "字".repeat(19)), history.tail(10).getLast());
+            assertEquals(100, history.read(0, 100).size());
+            assertTrue(history.compact() > 0);
+            assertEquals(100, history.read(0, 100).size());
+
+            history.clear();
+            assertEquals(0, history.size());
+            assertEquals(List.of(), history.tail(10));
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(Set.of("%020d.log".formatted(0), "%020d.idx".formatted(0)),
+                        files.map(file -> file.getFileName().toString()).collect(Collectors.toSet()));
+            }
+            history.append(ChatMessage.user("清空后"));
+            assertEquals(List.of(ChatMessage.user("清空后")), history.tail(10));
+        }
+        try (ConversationLog history = ConversationLog.open(dir, 1024)) {
+            assertEquals(List.of(ChatMessage.user("清空后")), history.read(0, 1));
+        }
+    }
+
+    @Test
+    public void testRecoversFromTornWrites() throws IOException {
+        try (ConversationLog history = ConversationLog.open(dir)) {
+            for (int i = 0; i < 10; i++) {
+                history.append(ChatMessage.user("消息 " + i));
+            }
+        }
+        Path log = dir.resolve("%020d.log".formatted(0));
+        Path index = dir.resolve("%020d.idx".formatted(0));
+
+        // 数据写完但索引没写：打开时补上索引
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.WRITE)) {
+            channel.truncate(8 * 7 + 3);
+        }
+        try (ConversationLog history = ConversationLog.open(dir)) {
+            assertEquals(10, history.size());
+            assertEquals(ChatMessage.user("消息 9"), history.get(9));
+        }
+        assertEquals(80, Files.size(index));
+
+        // 最后一条只写了一半，索引里还多出一个全零的偏移：截掉这一条
+        long logSize = Files.size(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(logSize - 3);
+        }
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(8));
+        }
+        try (ConversationLog history = ConversationLog.open(dir)) {
+            assertEquals(9, history.size());
+            assertEquals(ChatMessage.user("消息 8"), history.get(8));
+            history.append(ChatMessage.user("消息 9'"));
+        }
+        try (ConversationLog history = ConversationLog.open(dir)) {
+            assertEquals(10, history.size());
+            assertEquals(ChatMessage.user("消息 9'"), history.tail(1).getFirst());
+        }
+        assertEquals(80, Files.size(index));
+    }
+}
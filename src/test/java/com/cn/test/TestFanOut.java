@@ -0,0 +1,88 @@
+package com.cn.test;
+
+import com.cn.pstoolkit.utils.FanOut;
+import com.cn.pstoolkit.utils.FanOutResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestFanOut {
+
+    @Test
+    public void testValues() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        FanOutResult<String> result = FanOut.<String>create()
+                .submit(executor, () -> {
+                    sleep(300);
+                    return "user";
+                }, "user")
+                .submit(executor, () -> "orders", "orders")
+                .submit(executor, () -> "prefs", "prefs")
+                .await(5, TimeUnit.SECONDS);
+
+        assertTrue(result.isSuccess());
+        assertEquals(List.of("user", "orders", "prefs"), result.values());
+        System.out.println("user run time: " + result.get(0).runMillis() + "ms");
+
+        executor.shutdown();
+    }
+
+    @Test
+    public void testFailFast() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        long start = System.currentTimeMillis();
+        FanOutResult<String> result = FanOut.<String>failFast()
+                .submit(executor, () -> {
+                    sleep(5000);
+                    return "slow";
+                }, "slow")
+                .submit(executor, () -> {
+                    throw new IllegalStateException("boom");
+                }, "broken")
+                .await(10, TimeUnit.SECONDS);
+        long cost = System.currentTimeMillis() - start;
+
+        assertFalse(result.isSuccess());
+        assertFalse(result.isTimedOut());
+        assertEquals(FanOutResult.State.CANCELLED, result.get(0).state());
+        assertEquals(FanOutResult.State.FAILED, result.get(1).state());
+        assertInstanceOf(IllegalStateException.class, result.firstError());
+        assertTrue(cost < 5000, "slow sibling should be cancelled, cost " + cost + "ms");
+
+        executor.shutdown();
+    }
+
+    @Test
+    public void testTimeout() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        FanOutResult<Integer> result = FanOut.<Integer>create()
+                .submit(executor, () -> 1, "fast")
+                .submit(executor, () -> {
+                    sleep(5000);
+                    return 2;
+                }, "slow")
+                .await(200, TimeUnit.MILLISECONDS);
+
+        assertTrue(result.isTimedOut());
+        assertTrue(result.get(0).isSuccess());
+        assertEquals(FanOutResult.State.CANCELLED, result.get(1).state());
+
+        executor.shutdown();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
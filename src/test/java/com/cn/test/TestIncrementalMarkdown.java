@@ -0,0 +1,85 @@
+package com.cn.test;
+
+import com.cn.pstoolkit.markdown.IncrementalMarkdownRenderer;
+import org.commonmark.ext.gfm.tables.TablesExtension;
+import org.commonmark.parser.Parser;
+import org.commonmark.renderer.html.HtmlRenderer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestIncrementalMarkdown {
+
+    private static final String REPLY = """
+            ## 方案对比
+
+            下面是三种实现方式的比较，**推荐第二种**：
+
+            | 方案 | 吞吐 | 延迟 |
+            |------|-----:|-----:|
+            | 单线程 | 1x | 高 |
+            | 虚拟线程 | 10x | 低 |
+
+            1. 首先创建 `Executor`
+
+            2. 然后提交任务
+               - 注意设置 *超时*
+
+               继续属于第二项的段落
+            3. 最后等待
+
+            ```java
+            String s = "a";
+
+            ```
+            ~~~
+            未闭合的反引号 ```
+
+            仍在代码块里
+            ~~~
+            标题
+            ===
+
+            <!--
+            注释里的空行
+
+            -->
+            > 提示：任务必须是幂等的。
+
+            > 第二个引用
+
+            ---
+            结尾段落
+            """;
+
+    @Test
+    public void testMatchesFullRenderAtEveryStep() {
+        Parser parser = Parser.builder().extensions(List.of(TablesExtension.create())).build();
+        HtmlRenderer renderer = HtmlRenderer.builder().extensions(List.of(TablesExtension.create())).build();
+        String markdown = REPLY.repeat(3);
+
+        for (int chunk : new int[]{1, 3, 7, 64}) {
+            IncrementalMarkdownRenderer incremental = new IncrementalMarkdownRenderer(parser, renderer);
+            StringBuilder frozen = new StringBuilder();
+            int maxTail = 0;
+            for (int i = 0; i < markdown.length(); i += chunk) {
+                String piece = markdown.substring(i, Math.min(markdown.length(), i + chunk));
+                IncrementalMarkdownRenderer.Update update = incremental.append(piece);
+                maxTail = Math.max(maxTail, update.tailHtml().length());
+                frozen.append(update.frozenHtml());
+                String prefix = markdown.substring(0, Math.min(markdown.length(), i + chunk));
+                assertEquals(renderer.render(parser.parse(prefix)), frozen + update.tailHtml(),
+                        "chunk " + chunk + " at " + i);
+            }
+            IncrementalMarkdownRenderer.Update last = incremental.finish();
+            frozen.append(last.frozenHtml());
+            assertEquals("", last.tailHtml());
+            String full = renderer.render(parser.parse(markdown));
+            assertEquals(full, frozen.toString());
+            // 已结束的块在流式过程中就被冻结，每次重新渲染的末尾块不随回复变长
+            assertTrue(maxTail < full.length() / 3, "max tail " + maxTail);
+        }
+    }
+}
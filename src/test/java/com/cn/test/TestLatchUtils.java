@@ -1,12 +1,26 @@
 package com.cn.test;
 
+import com.cn.pstoolkit.utils.HedgePolicy;
+import com.cn.pstoolkit.utils.LatchMetrics;
+import com.cn.pstoolkit.utils.LatchOutcome;
 import com.cn.pstoolkit.utils.LatchUtils;
+import com.cn.pstoolkit.utils.TaskBatch;
+import com.cn.pstoolkit.utils.TaskStream;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class TestLatchUtils {
 
@@ -48,6 +62,320 @@ public class TestLatchUtils {
         }
     }
 
+    @Test
+    public void testOutcome() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 8; i++) {
+            int n = i;
+            LatchUtils.submitTask(executor, () -> {
+                if (n % 2 == 1) {
+                    throw new IllegalStateException("failed " + n);
+                }
+            }, "task-" + n);
+        }
+
+        LatchOutcome outcome = LatchUtils.waitForOutcome(5, TimeUnit.SECONDS);
+
+        assertFalse(outcome.isSuccess());
+        assertFalse(outcome.isTimedOut());
+        assertEquals(8, outcome.getOutcomes().size());
+        assertEquals(4, outcome.getFailures().size());
+        for (LatchOutcome.TaskOutcome failure : outcome.getFailures()) {
+            assertInstanceOf(IllegalStateException.class, failure.error());
+            assertEquals("failed " + failure.taskName().substring(5), failure.error().getMessage());
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void testErrorIsRecordedAndRethrown() throws InterruptedException {
+        AtomicReference<Throwable> uncaught = new AtomicReference<>();
+        CountDownLatch thrown = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(1, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setUncaughtExceptionHandler((t, e) -> {
+                uncaught.set(e);
+                thrown.countDown();
+            });
+            return thread;
+        });
+        LatchUtils.submitTask(executor, () -> {
+            throw new StackOverflowError("deep");
+        }, "overflow");
+
+        LatchOutcome outcome = LatchUtils.waitForOutcome(5, TimeUnit.SECONDS);
+
+        assertFalse(outcome.isTimedOut());
+        assertInstanceOf(StackOverflowError.class, outcome.getFailures().getFirst().error());
+        // Error 不被吞掉，仍然抛到执行线程
+        assertTrue(thrown.await(1, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertInstanceOf(StackOverflowError.class, uncaught.get());
+    }
+
+    @Test
+    public void testMetrics() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        for (int i = 0; i < 10; i++) {
+            LatchUtils.submitTask(executor, () -> sleep(10), "metrics-demo");
+        }
+        assertTrue(LatchUtils.waitFor(5, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        LatchMetrics.TaskMetrics metrics = LatchMetrics.forTask("metrics-demo");
+        assertEquals(10, metrics.getRunTime().getCount());
+        assertEquals(10, metrics.getQueueWait().getCount());
+        long p95 = metrics.getRunTime().getPercentileNanos(95);
+        assertTrue(p95 >= TimeUnit.MILLISECONDS.toNanos(10), "p95 " + p95);
+        System.out.println(LatchMetrics.snapshot());
+    }
+
+    @Test
+    public void testRecentPercentileRefreshedPeriodically() {
+        LatchMetrics.TaskMetrics metrics = LatchMetrics.forTask("recent-percentile");
+        assertEquals(-1, metrics.recentPercentileNanos(50));
+        for (int i = 0; i < 20; i++) {
+            metrics.recordRun(1_000, false);
+        }
+        assertEquals(1_000, metrics.recentPercentileNanos(50));
+        // 少量新样本沿用缓存的结果，攒够一批后重新计算
+        for (int i = 0; i < 15; i++) {
+            metrics.recordRun(9_000, false);
+        }
+        assertEquals(1_000, metrics.recentPercentileNanos(50));
+        for (int i = 0; i < 10; i++) {
+            metrics.recordRun(9_000, false);
+        }
+        assertEquals(9_000, metrics.recentPercentileNanos(50));
+        assertEquals(1_000, metrics.recentPercentileNanos(10));
+    }
+
+    @Test
+    public void testMetricsNamesAreCapped() {
+        try {
+            for (int i = 0; i < LatchMetrics.MAX_TASK_NAMES + 100; i++) {
+                LatchMetrics.forTask("order-" + i).recordRun(1000, false);
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> tasks = (Map<String, Object>) LatchMetrics.snapshot().get("tasks");
+            assertEquals(LatchMetrics.MAX_TASK_NAMES + 1, tasks.size());
+            // 超出上限的名称共用一份指标
+            assertSame(LatchMetrics.forTask(LatchMetrics.OTHER), LatchMetrics.forTask("order-" + (LatchMetrics.MAX_TASK_NAMES + 50)));
+        } finally {
+            LatchMetrics.reset();
+        }
+    }
+
+    @Test
+    public void testTimeoutCancelsStragglers() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AtomicBoolean queuedTaskRan = new AtomicBoolean();
+
+        LatchUtils.submitTask(executor, () -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        }, "slow-dependency");
+        LatchUtils.submitTask(executor, () -> queuedTaskRan.set(true), "queued");
+
+        assertFalse(LatchUtils.waitFor(200, TimeUnit.MILLISECONDS));
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS), "running task should be interrupted");
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertFalse(queuedTaskRan.get(), "queued task should be cancelled before it starts");
+    }
+
+    @Test
+    public void testHedgeBeatsSlowPrimary() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch primaryInterrupted = new CountDownLatch(1);
+        LatchMetrics.TaskMetrics metrics = LatchMetrics.forTask("hedged-query");
+        long winsBefore = metrics.getHedgeWins();
+
+        long start = System.nanoTime();
+        LatchUtils.submitTask(executor, () -> {
+            if (attempts.getAndIncrement() == 0) {
+                try {
+                    Thread.sleep(5_000);
+                } catch (InterruptedException e) {
+                    primaryInterrupted.countDown();
+                }
+            }
+        }, "hedged-query", HedgePolicy.fixedDelay(50, TimeUnit.MILLISECONDS));
+
+        assertTrue(LatchUtils.waitFor(2, TimeUnit.SECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis < 1_000, "hedge should finish early, took " + elapsedMillis + "ms");
+        assertEquals(2, attempts.get());
+        assertEquals(winsBefore + 1, metrics.getHedgeWins());
+        assertTrue(primaryInterrupted.await(1, TimeUnit.SECONDS), "losing attempt should be interrupted");
+        executor.shutdown();
+    }
+
+    @Test
+    public void testBatchReusedAfterHedgedRound() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (TaskBatch batch = TaskBatch.acquire()) {
+            for (int round = 0; round < 50; round++) {
+                AtomicInteger attempts = new AtomicInteger();
+                // 主任务 3ms 胜出，副本不响应中断，6ms 后才结束，此时批次已经进入下一轮
+                batch.submit(executor, () -> sleepIgnoringInterrupts(attempts.getAndIncrement() == 0 ? 3 : 6),
+                        "hedged-reuse", HedgePolicy.fixedDelay(1, TimeUnit.MILLISECONDS));
+                assertTrue(batch.await(5, TimeUnit.SECONDS));
+
+                AtomicBoolean plainDone = new AtomicBoolean();
+                batch.submit(executor, () -> {
+                    sleep(20);
+                    plainDone.set(true);
+                }, "plain-after-hedge");
+                LatchOutcome outcome = batch.awaitOutcome(5, TimeUnit.SECONDS);
+
+                assertTrue(outcome.isSuccess(), "round " + round + ": " + outcome);
+                assertEquals("plain-after-hedge", outcome.getOutcomes().getFirst().taskName());
+                assertTrue(plainDone.get(), "round " + round + " returned before the plain task finished");
+            }
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void testStreamBoundsInFlight() {
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+
+        LatchOutcome outcome;
+        try (TaskStream stream = LatchUtils.openStream(executor, 8)) {
+            for (int i = 0; i < 2_000; i++) {
+                int row = i;
+                stream.submit(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    sleep(1);
+                    running.decrementAndGet();
+                    completed.incrementAndGet();
+                    if (row == 1_000) {
+                        throw new IllegalStateException("bad row");
+                    }
+                }, "stream-row");
+                assertTrue(stream.inFlight() <= 8);
+            }
+            outcome = stream.await(10, TimeUnit.SECONDS);
+        }
+
+        assertFalse(outcome.isSuccess());
+        assertFalse(outcome.isTimedOut());
+        assertEquals(1, outcome.getFailures().size());
+        assertEquals(2_000, completed.get());
+        assertTrue(maxRunning.get() <= 8, "max running " + maxRunning.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testStreamRethrowsErrors() throws InterruptedException {
+        AtomicReference<Throwable> uncaught = new AtomicReference<>();
+        CountDownLatch thrown = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(1, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setUncaughtExceptionHandler((t, e) -> {
+                uncaught.set(e);
+                thrown.countDown();
+            });
+            return thread;
+        });
+        LatchOutcome outcome;
+        try (TaskStream stream = LatchUtils.openStream(executor, 2)) {
+            stream.submit(() -> {
+                throw new StackOverflowError("deep");
+            }, "stream-overflow");
+            outcome = stream.await(5, TimeUnit.SECONDS);
+        }
+
+        assertFalse(outcome.isTimedOut());
+        assertInstanceOf(StackOverflowError.class, outcome.getFailures().getFirst().error());
+        assertTrue(thrown.await(1, TimeUnit.SECONDS));
+        assertInstanceOf(StackOverflowError.class, uncaught.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testWaitForAsync() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        LatchUtils.submitTask(executor, () -> sleep(200), "async-slow");
+        LatchUtils.submitTask(executor, () -> {
+            throw new IllegalStateException("async failure");
+        }, "async-failing");
+
+        long start = System.nanoTime();
+        CompletableFuture<LatchOutcome> future = LatchUtils.waitForOutcomeAsync(5, TimeUnit.SECONDS);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100, "should not block");
+        assertFalse(future.isDone());
+
+        LatchOutcome outcome = future.get(5, TimeUnit.SECONDS);
+        assertFalse(outcome.isSuccess());
+        assertFalse(outcome.isTimedOut());
+        assertEquals("async-failing", outcome.getFailures().get(0).taskName());
+
+        CountDownLatch interrupted = new CountDownLatch(1);
+        LatchUtils.submitTask(executor, () -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        }, "async-straggler");
+        LatchOutcome timedOut = LatchUtils.waitForOutcomeAsync(100, TimeUnit.MILLISECONDS).get(5, TimeUnit.SECONDS);
+        assertTrue(timedOut.isTimedOut());
+        assertEquals(List.of("async-straggler"), timedOut.getRunningTasks());
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    /**
+     * 10k 个阻塞任务：固定线程池 vs 虚拟线程
+     */
+    @Test
+    public void testVirtualThreadBenchmark() {
+        int taskCount = 10_000;
+        long blockMillis = 20;
+
+        ExecutorService pool = Executors.newFixedThreadPool(200);
+        for (int i = 0; i < taskCount; i++) {
+            LatchUtils.submitTask(pool, () -> sleep(blockMillis));
+        }
+        long start = System.nanoTime();
+        boolean poolSuccess = LatchUtils.waitFor(60, TimeUnit.SECONDS);
+        long poolCost = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        pool.shutdown();
+
+        for (int i = 0; i < taskCount; i++) {
+            LatchUtils.submitTask(() -> sleep(blockMillis));
+        }
+        start = System.nanoTime();
+        boolean virtualSuccess = LatchUtils.waitForVirtual(60, TimeUnit.SECONDS);
+        long virtualCost = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        for (int i = 0; i < taskCount; i++) {
+            LatchUtils.submitTask(() -> sleep(blockMillis));
+        }
+        start = System.nanoTime();
+        boolean cappedSuccess = LatchUtils.waitForVirtual(1000, 60, TimeUnit.SECONDS);
+        long cappedCost = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        System.out.println("fixed pool(200):          " + poolCost + "ms");
+        System.out.println("virtual threads:          " + virtualCost + "ms");
+        System.out.println("virtual threads(cap 1000): " + cappedCost + "ms");
+
+        assertTrue(poolSuccess);
+        assertTrue(virtualSuccess);
+        assertTrue(cappedSuccess);
+    }
+
     private static void sleep(long millis) {
         try {
             Thread.sleep(millis);
@@ -55,4 +383,14 @@ public class TestLatchUtils {
             Thread.currentThread().interrupt();
         }
     }
+
+    private static void sleepIgnoringInterrupts(long millis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        for (long left = millis; left > 0; left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) {
+            try {
+                Thread.sleep(left);
+            } catch (InterruptedException ignored) {
+            }
+        }
+    }
 }
@@ -0,0 +1,83 @@
+package com.cn.test;
+
+import com.cn.pstoolkit.llm.ChatMessage;
+import com.cn.pstoolkit.llm.LlmClient;
+import com.cn.pstoolkit.llm.LlmEndpoint;
+import com.cn.pstoolkit.llm.LlmException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestLlmClient {
+
+    private HttpServer server;
+    private LlmClient client;
+    private String baseUrl;
+
+    @BeforeEach
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/chat", exchange -> reply(exchange, 200,
+                "{\"id\":\"1\",\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"你好\"}}]}"));
+        server.createContext("/stream", exchange -> reply(exchange, 200,
+                "data: {\"choices\":[{\"delta\":{\"role\":\"assistant\"}}]}\n\n"
+                        + "data: {\"choices\":[{\"delta\":{\"content\":\"Hel\"}}]}\n\n"
+                        + ": keep-alive\n\n"
+                        + "data: {\"choices\":[{\"delta\":{\"content\":\"lo\"}}]}\n\n"
+                        + "data: [DONE]\n\n"));
+        server.createContext("/denied", exchange -> reply(exchange, 401, "{\"error\":\"bad key\"}"));
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        client = new LlmClient(Duration.ofSeconds(2), Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    public void stop() {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testChatAndStream() throws Exception {
+        List<ChatMessage> history = List.of(ChatMessage.user("hi"));
+        assertEquals("你好", client.chat(endpoint("/chat"), history));
+
+        List<String> deltas = new ArrayList<>();
+        String reply = client.streamAsync(endpoint("/stream"), history, deltas::add).get();
+        assertEquals("Hello", reply);
+        assertEquals(List.of("Hel", "lo"), deltas);
+    }
+
+    @Test
+    public void testErrorStatus() {
+        LlmException e = assertThrows(LlmException.class,
+                () -> client.chat(endpoint("/denied"), List.of(ChatMessage.user("hi"))));
+        assertEquals(401, e.getStatusCode());
+        assertTrue(e.getMessage().contains("bad key"));
+    }
+
+    private LlmEndpoint endpoint(String path) {
+        return new LlmEndpoint(baseUrl + path, "test-key", "test-model");
+    }
+
+    private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
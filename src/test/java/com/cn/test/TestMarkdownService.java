@@ -0,0 +1,87 @@
+package com.cn.test;
+
+import com.cn.pstoolkit.markdown.MarkdownService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestMarkdownService {
+
+    private static final String TABLE = """
+            | 方案 | 吞吐 |
+            |------|-----:|
+            | 单线程 | 1x |
+            """;
+
+    @Test
+    public void testTableAttributesAndCache() {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("border", "1");
+        attributes.put("cellspacing", "0");
+        MarkdownService swing = new MarkdownService(MarkdownService.DEFAULT_MAX_CACHE_BYTES, attributes);
+        String plain = new MarkdownService().render(TABLE);
+        String html = swing.render(TABLE);
+
+        assertTrue(plain.startsWith("<table>\n"), plain);
+        assertTrue(html.startsWith("<table border=\"1\" cellspacing=\"0\">\n"), html);
+        // 除了 table 标签，表头、单元格、对齐与扩展的渲染完全相同
+        assertEquals(plain.substring("<table>".length()), html.substring(html.indexOf('>') + 1));
+        assertTrue(html.contains("<td align=\"right\">1x</td>"));
+
+        assertSame(html, swing.render(TABLE));
+        assertEquals(1, swing.getHits());
+        assertEquals(1, swing.getMisses());
+        assertEquals(1, swing.getCachedEntries());
+        // 增量渲染器共用同一配置
+        assertEquals(html, swing.newIncrementalRenderer().append(TABLE).tailHtml());
+    }
+
+    @Test
+    public void testByteBoundEvictsLeastRecentlyUsed() {
+        MarkdownService markdown = new MarkdownService(4096, Map.of());
+        String first = markdown.render("第一条消息 " + "x".repeat(500));
+        for (int i = 0; i < 20; i++) {
+            markdown.render("消息 " + i + " " + "y".repeat(500));
+            // 一直在用的条目不会被淘汰
+            assertSame(first, markdown.render("第一条消息 " + "x".repeat(500)));
+        }
+        assertTrue(markdown.getCachedBytes() <= 4096, "cached " + markdown.getCachedBytes());
+        assertTrue(markdown.getCachedEntries() < 10);
+
+        // 超过上限的单条结果不缓存
+        MarkdownService tiny = new MarkdownService(100, Map.of());
+        tiny.render("z".repeat(200));
+        assertEquals(0, tiny.getCachedEntries());
+        assertEquals(0, tiny.getCachedBytes());
+    }
+
+    @Test
+    public void testConcurrentRendering() throws Exception {
+        MarkdownService markdown = new MarkdownService(64 * 1024, Map.of("border", "1"));
+        MarkdownService reference = new MarkdownService(0, Map.of("border", "1"));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                String text = "## 标题 " + (i % 50) + "\n\n" + TABLE + "\n段落 **" + (i % 50) + "**\n";
+                results.add(executor.submit(() -> markdown.render(text).equals(reference.render(text))));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(2000, markdown.getHits() + markdown.getMisses());
+        assertTrue(markdown.getHits() >= 2000 - 50 * 8, "hits " + markdown.getHits());
+        assertEquals(0, reference.getCachedEntries());
+    }
+}
@@ -0,0 +1,64 @@
+package com.cn.test;
+
+import com.cn.pstoolkit.llm.DeltaExtractor;
+import com.cn.pstoolkit.llm.SseDecoder;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSseDecoder {
+
+    @Test
+    public void testEventsAcrossChunkBoundaries() {
+        String stream = "﻿: comment\r\n"
+                + "data: {\"a\":1}\r\n\r\n"
+                + "event: ping\n"
+                + "data:first\n"
+                + "data: second\n"
+                + "id: 7\n"
+                + "\n"
+                + "data\r"
+                + "\r"
+                + "data: 尾部没有空行，应被丢弃\n";
+        byte[] bytes = stream.getBytes(StandardCharsets.UTF_8);
+
+        // 每种切分方式（包括把 CRLF 和多字节字符切开）结果都一样
+        for (int size = 1; size <= bytes.length; size++) {
+            List<String> events = new ArrayList<>();
+            SseDecoder decoder = new SseDecoder((event, data, offset, length) ->
+                    events.add(event + "|" + new String(data, offset, length, StandardCharsets.UTF_8)));
+            for (int i = 0; i < bytes.length; i += size) {
+                decoder.feed(ByteBuffer.wrap(bytes, i, Math.min(size, bytes.length - i)));
+            }
+            decoder.finish();
+            assertEquals(List.of("null|{\"a\":1}", "ping|first\nsecond", "null|"), events, "chunk size " + size);
+        }
+    }
+
+    @Test
+    public void testDeltaExtractor() {
+        DeltaExtractor extractor = new DeltaExtractor();
+        assertEquals("并发", extract(extractor, "{\"id\":\"x\",\"object\":\"chat.completion.chunk\",\"created\":1,"
+                + "\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\",\"content\":\"并发\"},"
+                + "\"finish_reason\":null}]}"));
+        // 跳过的字段里有嵌套结构和带括号、引号的字符串
+        assertEquals("a\"b\\c\né😀/", extract(extractor, "{\"meta\":{\"x\":[1,{\"y\":\"]}\\\"\"}]},"
+                + "\"choices\" : [ { \"delta\" : { \"content\" : \"a\\\"b\\\\c\\n\\u00e9\\ud83d\\ude00\\/\" } } ] }"));
+        assertNull(extract(extractor, "{\"choices\":[{\"delta\":{\"content\":null},\"finish_reason\":\"stop\"}]}"));
+        assertNull(extract(extractor, "{\"choices\":[]}"));
+        assertNull(extract(extractor, "{\"choices\":[{\"delta\":{}}]}"));
+        assertNull(extract(extractor, "{\"choices\":[{\"delta\":{\"content\":\"unterminated"));
+        assertNull(extract(extractor, "not json"));
+    }
+
+    private static String extract(DeltaExtractor extractor, String json) {
+        // 前后加上无关字节，确认只读取给定区间
+        byte[] bytes = ("xx" + json + "yy").getBytes(StandardCharsets.UTF_8);
+        return extractor.extract(bytes, 2, bytes.length - 4);
+    }
+}
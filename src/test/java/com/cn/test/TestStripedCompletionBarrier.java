@@ -0,0 +1,78 @@
+package com.cn.test;
+
+import com.cn.pstoolkit.utils.LatchOutcome;
+import com.cn.pstoolkit.utils.StripedCompletionBarrier;
+import com.cn.pstoolkit.utils.TaskBatch;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestStripedCompletionBarrier {
+
+    @Test
+    public void testWideFanOut() throws InterruptedException {
+        int parties = 100_003;
+        StripedCompletionBarrier barrier = new StripedCompletionBarrier(parties, 64);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < parties; i++) {
+            int index = i;
+            executor.execute(() -> barrier.arrive(index));
+        }
+        assertTrue(barrier.await(5, TimeUnit.SECONDS));
+        assertEquals(0, barrier.getCount());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testTimeout() throws InterruptedException {
+        StripedCompletionBarrier barrier = new StripedCompletionBarrier(2);
+        barrier.arrive(0);
+        assertFalse(barrier.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, barrier.getCount());
+        barrier.arrive(1);
+        assertTrue(barrier.await(100, TimeUnit.MILLISECONDS));
+        assertTrue(new StripedCompletionBarrier(0).isDone());
+    }
+
+    @Test
+    public void testAsyncRoundAfterReuse() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (TaskBatch batch = TaskBatch.acquire()) {
+            for (int round = 0; round < 10_000; round++) {
+                // 同步等待的一轮结束后屏障被复用，下一轮改为注册完成回调
+                for (int i = 0; i < 4; i++) {
+                    batch.submit(executor, () -> { });
+                }
+                assertTrue(batch.await(5, TimeUnit.SECONDS));
+
+                AtomicBoolean done = new AtomicBoolean();
+                CountDownLatch release = new CountDownLatch(1);
+                batch.submit(executor, () -> {
+                    awaitQuietly(release);
+                    done.set(true);
+                });
+                CompletableFuture<LatchOutcome> future = batch.awaitOutcomeAsync(5, TimeUnit.SECONDS);
+                assertFalse(future.isDone(), "round " + round + " completed before its task ran");
+                release.countDown();
+                assertTrue(future.get(5, TimeUnit.SECONDS).isSuccess());
+                assertTrue(done.get());
+            }
+        }
+        executor.shutdown();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.cn.test;
+
+import com.cn.pstoolkit.utils.FanOutResult;
+import com.cn.pstoolkit.utils.LatchMetrics;
+import com.cn.pstoolkit.utils.TaskGraph;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTaskGraph {
+
+    @Test
+    public void testCriticalPath() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        long start = System.currentTimeMillis();
+        TaskGraph.Result result = TaskGraph.create()
+                .add("user", executor, ctx -> {
+                    sleep(200);
+                    return "tom";
+                })
+                .add("orders", executor, ctx -> {
+                    sleep(300);
+                    return ctx.get("user") + "-orders";
+                }, "user")
+                .add("prefs", executor, ctx -> {
+                    sleep(100);
+                    return ctx.get("user") + "-prefs";
+                }, "user")
+                .add("page", executor, ctx -> ctx.get("orders") + "," + ctx.get("prefs"), "orders", "prefs")
+                .execute(5, TimeUnit.SECONDS);
+        long cost = System.currentTimeMillis() - start;
+
+        assertTrue(result.isSuccess());
+        assertEquals("tom-orders,tom-prefs", result.get("page"));
+        // 关键路径 user -> orders = 500ms，而不是 200 + 300 + 100
+        assertTrue(cost < 590, "cost " + cost + "ms");
+        System.out.println("graph cost: " + cost + "ms");
+
+        executor.shutdown();
+    }
+
+    @Test
+    public void testFailureSkipsDownstream() {
+        TaskGraph.Result result = TaskGraph.create()
+                .add("user", ctx -> {
+                    throw new IllegalStateException("user service down");
+                })
+                .add("orders", ctx -> "orders", "user")
+                .add("page", ctx -> "page", "orders")
+                .add("banner", ctx -> "banner")
+                .execute(5, TimeUnit.SECONDS);
+
+        assertFalse(result.isSuccess());
+        assertEquals(FanOutResult.State.FAILED, result.getResult("user").state());
+        assertEquals(FanOutResult.State.SKIPPED, result.getResult("orders").state());
+        assertEquals(FanOutResult.State.SKIPPED, result.getResult("page").state());
+        assertEquals("banner", result.get("banner"));
+    }
+
+    @Test
+    public void testRejectedNodeFails() {
+        Executor rejecting = runnable -> {
+            throw new RejectedExecutionException("pool full");
+        };
+        TaskGraph.Result result = TaskGraph.create()
+                .add("user", rejecting, ctx -> "tom")
+                .add("orders", ctx -> "orders", "user")
+                .add("banner", ctx -> "banner")
+                .execute(5, TimeUnit.SECONDS);
+
+        assertFalse(result.isSuccess());
+        assertFalse(result.isTimedOut());
+        FanOutResult.TaskResult<Object> user = result.getResult("user");
+        assertEquals(FanOutResult.State.FAILED, user.state());
+        assertInstanceOf(RejectedExecutionException.class, user.error());
+        assertEquals(FanOutResult.State.SKIPPED, result.getResult("orders").state());
+        assertEquals("banner", result.get("banner"));
+    }
+
+    @Test
+    public void testCycleAndTimeout() {
+        TaskGraph cyclic = TaskGraph.create()
+                .add("a", ctx -> 1, "c")
+                .add("b", ctx -> 2, "a")
+                .add("c", ctx -> 3, "b")
+                .add("d", ctx -> 4);
+        IllegalStateException e = assertThrows(IllegalStateException.class, cyclic::execute);
+        assertTrue(e.getMessage().contains("[a, b, c]"), e.getMessage());
+
+        LatchMetrics.TaskMetrics metrics = LatchMetrics.forTask("slow");
+        long cancelledBefore = metrics.getCancelled();
+        long runsBefore = metrics.getRunTime().getCount();
+        long failuresBefore = metrics.getFailures();
+        TaskGraph.Result result = TaskGraph.create()
+                .add("slow", ctx -> {
+                    Thread.sleep(5000);
+                    return 1;
+                })
+                .add("after", ctx -> 2, "slow")
+                .execute(200, TimeUnit.MILLISECONDS);
+        assertTrue(result.isTimedOut());
+        assertEquals(FanOutResult.State.CANCELLED, result.getResult("slow").state());
+        assertEquals(FanOutResult.State.CANCELLED, result.getResult("after").state());
+        // 运行中被取消只记一次取消，不记为一次（负耗时的）失败执行
+        assertEquals(cancelledBefore + 1, metrics.getCancelled());
+        assertEquals(runsBefore, metrics.getRunTime().getCount());
+        assertEquals(failuresBefore, metrics.getFailures());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
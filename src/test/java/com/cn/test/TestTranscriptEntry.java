@@ -0,0 +1,92 @@
+package com.cn.test;
+
+import com.cn.pstoolkit.markdown.TranscriptEntry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTranscriptEntry {
+
+    @Test
+    public void testAttachedViewTracksStream() {
+        TranscriptEntry entry = TranscriptEntry.assistant("...");
+        StringBuilder frozen = new StringBuilder();
+        String[] tail = {""};
+        TranscriptEntry.View view = (frozenHtml, tailHtml, reset) -> {
+            if (reset) {
+                frozen.setLength(0);
+            }
+            frozen.append(frozenHtml);
+            tail[0] = tailHtml;
+        };
+        entry.attach(view);
+        assertEquals("<p>...</p>\n", frozen.toString());
+
+        entry.beginStreaming();
+        String reply = "# 标题\n\n第一段\n\n```java\nint a = 1;\n```\n\n结尾";
+        for (int i = 0; i < reply.length(); i += 4) {
+            entry.append(reply.substring(i, Math.min(reply.length(), i + 4)));
+            assertEquals(entry.getFrozenHtml(), frozen.toString());
+            assertEquals(entry.getTailHtml(), tail[0]);
+        }
+        assertTrue(entry.isStreaming());
+        entry.finish();
+        assertFalse(entry.isStreaming());
+        assertEquals(reply, entry.getMarkdown());
+        assertEquals(TranscriptEntry.assistant(reply).getFrozenHtml(), frozen.toString());
+        assertEquals("", tail[0]);
+
+        // 滚出屏幕后不再收到更新，重新显示时收到完整内容
+        entry.detach(view);
+        entry.setMarkdown("新内容");
+        assertNotEquals(entry.getFrozenHtml(), frozen.toString());
+        entry.attach(view);
+        assertEquals("<p>新内容</p>\n", frozen.toString());
+    }
+
+    @Test
+    public void testMeasuredSizeInvalidatedOnChange() {
+        TranscriptEntry entry = TranscriptEntry.user("你好");
+        assertTrue(entry.isUser());
+        assertEquals(-1, entry.getMeasuredHeight(780));
+        entry.setMeasuredSize(780, 120, 40);
+        assertEquals(120, entry.getMeasuredWidth(780));
+        assertEquals(40, entry.getMeasuredHeight(780));
+        assertEquals(-1, entry.getMeasuredHeight(600));
+
+        // 不在流式输出中时接着已有内容追加
+        entry.append("世界");
+        assertEquals(-1, entry.getMeasuredHeight(780));
+        assertTrue(entry.isStreaming());
+        assertEquals("你好世界", entry.getMarkdown());
+
+        // 被别的组件接管后，旧组件的 detach 不影响新组件
+        int[] renders = new int[2];
+        TranscriptEntry.View first = (frozen, tail, reset) -> renders[0]++;
+        TranscriptEntry.View second = (frozen, tail, reset) -> renders[1]++;
+        entry.attach(first);
+        entry.attach(second);
+        entry.detach(first);
+        entry.append("!");
+        assertEquals(1, renders[0]);
+        assertEquals(2, renders[1]);
+
+        // 后台排版好的组件：内容没变就不再完整渲染，变了则补一次
+        long revision = entry.getRevision();
+        int[] prepared = new int[1];
+        TranscriptEntry.View third = (frozen, tail, reset) -> prepared[0]++;
+        entry.attach(third, revision);
+        assertEquals(0, prepared[0]);
+        entry.attach(third, revision - 1);
+        assertEquals(1, prepared[0]);
+
+        entry.finish();
+        assertEquals("你好世界!", entry.getMarkdown());
+        assertEquals(TranscriptEntry.user("你好世界!").getFrozenHtml(), entry.getFrozenHtml());
+
+        TranscriptEntry resumed = TranscriptEntry.assistant("第一段\n\n第二段");
+        resumed.append("继续");
+        resumed.finish();
+        assertEquals(TranscriptEntry.assistant("第一段\n\n第二段继续").getFrozenHtml(), resumed.getFrozenHtml());
+    }
+}
@@ -0,0 +1,59 @@
+package com.cn.test;
+
+import com.cn.pstoolkit.utils.UiStallProbe;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestUiStallProbe {
+
+    @Test
+    public void testRecordsUpdatesAndDispatchDelay() throws Exception {
+        // 单线程执行器模拟 UI 线程
+        ExecutorService ui = Executors.newSingleThreadExecutor();
+        UiStallProbe probe = new UiStallProbe("test-ui", ui, 50, TimeUnit.MILLISECONDS);
+        probe.startHeartbeat(10, TimeUnit.MILLISECONDS);
+        try {
+            Thread.sleep(100);
+            // 一次快更新、一次占用 UI 线程 200ms 的慢更新
+            CountDownLatch done = new CountDownLatch(2);
+            ui.execute(probe.wrap("fast", done::countDown));
+            ui.execute(probe.wrap("slow", () -> {
+                sleep(200);
+                done.countDown();
+            }));
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+        } finally {
+            probe.stopHeartbeat();
+            ui.shutdown();
+        }
+
+        assertEquals(1, probe.getUpdateTimes("fast").getCount());
+        assertTrue(probe.getUpdateTimes("fast").getMaxNanos() < TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(probe.getUpdateTimes("slow").getMaxNanos() >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertEquals(0, probe.getUpdateTimes("missing").getCount());
+        // 慢更新期间排队的心跳延迟接近它的耗时
+        assertTrue(probe.getDispatchDelay().getCount() > 10);
+        assertTrue(probe.getDispatchDelay().getMaxNanos() >= TimeUnit.MILLISECONDS.toNanos(150),
+                "max dispatch delay " + probe.getDispatchDelay().getMaxNanos());
+
+        Map<String, Object> snapshot = probe.snapshot();
+        assertEquals("test-ui", snapshot.get("name"));
+        assertTrue(((Map<?, ?>) snapshot.get("updates")).containsKey("slow"));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
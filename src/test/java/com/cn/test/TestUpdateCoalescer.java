@@ -0,0 +1,91 @@
+package com.cn.test;
+
+import com.cn.pstoolkit.utils.UpdateCoalescer;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestUpdateCoalescer {
+
+    @Test
+    public void testCoalescesAndFlushesOnFinish() throws Exception {
+        // 单线程执行器模拟 UI 线程，每次渲染耗时 5ms
+        ExecutorService ui = Executors.newSingleThreadExecutor();
+        StringBuilder rendered = new StringBuilder();
+        AtomicInteger queued = new AtomicInteger();
+        AtomicInteger maxQueued = new AtomicInteger();
+        UpdateCoalescer updates = new UpdateCoalescer(runnable -> {
+            maxQueued.accumulateAndGet(queued.incrementAndGet(), Math::max);
+            ui.execute(() -> {
+                queued.decrementAndGet();
+                runnable.run();
+            });
+        }, delta -> {
+            rendered.append(delta);
+            sleep(5);
+        });
+
+        StringBuilder expected = new StringBuilder();
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+        int tokens = 0;
+        while (System.nanoTime() < end) {
+            String token = "t" + tokens++ + " ";
+            expected.append(token);
+            updates.offer(token);
+            if (tokens % 20 == 0) {
+                sleep(1);
+            }
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        StringBuilder atFinish = new StringBuilder();
+        updates.finish(() -> {
+            atFinish.append(rendered);
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        ui.shutdown();
+
+        // 结束回调之前所有增量都已按顺序渲染
+        assertEquals(expected.toString(), atFinish.toString());
+        assertEquals(tokens, updates.getOffers());
+        // 500ms 内，16ms 一帧最多约 30 次刷新，远少于 token 数
+        assertTrue(updates.getFlushes() <= 40, "flushes " + updates.getFlushes() + " for " + tokens + " tokens");
+        // UI 队列里同时只有一个刷新任务（加上 finish）
+        assertTrue(maxQueued.get() <= 2, "max queued " + maxQueued.get());
+    }
+
+    @Test
+    public void testIntervalAdaptsToRenderCost() throws Exception {
+        ExecutorService ui = Executors.newSingleThreadExecutor();
+        UpdateCoalescer updates = new UpdateCoalescer(ui, delta -> sleep(40),
+                16, 250, TimeUnit.MILLISECONDS);
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(600);
+        while (System.nanoTime() < end) {
+            updates.offer("x");
+            sleep(1);
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        updates.finish(done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        ui.shutdown();
+
+        // 渲染 40ms，间隔放宽到约 80ms
+        long interval = TimeUnit.NANOSECONDS.toMillis(updates.getIntervalNanos());
+        assertTrue(interval >= 60 && interval <= 250, "interval " + interval);
+        assertTrue(updates.getFlushes() <= 12, "flushes " + updates.getFlushes());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}